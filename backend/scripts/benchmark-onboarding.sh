@@ -0,0 +1,78 @@
+#!/bin/sh
+# Compares onboarding customers the way the frontend does it, one request at a time (register,
+# log in for the id, open each account), with the bulk endpoint on a running instance. Each mode
+# creates COUNT customers with ACCOUNTS accounts under fresh emails, so run it against test data.
+#
+#   BASE_URL=http://localhost:8080 ./scripts/benchmark-onboarding.sh 5000 2 16 1000
+set -e
+
+COUNT=${1:-2000}
+ACCOUNTS=${2:-2}
+CONCURRENCY=${3:-16}
+BATCH=${4:-1000}
+BASE_URL=${BASE_URL:-http://localhost:8080}
+RUN=$(date +%s)
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+report() {
+    # $1 = label, $2 = elapsed ms
+    echo "$1: $COUNT customers in $2 ms ($(( COUNT * 1000 / ($2 > 0 ? $2 : 1) )) per second)"
+}
+
+ACCOUNT='{"accountType":"SAVINGS","pin":"1234"}'
+
+# One customer per call of $WORK/one; prints ok or failed
+cat > "$WORK/one" <<SCRIPT
+email="bench-$RUN-single-\$1@example.com"
+curl -s -o /dev/null -X POST -H 'Content-Type: application/json' "$BASE_URL/api/auth/register" \
+    -d "{\"fullName\":\"Benchmark \$1\",\"email\":\"\$email\",\"password\":\"benchmark\"}"
+id=\$(curl -s -X POST -H 'Content-Type: application/json' "$BASE_URL/api/auth/login" \
+    -d "{\"email\":\"\$email\",\"password\":\"benchmark\"}" | sed -n 's/.*"id":\([0-9]*\).*/\1/p')
+[ -n "\$id" ] || { echo failed; exit 0; }
+i=0
+while [ "\$i" -lt "$ACCOUNTS" ]; do
+    curl -s -o /dev/null -X POST -H 'Content-Type: application/json' -d '$ACCOUNT' "$BASE_URL/api/accounts/customer/\$id"
+    i=\$(( i + 1 ))
+done
+echo ok
+SCRIPT
+
+start=$(now_ms)
+seq 1 "$COUNT" | xargs -P "$CONCURRENCY" -I{} sh "$WORK/one" {} > "$WORK/single"
+report "one by one" $(( $(now_ms) - start ))
+echo "  failed: $(grep -c failed "$WORK/single" || true)"
+
+# BATCH customers per request body, accounts inline
+awk -v count="$COUNT" -v batch="$BATCH" -v accounts="$ACCOUNTS" -v run="$RUN" -v account="$ACCOUNT" \
+    -v dir="$WORK" '
+    BEGIN {
+        list = "["
+        for (a = 0; a < accounts; a++) {
+            list = list (a > 0 ? "," : "") account
+        }
+        list = list "]"
+        for (i = 1; i <= count; i++) {
+            if ((i - 1) % batch == 0) {
+                if (file != "") { printf "]" > file; close(file) }
+                file = sprintf("%s/batch-%08d.json", dir, i)
+                printf "[" > file
+            } else {
+                printf "," > file
+            }
+            printf "{\"fullName\":\"Benchmark %d\",\"email\":\"bench-%s-bulk-%d@example.com\",\"password\":\"benchmark\",\"accounts\":%s}",
+                i, run, i, list > file
+        }
+        if (file != "") { printf "]" > file; close(file) }
+    }'
+
+start=$(now_ms)
+for body in "$WORK"/batch-*.json; do
+    curl -s -X POST -H 'Content-Type: application/json' --data-binary "@$body" "$BASE_URL/api/customers/bulk" -w '\n'
+done > "$WORK/bulk"
+report "bulk, $BATCH per call" $(( $(now_ms) - start ))
+echo "  failed: $(sed -n 's/.*"failed":\([0-9]*\).*/\1/p' "$WORK/bulk" | awk '{ s += $1 } END { print s + 0 }')"
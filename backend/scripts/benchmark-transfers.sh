@@ -0,0 +1,64 @@
+#!/bin/sh
+# Compares the synchronous transfer endpoint with the partitioned ledger engine on a running
+# instance. PAIRS_FILE has one "fromAccount toAccount pin" line per account pair; requests cycle
+# through the pairs, so use many pairs with distinct accounts to see the engine scale with
+# banking.ledger.partitions. Each mode moves COUNT x AMOUNT in total, so run it against test data.
+#
+#   BASE_URL=http://localhost:8080 ./scripts/benchmark-transfers.sh pairs.txt 2000 32
+set -e
+
+PAIRS_FILE=${1:?usage: benchmark-transfers.sh PAIRS_FILE [COUNT] [CONCURRENCY]}
+COUNT=${2:-1000}
+CONCURRENCY=${3:-16}
+BASE_URL=${BASE_URL:-http://localhost:8080}
+AMOUNT=${AMOUNT:-0.01}
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+# One request body per line, cycling through the pairs
+awk -v count="$COUNT" -v amount="$AMOUNT" '
+    NF >= 3 { from[n] = $1; to[n] = $2; pin[n] = $3; n++ }
+    END {
+        for (i = 0; i < count; i++) {
+            j = i % n
+            printf "{\"fromAccount\":\"%s\",\"toAccount\":\"%s\",\"pin\":\"%s\",\"amount\":%s,\"description\":\"benchmark\"}\n",
+                from[j], to[j], pin[j], amount
+        }
+    }' "$PAIRS_FILE" > "$WORK/bodies"
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+post_all() {
+    # $1 = path; prints one response per line
+    tr '\n' '\0' < "$WORK/bodies" | xargs -0 -P "$CONCURRENCY" -I{} \
+        curl -s -X POST -H 'Content-Type: application/json' -d '{}' "$BASE_URL$1" -w '\n'
+}
+
+report() {
+    # $1 = label, $2 = elapsed ms
+    echo "$1: $COUNT transfers in $2 ms ($(( COUNT * 1000 / ($2 > 0 ? $2 : 1) )) per second)"
+}
+
+start=$(now_ms)
+post_all /api/transactions/transfer > "$WORK/sync"
+report "synchronous transfer" $(( $(now_ms) - start ))
+echo "  failed: $(grep -c '"success":false' "$WORK/sync" || true)"
+
+start=$(now_ms)
+post_all /api/ledger/transfers > "$WORK/async"
+accepted=$(( $(now_ms) - start ))
+report "ledger engine, accepted" "$accepted"
+sed -n 's/.*"ticket":"\([^"]*\)".*/\1/p' "$WORK/async" > "$WORK/tickets"
+echo "  not accepted: $(( COUNT - $(wc -l < "$WORK/tickets") ))"
+
+# Partitions progress independently, so wait for every ticket to leave ACCEPTED and DEBITED
+while read -r ticket; do
+    while curl -s "$BASE_URL/api/ledger/transfers/$ticket" | grep -q '"status":"\(ACCEPTED\|DEBITED\)"'; do
+        sleep 0.05
+    done
+done < "$WORK/tickets"
+report "ledger engine, settled" $(( $(now_ms) - start ))
+tr '\n' '\0' < "$WORK/tickets" | xargs -0 -P "$CONCURRENCY" -I{} curl -s "$BASE_URL/api/ledger/transfers/{}" -w '\n' \
+    | sed -n 's/.*"status":"\([A-Z]*\)".*/\1/p' | sort | uniq -c
@@ -0,0 +1,20 @@
+#!/bin/sh
+# Builds target/app-cds.jsa for the fast-startup profile. The app is started once on the in-memory
+# database with the class list recorded, exits as soon as it is ready, and the recorded classes
+# are dumped into a shared archive. H2 from target/training-lib is only on the training start's
+# classpath; its classes are skipped at dump time, so the archive's classpath is exactly the one
+# start-fast.sh uses and H2 never ships with the production start.
+set -e
+cd "$(dirname "$0")/.."
+
+CLASSPATH="target/banking-system-1.0.0.jar:$(cat target/classpath.txt)"
+
+java -Xshare:off -XX:DumpLoadedClassList=target/app-cds.classlist \
+    -cp "$CLASSPATH:target/training-lib/*" com.banking.BankingApplication \
+    --spring.profiles.active=fast-startup,loadtest \
+    --server.port=0 \
+    --banking.startup.exit-after-ready=true
+
+java -Xshare:dump -XX:SharedClassListFile=target/app-cds.classlist \
+    -XX:SharedArchiveFile=target/app-cds.jsa \
+    -cp "$CLASSPATH"
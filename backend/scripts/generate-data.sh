@@ -0,0 +1,15 @@
+#!/bin/sh
+# Loads a reproducible synthetic dataset into the configured PostgreSQL database through the
+# datagen profile, then exits. Sizes and distributions are banking.datagen.* properties; extra
+# arguments are passed on to the application. Besides the data it writes, under
+# banking.datagen.output-dir, transfer-pairs.txt for benchmark-transfers.sh and population.tsv
+# for the load test harness (--population=... with --base-url).
+#
+#   ./scripts/generate-data.sh --banking.datagen.customers=1000000 --banking.datagen.events=200000000
+set -e
+cd "$(dirname "$0")/.."
+
+JAR=${JAR:-target/banking-system-1.0.0.jar}
+PROFILES=${SPRING_PROFILES_ACTIVE:+$SPRING_PROFILES_ACTIVE,}datagen
+
+exec java ${JAVA_OPTS:--Xmx4g} -jar "$JAR" --spring.profiles.active="$PROFILES" "$@"
@@ -0,0 +1,13 @@
+#!/bin/sh
+# Starts a fast-startup build (mvn package -Pfast-startup) with its AppCDS archive. Extra
+# arguments are passed on to the application.
+cd "$(dirname "$0")/.."
+
+CLASSPATH="target/banking-system-1.0.0.jar:$(cat target/classpath.txt)"
+CDS_OPTS=""
+if [ -f target/app-cds.jsa ]; then
+    CDS_OPTS="-Xshare:auto -XX:SharedArchiveFile=target/app-cds.jsa"
+fi
+
+exec java $CDS_OPTS $JAVA_OPTS -cp "$CLASSPATH" com.banking.BankingApplication \
+    --spring.profiles.active="${SPRING_PROFILES_ACTIVE:-prod},fast-startup" "$@"
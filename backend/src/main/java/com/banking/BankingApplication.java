@@ -2,12 +2,16 @@ package com.banking;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
 public class BankingApplication {
     public static void main(String[] args) {
-        SpringApplication.run(BankingApplication.class, args);
+        SpringApplication application = new SpringApplication(BankingApplication.class);
+        // Records startup steps for StartupTimingReporter, which drains them after the first request
+        application.setApplicationStartup(new BufferingApplicationStartup(10000));
+        application.run(args);
     }
-}
\ No newline at end of file
+}
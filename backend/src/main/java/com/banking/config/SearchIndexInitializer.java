@@ -0,0 +1,71 @@
+package com.banking.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+
+/**
+ * Makes sure the indexes behind transaction search and reconciliation exist on databases
+ * created before they were added to init.sql.
+ *
+ * Builds run CONCURRENTLY on a background thread so a large transactions table neither blocks
+ * startup nor locks out writes. Databases other than PostgreSQL are skipped; search then falls
+ * back to sequential scans.
+ */
+@Component
+public class SearchIndexInitializer {
+    
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexInitializer.class);
+    
+    private static final String[] STATEMENTS = {
+        "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+        "CREATE EXTENSION IF NOT EXISTS btree_gin",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_account_description_trgm "
+            + "ON transactions USING gin (account_id, description gin_trgm_ops)",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_account_to_account_trgm "
+            + "ON transactions USING gin (account_id, to_account_number gin_trgm_ops)",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_account_date_id "
+            + "ON transactions (account_id, transaction_date DESC, id DESC)",
+        // New rows per account for ledger reconciliation
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_account_id_id "
+            + "ON transactions (account_id, id)"
+    };
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchIndexes() {
+        Thread thread = new Thread(this::runStatements, "search-index-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void runStatements() {
+        try {
+            String product = jdbcTemplate.execute((Connection connection) ->
+                connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equals(product)) {
+                log.info("Skipping search indexes on {}", product);
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Could not determine database type, skipping search indexes: {}", e.getMessage());
+            return;
+        }
+        for (String statement : STATEMENTS) {
+            try {
+                jdbcTemplate.execute(statement);
+            } catch (Exception e) {
+                // An interrupted concurrent build leaves an invalid index; drop it by hand and restart
+                log.warn("Search index statement failed: {} ({})", statement, e.getMessage());
+            }
+        }
+    }
+}
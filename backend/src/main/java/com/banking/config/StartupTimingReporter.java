@@ -0,0 +1,156 @@
+package com.banking.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Breaks a cold start down into milestones, from JVM launch to the first completed request.
+ *
+ * Milestones are milliseconds since JVM start: main (when SpringApplication began), context
+ * refreshed, web server started, ready, and first request. The report also lists the slowest
+ * bean instantiations recorded by the application's BufferingApplicationStartup; those times
+ * include the beans each one pulled in. The report is logged once, appended as a JSON line to
+ * banking.startup.report-file when that is set, and served at /api/system/startup.
+ */
+@Component
+public class StartupTimingReporter extends OncePerRequestFilter {
+    
+    private static final Logger log = LoggerFactory.getLogger(StartupTimingReporter.class);
+    private static final int SLOWEST_BEANS = 10;
+    
+    @Autowired
+    private ApplicationStartup applicationStartup;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Value("${banking.startup.report-file:}")
+    private String reportFile;
+    
+    @Value("${banking.startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+    
+    private final long jvmStartedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final Map<String, Object> report = new LinkedHashMap<>();
+    private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+    
+    @EventListener(ContextRefreshedEvent.class)
+    public void onContextRefreshed() {
+        milestone("contextRefreshedMs");
+    }
+    
+    @EventListener(WebServerInitializedEvent.class)
+    public void onWebServerStarted() {
+        milestone("webServerStartedMs");
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        milestone("readyMs");
+        if (exitAfterReady) {
+            // Training start for the AppCDS archive (scripts/build-cds-archive.sh)
+            Thread exit = new Thread(() -> System.exit(SpringApplication.exit(applicationContext)), "startup-exit");
+            exit.start();
+        }
+    }
+    
+    public synchronized Map<String, Object> getReport() {
+        return new LinkedHashMap<>(report);
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!firstRequestSeen.get() && firstRequestSeen.compareAndSet(false, true)) {
+                completeReport(request.getMethod() + " " + request.getRequestURI());
+            }
+        }
+    }
+    
+    private synchronized void milestone(String name) {
+        report.putIfAbsent(name, System.currentTimeMillis() - jvmStartedAt);
+    }
+    
+    private void completeReport(String firstRequest) {
+        Map<String, Object> snapshot;
+        synchronized (this) {
+            report.put("firstRequestMs", System.currentTimeMillis() - jvmStartedAt);
+            report.put("firstRequest", firstRequest);
+            if (applicationStartup instanceof BufferingApplicationStartup) {
+                // Drained so the recorded steps don't stay in memory for the life of the process
+                StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).drainBufferedTimeline();
+                report.put("mainMs", timeline.getStartTime().toEpochMilli() - jvmStartedAt);
+                report.put("slowestBeans", slowestBeans(timeline.getEvents()));
+            }
+            report.put("jvm", System.getProperty("java.vm.version"));
+            report.put("cds", ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile")));
+            report.put("recordedAt", Instant.now().toString());
+            snapshot = new LinkedHashMap<>(report);
+        }
+        log.info("Startup timing: {}", snapshot);
+        if (reportFile != null && !reportFile.isEmpty()) {
+            try {
+                String line = new ObjectMapper().writeValueAsString(snapshot) + System.lineSeparator();
+                Files.write(Paths.get(reportFile), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Could not append startup report to {}: {}", reportFile, e.getMessage());
+            }
+        }
+    }
+    
+    private static Map<String, Long> slowestBeans(List<StartupTimeline.TimelineEvent> events) {
+        return events.stream()
+            .filter(event -> "spring.beans.instantiate".equals(event.getStartupStep().getName()))
+            .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+            .limit(SLOWEST_BEANS)
+            .collect(Collectors.toMap(StartupTimingReporter::beanName, event -> event.getDuration().toMillis(),
+                (first, second) -> first, LinkedHashMap::new));
+    }
+    
+    private static String beanName(StartupTimeline.TimelineEvent event) {
+        for (StartupStep.Tag tag : event.getStartupStep().getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return event.getStartupStep().getName();
+    }
+}
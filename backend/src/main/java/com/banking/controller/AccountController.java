@@ -2,15 +2,31 @@ package com.banking.controller;
 
 import com.banking.model.Account;
 import com.banking.dto.AccountDTO;
+import com.banking.dto.BalanceAsOf;
+import com.banking.dto.BalancePoint;
 import com.banking.service.AccountService;
+import com.banking.service.BalanceHistoryService;
+import com.banking.service.ExecutionLanes;
+import com.banking.service.ExecutionLanes.Lane;
+import com.banking.service.HotAccountService;
+import com.banking.service.TransactionService;
 import com.banking.model.AccountStatus;
 
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/accounts")
@@ -20,6 +36,18 @@ public class AccountController {
     @Autowired
     private AccountService accountService;
     
+    @Autowired
+    private HotAccountService hotAccountService;
+    
+    @Autowired
+    private TransactionService transactionService;
+    
+    @Autowired
+    private BalanceHistoryService balanceHistoryService;
+    
+    @Autowired
+    private ExecutionLanes executionLanes;
+    
     @PostMapping("/customer/{customerId}")
     public ResponseEntity<?> createAccount(@PathVariable Long customerId,
                                           @Valid @RequestBody AccountDTO accountDTO) {
@@ -42,8 +70,13 @@ public class AccountController {
     }
     
     @GetMapping("/{accountNumber}")
-    public ResponseEntity<?> getAccount(@PathVariable String accountNumber) {
+    public ResponseEntity<?> getAccount(@PathVariable String accountNumber, WebRequest request) {
         try {
+            Optional<LocalDateTime> version = accountService.getAccountVersion(accountNumber);
+            if (version.isPresent() && ETagUtils.checkNotModified(request,
+                    ETagUtils.eTag("acc", accountNumber, ETagUtils.toEpochMillis(version.get())), version.get())) {
+                return null; // 304 already written
+            }
             Account account = accountService.getAccount(accountNumber);
             return ResponseEntity.ok(account);
         } catch (Exception e) {
@@ -51,33 +84,114 @@ public class AccountController {
         }
     }
     
+    // Deposits and withdrawals run on the transactional lane. The response has always included
+    // the account's transactions, so they are loaded before the lane's EntityManager closes
     @PostMapping("/{accountNumber}/deposit")
-    public ResponseEntity<?> deposit(@PathVariable String accountNumber,
-                                     @RequestParam Double amount,
-                                     @RequestParam(required = false) String description) {
-        try {
+    public CompletableFuture<ResponseEntity<?>> deposit(@PathVariable String accountNumber,
+                                                        @RequestParam Double amount,
+                                                        @RequestParam(required = false) String description) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.TRANSACTIONAL, () -> {
             Account account = accountService.deposit(accountNumber, 
                 java.math.BigDecimal.valueOf(amount), description);
+            Hibernate.initialize(account.getTransactions());
+            return ResponseEntity.ok(account);
+        }).exceptionally(this::laneError);
+    }
+    
+    @PostMapping("/{accountNumber}/withdraw")
+    public CompletableFuture<ResponseEntity<?>> withdraw(@PathVariable String accountNumber,
+                                                         @RequestParam Double amount,
+                                                         @RequestParam String pin,
+                                                         @RequestParam(required = false) String description) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.TRANSACTIONAL, () -> {
+            Account account = accountService.withdraw(accountNumber, 
+                java.math.BigDecimal.valueOf(amount), pin, description);
+            Hibernate.initialize(account.getTransactions());
             return ResponseEntity.ok(account);
+        }).exceptionally(this::laneError);
+    }
+    
+    // These endpoints answer errors with the bare message
+    private ResponseEntity<?> laneError(Throwable e) {
+        if (LaneResponses.isUnavailable(e)) {
+            return LaneResponses.error(e);
+        }
+        return ResponseEntity.badRequest().body(LaneResponses.cause(e).getMessage());
+    }
+
+    @GetMapping("/{accountNumber}/balance-history")
+    public ResponseEntity<?> getBalanceHistory(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "DAY") String interval,
+            @RequestParam(defaultValue = "500") int points,
+            WebRequest request) {
+        try {
+            LocalDate end = endDate != null ? endDate : LocalDate.now();
+            LocalDate start = startDate != null ? startDate : end.minusYears(1);
+            BalanceHistoryService.Interval bucket = BalanceHistoryService.Interval.valueOf(interval.toUpperCase());
+            
+            // Quiet days extend the series to today, so the date is part of the validator
+            long latestId = transactionService.getLatestTransactionId(accountNumber);
+            if (ETagUtils.checkNotModified(request, ETagUtils.eTag("bal", accountNumber, latestId,
+                    start, end, bucket, points, LocalDate.now()), null)) {
+                return null; // 304 already written
+            }
+            Account account = accountService.getAccount(accountNumber);
+            List<BalancePoint> history = balanceHistoryService.getBalanceHistory(account, start, end, bucket, points);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("accountNumber", accountNumber);
+            response.put("interval", bucket);
+            response.put("startDate", start);
+            response.put("endDate", end);
+            response.put("points", history);
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
     
-    @PostMapping("/{accountNumber}/withdraw")
-    public ResponseEntity<?> withdraw(@PathVariable String accountNumber,
-                                      @RequestParam Double amount,
-                                      @RequestParam String pin,
-                                      @RequestParam(required = false) String description) {
+    @GetMapping("/{accountNumber}/balance-as-of")
+    public ResponseEntity<?> getBalanceAsOf(
+            @PathVariable String accountNumber,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
         try {
-            Account account = accountService.withdraw(accountNumber, 
-                java.math.BigDecimal.valueOf(amount), pin, description);
+            return ResponseEntity.ok(balanceHistoryService.getBalanceAsOf(accountNumber, at));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    // Many accounts at one instant; the body is the list of account numbers
+    @PostMapping("/balances-as-of")
+    public ResponseEntity<?> getBalancesAsOf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            @RequestBody List<String> accountNumbers) {
+        try {
+            List<BalanceAsOf> balances = balanceHistoryService.getBalancesAsOf(accountNumbers, at);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("asOf", at);
+            response.put("balances", balances);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+    
+    @PutMapping("/{accountNumber}/balance-shards")
+    public ResponseEntity<?> configureBalanceShards(@PathVariable String accountNumber,
+                                                    @RequestParam int shards) {
+        try {
+            Account account = hotAccountService.configureShards(accountNumber, shards);
             return ResponseEntity.ok(account);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
-
+    
     @PutMapping("/{accountNumber}/status")
     public ResponseEntity<?> updateAccountStatus(@PathVariable String accountNumber,
                                                  @RequestParam AccountStatus status) {
@@ -0,0 +1,85 @@
+package com.banking.controller;
+
+import com.banking.dto.PayeeCount;
+import com.banking.dto.PayeeRanking;
+import com.banking.service.ExecutionLanes;
+import com.banking.service.ExecutionLanes.Lane;
+import com.banking.service.PayeeAnalyticsService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/analytics")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class AnalyticsController {
+
+    @Autowired
+    private PayeeAnalyticsService payeeAnalyticsService;
+
+    @Autowired
+    private ExecutionLanes executionLanes;
+
+    // Bank-wide top counterparties from the sketches, by=count for most frequent, by=amount for most paid
+    @GetMapping("/payees")
+    public ResponseEntity<?> getTopPayees(@RequestParam(defaultValue = "count") String by,
+                                          @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(payeeAnalyticsService.getTopPayees(by, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/customers/{customerId}/payees")
+    public ResponseEntity<?> getCustomerTopPayees(@PathVariable Long customerId,
+                                                  @RequestParam(defaultValue = "count") String by,
+                                                  @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(payeeAnalyticsService.getTopPayees(customerId, by, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Exact counts from the transactions table next to the sketch estimates for the same payees.
+    // Without a customer this aggregates every transfer, so it runs on the report lane
+    @GetMapping("/payees/exact")
+    public CompletableFuture<ResponseEntity<?>> compareWithExact(@RequestParam(required = false) Long customerId,
+                                                                 @RequestParam(defaultValue = "count") String by,
+                                                                 @RequestParam(defaultValue = "20") int limit) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.REPORT, () -> {
+            PayeeRanking exact = executionLanes.withConnection(() ->
+                payeeAnalyticsService.getExactTopPayees(customerId, by, limit));
+            List<String> accountNumbers = exact.getPayees().stream()
+                .map(PayeeCount::getAccountNumber)
+                .collect(Collectors.toList());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("exact", exact);
+            response.put("estimated", payeeAnalyticsService.getEstimates(customerId, accountNumbers));
+            return ResponseEntity.ok(response);
+        }).exceptionally(LaneResponses::error);
+    }
+
+    // Clears the sketches and recounts every transfer in the background, e.g. after resizing them
+    @PostMapping("/payees/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild() {
+        payeeAnalyticsService.rebuild();
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Payee analytics are being recounted");
+        return ResponseEntity.ok(response);
+    }
+}
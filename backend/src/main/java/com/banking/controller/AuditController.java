@@ -0,0 +1,50 @@
+package com.banking.controller;
+
+import com.banking.service.AuditJournal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/audit")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class AuditController {
+    
+    private static final int MAX_RECORDS = 1000;
+    
+    @Autowired
+    private AuditJournal auditJournal;
+    
+    // Latest sequence and chain hash, to be recorded outside the system as a tamper anchor
+    @GetMapping("/head")
+    public ResponseEntity<Map<String, Object>> getHead() {
+        return ResponseEntity.ok(auditJournal.getHead());
+    }
+    
+    @GetMapping("/verify")
+    public ResponseEntity<?> verify() {
+        try {
+            return ResponseEntity.ok(auditJournal.verify());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/records")
+    public ResponseEntity<?> getRecords(@RequestParam(defaultValue = "1") long fromSequence,
+                                        @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(auditJournal.read(fromSequence, Math.max(1, Math.min(limit, MAX_RECORDS))));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
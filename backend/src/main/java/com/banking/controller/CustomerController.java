@@ -2,10 +2,16 @@ package com.banking.controller;
 
 import com.banking.model.Customer;
 import com.banking.dto.CustomerDTO;
+import com.banking.dto.OnboardingRequest;
+import com.banking.dto.OnboardingResult;
 import com.banking.service.CustomerService;
+import com.banking.service.OnboardingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/customers")
@@ -15,6 +21,9 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
     
+    @Autowired
+    private OnboardingService onboardingService;
+    
     @GetMapping("/{id}")
     public ResponseEntity<?> getCustomer(@PathVariable Long id) {
         try {
@@ -35,4 +44,23 @@ public class CustomerController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
+    
+    // Registers customers and opens their accounts in bulk; each entry succeeds or fails on its own
+    @PostMapping("/bulk")
+    public ResponseEntity<?> onboard(@RequestBody List<OnboardingRequest> requests) {
+        try {
+            List<OnboardingResult> results = onboardingService.onboard(requests);
+            long onboarded = results.stream().filter(result -> result.getError() == null).count();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("onboarded", onboarded);
+            response.put("failed", results.size() - onboarded);
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.banking.controller;
+
+import org.springframework.web.context.request.WebRequest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+public class ETagUtils {
+    
+    // Cache-Control for representations that can never change, e.g. statements for closed periods
+    public static final String IMMUTABLE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+    
+    public static String eTag(Object... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            if (builder.length() > 0) {
+                builder.append('-');
+            }
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+    
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    // Returns true (and sets a 304 status) when the client's validators still match; the
+    // ETag and Last-Modified headers are written to the response either way
+    public static boolean checkNotModified(WebRequest request, String eTag, LocalDateTime lastModified) {
+        if (lastModified != null) {
+            return request.checkNotModified(eTag, toEpochMillis(lastModified));
+        }
+        return request.checkNotModified(eTag);
+    }
+    
+    // For work done off the request thread: whether an If-None-Match header captured from the
+    // request matches the ETag, compared weakly as Spring does for GET
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals("\"" + eTag + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package com.banking.controller;
+
+import com.banking.service.AccountEventStream;
+import com.banking.service.CustomerService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class EventController {
+    
+    @Autowired
+    private AccountEventStream accountEventStream;
+    
+    @Autowired
+    private CustomerService customerService;
+    
+    // Browsers' EventSource resends the last id it saw in the Last-Event-ID header on reconnect
+    @GetMapping(value = "/customer/{customerId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCustomerEvents(
+            @PathVariable Long customerId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(required = false) Long lastEventId) {
+        try {
+            customerService.getCustomerById(customerId);
+            Long resumeFrom = lastEventIdHeader != null ? lastEventIdHeader : lastEventId;
+            return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(accountEventStream.subscribe(customerId, resumeFrom));
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.banking.controller;
+
+import com.banking.model.Account;
+import com.banking.model.AccountStatus;
+import com.banking.model.AccountType;
+import com.banking.dto.InterestProjection;
+import com.banking.repository.AccountRepository;
+import com.banking.service.AccountService;
+import com.banking.service.InterestProjectionService;
+import com.banking.service.InterestService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/interest")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class InterestController {
+    
+    private static final int MAX_PROJECTION_MONTHS = 1200;
+    private static final int MAX_SCENARIOS = 50; // rates, and horizons, per grid request
+    private static final BigDecimal MAX_ANNUAL_RATE = BigDecimal.ONE;
+    
+    @Autowired
+    private AccountService accountService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private InterestService interestService;
+    
+    @Autowired
+    private InterestProjectionService interestProjectionService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @GetMapping("/{accountNumber}/projection")
+    public ResponseEntity<?> getProjectedInterest(@PathVariable String accountNumber,
+                                                  @RequestParam(defaultValue = "12") int months) {
+        try {
+            validateMonths(Collections.singletonList(months));
+            Account account = accountService.getAccount(accountNumber);
+            Map<String, Object> response = new HashMap<>();
+            response.put("accountNumber", accountNumber);
+            response.put("months", months);
+            response.put("annualRate", interestService.getAnnualRate(account.getAccountType()));
+            response.put("projectedInterest", interestService.calculateProjectedInterest(account, months));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Interest accrued daily since the last monthly credit
+    @GetMapping("/{accountNumber}/accrued")
+    public ResponseEntity<?> getAccruedInterest(@PathVariable String accountNumber) {
+        try {
+            Account account = accountService.getAccount(accountNumber);
+            BigDecimal accrued = account.getAccruedInterest() != null ? account.getAccruedInterest() : BigDecimal.ZERO;
+            Map<String, Object> response = new HashMap<>();
+            response.put("accountNumber", accountNumber);
+            response.put("annualRate", interestService.getAnnualRate(account.getAccountType()));
+            response.put("accruedInterest", accrued.setScale(2, RoundingMode.HALF_UP));
+            response.put("accruedThrough", account.getAccrualDate());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Treasury scenario grid over all active accounts; one NDJSON line per (rate, horizon),
+    // flushed rate by rate as each fork-join pass completes
+    @GetMapping("/projections")
+    public ResponseEntity<?> getProjectionGrid(@RequestParam(required = false) List<BigDecimal> rates,
+                                               @RequestParam(defaultValue = "12") List<Integer> months,
+                                               @RequestParam(required = false) AccountType accountType) {
+        try {
+            validateMonths(months);
+            List<BigDecimal> scenarioRates = rates != null && !rates.isEmpty() ? rates : Arrays.asList(
+                interestService.getAnnualRate(AccountType.SAVINGS),
+                interestService.getAnnualRate(AccountType.CURRENT));
+            // Everything is checked before the 200 goes out; the stream itself can't fail on input
+            validateRates(scenarioRates);
+            if (months.size() > MAX_SCENARIOS) {
+                throw new RuntimeException("At most " + MAX_SCENARIOS + " horizons per request");
+            }
+            List<BigDecimal> balances = accountType != null
+                ? accountRepository.findBalancesByStatusAndAccountType(AccountStatus.ACTIVE, accountType)
+                : accountRepository.findBalancesByStatus(AccountStatus.ACTIVE);
+            
+            StreamingResponseBody body = outputStream -> {
+                for (BigDecimal rate : scenarioRates) {
+                    List<InterestProjection> projections = interestProjectionService
+                        .projectGrid(balances, Collections.singletonList(rate), months);
+                    for (InterestProjection projection : projections) {
+                        outputStream.write(objectMapper.writeValueAsBytes(projection));
+                        outputStream.write('\n');
+                    }
+                    outputStream.flush();
+                }
+            };
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    private void validateRates(List<BigDecimal> rates) {
+        if (rates.size() > MAX_SCENARIOS) {
+            throw new RuntimeException("At most " + MAX_SCENARIOS + " rates per request");
+        }
+        for (BigDecimal rate : rates) {
+            if (rate == null || rate.signum() < 0 || rate.compareTo(MAX_ANNUAL_RATE) > 0) {
+                throw new RuntimeException("Rates must be annual fractions between 0 and " + MAX_ANNUAL_RATE);
+            }
+        }
+    }
+    
+    private void validateMonths(List<Integer> months) {
+        for (Integer month : months) {
+            if (month == null || month < 0 || month > MAX_PROJECTION_MONTHS) {
+                throw new RuntimeException("Months must be between 0 and " + MAX_PROJECTION_MONTHS);
+            }
+        }
+    }
+}
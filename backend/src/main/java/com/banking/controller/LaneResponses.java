@@ -0,0 +1,37 @@
+package com.banking.controller;
+
+import com.banking.service.ExecutionLanes.LaneUnavailableException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+// Error responses for endpoints that run on an execution lane
+public class LaneResponses {
+    
+    public static Throwable cause(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+    
+    public static boolean isUnavailable(Throwable failure) {
+        return cause(failure) instanceof LaneUnavailableException;
+    }
+    
+    // 503 with Retry-After when the lane turned the work away, 400 like the synchronous endpoints otherwise
+    public static ResponseEntity<?> error(Throwable failure) {
+        return error(failure, new HashMap<>());
+    }
+    
+    public static ResponseEntity<?> error(Throwable failure, Map<String, Object> body) {
+        body.put("error", cause(failure).getMessage());
+        if (isUnavailable(failure)) {
+            return unavailable().body(body);
+        }
+        return ResponseEntity.badRequest().body(body);
+    }
+    
+    public static ResponseEntity.BodyBuilder unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1");
+    }
+}
@@ -0,0 +1,52 @@
+package com.banking.controller;
+
+import com.banking.model.LedgerTransfer;
+import com.banking.service.LedgerEngine;
+import com.banking.service.LedgerEngine.EngineBusyException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ledger")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class LedgerController {
+    
+    @Autowired
+    private LedgerEngine ledgerEngine;
+    
+    // Queues the transfer and answers 202 with a ticket to poll
+    @PostMapping("/transfers")
+    public ResponseEntity<?> submitTransfer(@RequestBody TransactionController.TransferRequest request) {
+        try {
+            LedgerTransfer transfer = ledgerEngine.submit(request.getFromAccount(), request.getToAccount(),
+                BigDecimal.valueOf(request.getAmount()), request.getPin(), request.getDescription());
+            Map<String, Object> response = new HashMap<>();
+            response.put("ticket", transfer.getId());
+            response.put("status", transfer.getStatus());
+            response.put("statusUrl", "/api/ledger/transfers/" + transfer.getId());
+            return ResponseEntity.accepted().body(response);
+        } catch (EngineBusyException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/transfers/{ticket}")
+    public ResponseEntity<?> getTransfer(@PathVariable String ticket) {
+        return ledgerEngine.getTransfer(ticket)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,46 @@
+package com.banking.controller;
+
+import com.banking.model.ReconciliationMismatch;
+import com.banking.service.LedgerReconciliationService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reconciliation")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class ReconciliationController {
+    
+    @Autowired
+    private LedgerReconciliationService reconciliationService;
+    
+    // Most recent run with its status and up to 1000 of its mismatches
+    @GetMapping("/latest")
+    public ResponseEntity<Map<String, Object>> getLatestRun() {
+        return ResponseEntity.ok(reconciliationService.getLatestRun());
+    }
+    
+    @GetMapping("/runs/{runKey}/mismatches")
+    public ResponseEntity<List<ReconciliationMismatch>> getMismatches(@PathVariable String runKey) {
+        return ResponseEntity.ok(reconciliationService.getMismatches(runKey));
+    }
+    
+    @PostMapping("/run")
+    public ResponseEntity<?> startRun() {
+        try {
+            Map<String, String> response = new HashMap<>();
+            response.put("runKey", reconciliationService.startRun());
+            response.put("status", "STARTED");
+            return ResponseEntity.accepted().body(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.banking.controller;
+
+import com.banking.dto.StandingOrderDTO;
+import com.banking.model.StandingOrder;
+import com.banking.model.StandingOrderStatus;
+import com.banking.service.StandingOrderService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/standing-orders")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class StandingOrderController {
+    
+    @Autowired
+    private StandingOrderService standingOrderService;
+    
+    @PostMapping("/account/{accountNumber}")
+    public ResponseEntity<?> createStandingOrder(@PathVariable String accountNumber,
+                                                 @Valid @RequestBody StandingOrderDTO orderDTO) {
+        try {
+            StandingOrder order = standingOrderService.createOrder(accountNumber, orderDTO);
+            return ResponseEntity.ok(order);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/account/{accountNumber}")
+    public ResponseEntity<List<StandingOrder>> getStandingOrders(@PathVariable String accountNumber) {
+        return ResponseEntity.ok(standingOrderService.getOrders(accountNumber));
+    }
+    
+    // Pause, resume or cancel; resuming skips occurrences that fell due while paused
+    @PutMapping("/{id}/status")
+    public ResponseEntity<?> updateStatus(@PathVariable Long id, @RequestParam StandingOrderStatus status) {
+        try {
+            return ResponseEntity.ok(standingOrderService.updateStatus(id, status));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
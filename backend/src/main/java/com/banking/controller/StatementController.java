@@ -1,18 +1,36 @@
 package com.banking.controller;
 
 import com.banking.model.Account;
+import com.banking.model.Customer;
 import com.banking.model.Transaction;
 import com.banking.service.AccountService;
+import com.banking.service.BalanceHistoryService;
+import com.banking.service.ConsolidatedStatementService;
+import com.banking.service.CustomerService;
+import com.banking.service.ExecutionLanes;
+import com.banking.service.ExecutionLanes.Lane;
 import com.banking.service.PdfService;
+import com.banking.service.StatementBatchService;
 import com.banking.service.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/statements")
@@ -25,33 +43,181 @@ public class StatementController {
     @Autowired
     private TransactionService transactionService;
     
+    @Lazy
     @Autowired
     private PdfService pdfService;
     
+    @Autowired
+    private StatementBatchService statementBatchService;
+    
+    @Autowired
+    private ExecutionLanes executionLanes;
+    
+    @Autowired
+    private CustomerService customerService;
+    
+    @Autowired
+    private ConsolidatedStatementService consolidatedStatementService;
+    
+    @Autowired
+    private BalanceHistoryService balanceHistoryService;
+    
+    // Rendered on the report lane so a burst of downloads can't hold up transfers; nothing here
+    // touches the database on the request thread, which would keep its connection until the end
     @GetMapping("/{accountNumber}/pdf")
-    public ResponseEntity<byte[]> generateStatement(
+    public CompletableFuture<ResponseEntity<byte[]>> generateStatement(
             @PathVariable String accountNumber,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        return executionLanes.<ResponseEntity<byte[]>>submit(Lane.REPORT, () -> {
+            // A closed period's statement can never change: a whole month is the batch run's archived
+            // file when there is one, and anything else is printed from the ledger alone, without the
+            // account details and categories that can. Both are validated by their period, so a 304
+            // costs no lookups. Open periods also depend on the details and the latest transaction
+            boolean closedPeriod = endDate.isBefore(LocalDate.now());
+            YearMonth month = YearMonth.from(startDate);
+            boolean wholeMonth = startDate.equals(month.atDay(1)) && endDate.equals(month.atEndOfMonth());
+            String archivedETag = ETagUtils.eTag("stmt-archive", accountNumber, month);
+            String ledgerETag = ETagUtils.eTag("stmt", accountNumber, startDate, endDate);
+            if (closedPeriod && wholeMonth && ETagUtils.matches(ifNoneMatch, archivedETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(archivedETag).build();
+            }
+            if (closedPeriod && ETagUtils.matches(ifNoneMatch, ledgerETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(ledgerETag).build();
+            }
+            
+            Account account = executionLanes.withConnection(() -> accountService.getAccount(accountNumber));
+            if (closedPeriod && wholeMonth) {
+                byte[] archived = statementBatchService.getArchivedStatement(account, month);
+                if (archived != null) {
+                    return statementResponse(archived, archivedETag, ETagUtils.IMMUTABLE_CACHE_CONTROL);
+                }
+            }
+            String eTag = ledgerETag;
+            if (!closedPeriod) {
+                String details = Integer.toHexString(
+                    Objects.hash(account.getAccountType(), account.getCustomer().getFullName()))
+                    + "-" + executionLanes.withConnection(transactionService::getCategoryVersion);
+                eTag = ETagUtils.eTag("stmt", accountNumber, startDate, endDate, details,
+                    executionLanes.withConnection(() -> transactionService.getLatestTransactionId(accountNumber)));
+                if (ETagUtils.matches(ifNoneMatch, eTag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                }
+            }
+            
+            // Balances are read from the ledger at the period's bounds
+            List<Transaction> transactions = executionLanes.withConnection(() -> transactionService
+                .getTransactionsByDateRange(account, startDate, endDate));
+            BigDecimal openingBalance = executionLanes.withConnection(() -> balanceAt(accountNumber,
+                startDate.atStartOfDay().minusNanos(1000)));
+            BigDecimal closingBalance = executionLanes.withConnection(() -> balanceAt(accountNumber,
+                endDate.plusDays(1).atStartOfDay().minusNanos(1000)));
+            
+            byte[] pdfBytes = pdfService.generateStatement(account, transactions, startDate, endDate,
+                openingBalance, closingBalance, !closedPeriod);
+            return statementResponse(pdfBytes, eTag, closedPeriod
+                ? ETagUtils.IMMUTABLE_CACHE_CONTROL
+                : CacheControl.noCache().cachePrivate().getHeaderValue());
+        }).exceptionally(e -> LaneResponses.isUnavailable(e)
+            ? LaneResponses.unavailable().<byte[]>build()
+            : ResponseEntity.badRequest().<byte[]>build());
+    }
+    
+    private static ResponseEntity<byte[]> statementResponse(byte[] pdfBytes, String eTag, String cacheControl) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("filename", "statement.pdf");
+        headers.setContentLength(pdfBytes.length);
+        headers.setETag("\"" + eTag + "\"");
+        headers.setCacheControl(cacheControl);
+        
+        return ResponseEntity.ok()
+            .headers(headers)
+            .body(pdfBytes);
+    }
+    
+    // Balance after the account's last posting at or before the given time, zero before it opened
+    private BigDecimal balanceAt(String accountNumber, LocalDateTime asOf) {
+        BigDecimal balance = balanceHistoryService.getBalanceAsOf(accountNumber, asOf).getBalance();
+        return balance != null ? balance : BigDecimal.ZERO;
+    }
+    
+    // All of a customer's accounts in one date-ordered statement, as PDF or CSV. The report lane
+    // admits the request and loads the accounts; the merge then streams the body, reading each
+    // account's postings a page at a time in short transactions of its own
+    @GetMapping("/customer/{customerId}/consolidated")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> generateConsolidatedStatement(
+            @PathVariable Long customerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "pdf") String format) {
         
+        return executionLanes.<ResponseEntity<StreamingResponseBody>>submit(Lane.REPORT, () -> {
+            boolean csv = "csv".equalsIgnoreCase(format);
+            if (!csv && !"pdf".equalsIgnoreCase(format)) {
+                throw new RuntimeException("Format must be pdf or csv");
+            }
+            if (endDate.isBefore(startDate)) {
+                throw new RuntimeException("End date must not be before start date");
+            }
+            Customer customer = executionLanes.withConnection(() -> customerService.getCustomerById(customerId));
+            List<Account> accounts = executionLanes.withConnection(() -> accountService.getCustomerAccounts(customerId));
+            
+            StreamingResponseBody body = csv
+                ? outputStream -> consolidatedStatementService.writeCsv(accounts, startDate, endDate, outputStream)
+                : outputStream -> consolidatedStatementService.writePdf(customer, accounts, startDate, endDate, outputStream);
+            
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("filename", "consolidated-statement." + (csv ? "csv" : "pdf"));
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+            
+            return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+        }).exceptionally(e -> LaneResponses.isUnavailable(e)
+            ? LaneResponses.unavailable().<StreamingResponseBody>build()
+            : ResponseEntity.badRequest().<StreamingResponseBody>build());
+    }
+    
+    // Serves a statement produced by the month-end batch run
+    @GetMapping("/{accountNumber}/archive/{month}")
+    public ResponseEntity<byte[]> getArchivedStatement(@PathVariable String accountNumber,
+                                                       @PathVariable String month) {
         try {
             Account account = accountService.getAccount(accountNumber);
-            List<Transaction> transactions = transactionService
-                .getTransactionsByDateRange(account, startDate, endDate);
-            
-            byte[] pdfBytes = pdfService.generateMonthlyStatement(account, transactions, startDate, endDate);
+            byte[] pdfBytes = statementBatchService.getArchivedStatement(account, YearMonth.parse(month));
+            if (pdfBytes == null) {
+                return ResponseEntity.notFound().build();
+            }
             
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("filename", "statement.pdf");
+            headers.setContentDispositionFormData("filename", "statement-" + month + ".pdf");
             headers.setContentLength(pdfBytes.length);
+            headers.setCacheControl(ETagUtils.IMMUTABLE_CACHE_CONTROL);
             
             return ResponseEntity.ok()
                 .headers(headers)
                 .body(pdfBytes);
-                
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
+    
+    @PostMapping("/batch")
+    public ResponseEntity<?> startStatementBatch(@RequestParam String month) {
+        try {
+            Map<String, String> response = new HashMap<>();
+            response.put("runKey", statementBatchService.startMonth(YearMonth.parse(month)));
+            response.put("status", "STARTED");
+            return ResponseEntity.accepted().body(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.banking.controller;
+
+import com.banking.config.StartupTimingReporter;
+import com.banking.service.ExecutionLanes;
+import com.banking.service.JobCoordinator;
+import com.banking.service.ProfilingService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/system")
+@CrossOrigin(origins = "https://mahlangu-capital-bank-frontend.onrender.com", allowCredentials = "true")
+public class SystemController {
+    
+    @Autowired
+    private StartupTimingReporter startupTimingReporter;
+    
+    @Autowired
+    private ProfilingService profilingService;
+    
+    @Autowired
+    private ExecutionLanes executionLanes;
+    
+    @Autowired
+    private JobCoordinator jobCoordinator;
+    
+    // Milestones of this instance's start, in milliseconds since JVM launch
+    @GetMapping("/startup")
+    public ResponseEntity<?> getStartupTiming() {
+        return ResponseEntity.ok(startupTimingReporter.getReport());
+    }
+    
+    // Threads, queue, connection budget and circuit state of each execution lane
+    @GetMapping("/lanes")
+    public ResponseEntity<Map<String, Object>> getLanes() {
+        return ResponseEntity.ok(executionLanes.getStatus());
+    }
+    
+    // Progress of a coordinated job run, with the attempts and last error of any failing shard
+    @GetMapping("/jobs/{runKey}")
+    public ResponseEntity<?> getJobRun(@PathVariable String runKey) {
+        try {
+            return ResponseEntity.ok(jobCoordinator.getRunStatus(runKey));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Gives the run's FAILED shards a fresh set of attempts once the cause has been fixed
+    @PostMapping("/jobs/{runKey}/retry")
+    public ResponseEntity<?> retryJobRun(@PathVariable String runKey) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("runKey", runKey);
+            response.put("shardsReset", jobCoordinator.retryFailed(runKey));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/profiling")
+    public ResponseEntity<Map<String, Object>> getProfilingStatus() {
+        return ResponseEntity.ok(profilingService.getStatus());
+    }
+    
+    // Starts a JFR recording that stops by itself after the given number of seconds
+    @PostMapping("/profiling/start")
+    public ResponseEntity<?> startProfiling(@RequestParam(defaultValue = "60") int seconds,
+                                            @RequestParam(defaultValue = "default") String settings) {
+        try {
+            return ResponseEntity.ok(profilingService.start(seconds, settings));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<?> stopProfiling() {
+        try {
+            return ResponseEntity.ok(profilingService.stop());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // The .jfr file of the last stopped recording, for JDK Mission Control or `jfr print`
+    @GetMapping("/profiling/recording")
+    public ResponseEntity<?> downloadRecording() {
+        try {
+            Path file = profilingService.getRecordingFile();
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentDispositionFormData("attachment", file.getFileName().toString());
+            return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
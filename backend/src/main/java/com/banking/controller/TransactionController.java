@@ -4,20 +4,29 @@ import com.banking.model.Account;
 import com.banking.model.Transaction;
 import com.banking.model.TransactionCategory;
 import com.banking.dto.TransactionDTO;
+import com.banking.dto.TransactionSearchCriteria;
 import com.banking.service.AccountService;
+import com.banking.service.ExecutionLanes;
+import com.banking.service.ExecutionLanes.Lane;
+import com.banking.service.RecentTransactionCache;
+import com.banking.service.TransactionSearchService;
 import com.banking.service.TransactionService;
 import com.banking.service.AccountService.TransferResult;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -30,12 +39,48 @@ public class TransactionController {
     @Autowired
     private AccountService accountService;
     
+    @Autowired
+    private TransactionSearchService transactionSearchService;
+    
+    @Autowired
+    private RecentTransactionCache recentTransactionCache;
+    
+    @Autowired
+    private ExecutionLanes executionLanes;
+    
+    // History reads run on the read lane; see ExecutionLanes
     @GetMapping("/account/{accountNumber}")
-    public ResponseEntity<?> getAccountTransactions(@PathVariable String accountNumber) {
-        try {
+    public CompletableFuture<ResponseEntity<?>> getAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.READ, () -> {
+            // The default window slides daily, so the date is part of the validator
+            long latestId = transactionService.getLatestTransactionId(accountNumber);
+            String eTag = ETagUtils.eTag("txn", accountNumber, latestId, transactionService.getCategoryVersion(),
+                LocalDate.now());
+            if (ETagUtils.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
             Account account = accountService.getAccount(accountNumber);
             List<Transaction> transactions = transactionService
                 .getTransactionsByDateRange(account, LocalDate.now().minusMonths(1), LocalDate.now());
+            return ResponseEntity.ok().eTag(eTag).body(transactions);
+        }).exceptionally(LaneResponses::error);
+    }
+    
+    // Newest transactions for the dashboard and mini-statement; served from memory for warm accounts
+    @GetMapping("/account/{accountNumber}/recent")
+    public ResponseEntity<?> getRecentTransactions(@PathVariable String accountNumber,
+                                                   @RequestParam(defaultValue = "10") int limit) {
+        try {
+            if (limit < 1 || limit > recentTransactionCache.getCapacity()) {
+                throw new RuntimeException("limit must be between 1 and " + recentTransactionCache.getCapacity());
+            }
+            List<Transaction> transactions = recentTransactionCache.getRecentIfCached(accountNumber, limit);
+            if (transactions == null) {
+                Account account = accountService.getAccount(accountNumber);
+                transactions = recentTransactionCache.getRecent(account, limit);
+            }
             return ResponseEntity.ok(transactions);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -45,33 +90,39 @@ public class TransactionController {
     }
     
     @GetMapping("/account/{accountNumber}/all")
-    public ResponseEntity<?> getAllAccountTransactions(@PathVariable String accountNumber) {
-        try {
+    public CompletableFuture<ResponseEntity<?>> getAllAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.READ, () -> {
+            long latestId = transactionService.getLatestTransactionId(accountNumber);
+            String eTag = ETagUtils.eTag("txn", accountNumber, latestId, transactionService.getCategoryVersion(), "all");
+            if (ETagUtils.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
             Account account = accountService.getAccount(accountNumber);
             List<Transaction> transactions = transactionService.getAccountTransactions(account);
-            return ResponseEntity.ok(transactions);
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(error);
-        }
+            return ResponseEntity.ok().eTag(eTag).body(transactions);
+        }).exceptionally(LaneResponses::error);
     }
     
     @GetMapping("/account/{accountNumber}/daterange")
-    public ResponseEntity<?> getTransactionsByDateRange(
+    public CompletableFuture<ResponseEntity<?>> getTransactionsByDateRange(
             @PathVariable String accountNumber,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
-        try {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.READ, () -> {
+            long latestId = transactionService.getLatestTransactionId(accountNumber);
+            String eTag = ETagUtils.eTag("txn", accountNumber, latestId, transactionService.getCategoryVersion(),
+                startDate, endDate);
+            if (ETagUtils.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
             Account account = accountService.getAccount(accountNumber);
             List<Transaction> transactions = transactionService
                 .getTransactionsByDateRange(account, startDate, endDate);
-            return ResponseEntity.ok(transactions);
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(error);
-        }
+            return ResponseEntity.ok().eTag(eTag).body(transactions);
+        }).exceptionally(LaneResponses::error);
     }
     
     @GetMapping("/account/{accountNumber}/category/{category}")
@@ -96,9 +147,68 @@ public class TransactionController {
         }
     }
     
-    @PostMapping("/transfer")
-    public ResponseEntity<?> transferFunds(@RequestBody TransferRequest request) {
+    // Pages newest first; pass the returned nextBeforeDate and nextBeforeId to get the next page
+    @GetMapping("/account/{accountNumber}/search")
+    public ResponseEntity<?> searchTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeDate,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int limit) {
         try {
+            Account account = accountService.getAccount(accountNumber);
+            TransactionSearchCriteria criteria = new TransactionSearchCriteria();
+            criteria.setQuery(q);
+            criteria.setFuzzy(fuzzy);
+            criteria.setMinAmount(minAmount);
+            criteria.setMaxAmount(maxAmount);
+            criteria.setType(type);
+            criteria.setStartDate(startDate);
+            criteria.setEndDate(endDate);
+            criteria.setBeforeDate(beforeDate);
+            criteria.setBeforeId(beforeId);
+            criteria.setLimit(limit);
+            List<Transaction> transactions = transactionSearchService.search(account, criteria);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("transactions", transactions);
+            if (transactions.size() == Math.min(Math.max(limit, 1), TransactionSearchService.MAX_PAGE_SIZE)) {
+                Transaction last = transactions.get(transactions.size() - 1);
+                response.put("nextBeforeDate", last.getTransactionDate());
+                response.put("nextBeforeId", last.getId());
+            }
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/categorize/backfill")
+    public ResponseEntity<?> backfillCategories() {
+        try {
+            Map<String, String> response = new HashMap<>();
+            response.put("runKey", transactionService.startCategoryBackfill());
+            response.put("status", "STARTED");
+            return ResponseEntity.accepted().body(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Runs on the transactional lane, apart from reads and statement rendering
+    @PostMapping("/transfer")
+    public CompletableFuture<ResponseEntity<?>> transferFunds(@RequestBody TransferRequest request) {
+        return executionLanes.<ResponseEntity<?>>submit(Lane.TRANSACTIONAL, () -> {
             TransferResult result = accountService.transfer(
                 request.getFromAccount(),
                 request.getToAccount(),
@@ -113,8 +223,8 @@ public class TransactionController {
             response.put("amount", request.getAmount());
             response.put("fromAccount", request.getFromAccount());
             response.put("toAccount", request.getToAccount());
-            response.put("fromAccountBalance", result.getFromAccount().getBalance());
-            response.put("toAccountBalance", result.getToAccount().getBalance());
+            response.put("fromAccountBalance", result.getFromAccount().getAvailableBalance());
+            response.put("toAccountBalance", result.getToAccount().getAvailableBalance());
             response.put("fromTransactionId", result.getFromTransaction().getTransactionId());
             response.put("toTransactionId", result.getToTransaction().getTransactionId());
             response.put("internalTransfer", result.isInternalTransfer());
@@ -122,12 +232,11 @@ public class TransactionController {
             response.put("recipientName", result.getRecipientName());
             
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
+        }).exceptionally(e -> {
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
-            error.put("error", e.getMessage());
-            return ResponseEntity.badRequest().body(error);
-        }
+            return LaneResponses.error(e, error);
+        });
     }
     
     @PostMapping("/transfer/validate")
@@ -142,12 +251,12 @@ public class TransactionController {
             response.put("toAccountExists", true);
             response.put("fromAccountActive", fromAccount.getStatus().toString());
             response.put("toAccountActive", toAccount.getStatus().toString());
-            response.put("fromAccountBalance", fromAccount.getBalance());
+            response.put("fromAccountBalance", fromAccount.getAvailableBalance());
             response.put("fromAccountHolder", fromAccount.getCustomer().getFullName());
             response.put("toAccountHolder", toAccount.getCustomer().getFullName());
             response.put("internalTransfer", fromAccount.getCustomer().getId()
                     .equals(toAccount.getCustomer().getId()));
-            response.put("sufficientFunds", fromAccount.getBalance()
+            response.put("sufficientFunds", fromAccount.getAvailableBalance()
                     .compareTo(BigDecimal.valueOf(request.getAmount())) >= 0);
             
             return ResponseEntity.ok(response);
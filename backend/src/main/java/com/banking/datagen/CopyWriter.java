@@ -0,0 +1,150 @@
+package com.banking.datagen;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Streams rows into a COPY ... FROM STDIN in PostgreSQL's text format, encoding straight into
+ * a byte buffer so no per-row strings or BigDecimals are created. Values must be ASCII without
+ * tabs, newlines or backslashes, which holds for everything the generator writes.
+ */
+class CopyWriter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final CopyIn copyIn;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] digits = new byte[20];
+    private int position;
+    private boolean rowStarted;
+    private long rows;
+    private long cachedDay = Long.MIN_VALUE;
+    private String cachedDate;
+
+    CopyWriter(CopyManager copyManager, String sql) throws SQLException {
+        this.copyIn = copyManager.copyIn(sql);
+    }
+
+    CopyWriter text(String value) throws SQLException {
+        separator();
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    CopyWriter number(long value) throws SQLException {
+        separator();
+        writeLong(value);
+        return this;
+    }
+
+    // Whole cents as a DECIMAL(15,2) literal
+    CopyWriter cents(long value) throws SQLException {
+        separator();
+        if (value < 0) {
+            ensure(1);
+            buffer[position++] = '-';
+            value = -value;
+        }
+        writeLong(value / 100);
+        ensure(3);
+        long fraction = value % 100;
+        buffer[position++] = '.';
+        buffer[position++] = (byte) ('0' + fraction / 10);
+        buffer[position++] = (byte) ('0' + fraction % 10);
+        return this;
+    }
+
+    // UTC epoch seconds as yyyy-MM-dd HH:mm:ss; the date part only changes once a day
+    CopyWriter timestamp(long epochSecond) throws SQLException {
+        long day = Math.floorDiv(epochSecond, 86_400L);
+        if (day != cachedDay) {
+            cachedDay = day;
+            cachedDate = LocalDate.ofEpochDay(day).toString() + " ";
+        }
+        text(cachedDate);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        ensure(8);
+        twoDigits(secondOfDay / 3600);
+        buffer[position++] = ':';
+        twoDigits(secondOfDay / 60 % 60);
+        buffer[position++] = ':';
+        twoDigits(secondOfDay % 60);
+        return this;
+    }
+
+    CopyWriter nullValue() throws SQLException {
+        separator();
+        ensure(2);
+        buffer[position++] = '\\';
+        buffer[position++] = 'N';
+        return this;
+    }
+
+    void endRow() throws SQLException {
+        ensure(1);
+        buffer[position++] = '\n';
+        rowStarted = false;
+        rows++;
+    }
+
+    // Sends what is left and returns the number of rows the server accepted
+    long finish() throws SQLException {
+        flush();
+        long copied = copyIn.endCopy();
+        return copied >= 0 ? copied : rows;
+    }
+
+    void abort() {
+        try {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        } catch (SQLException ignored) {
+            // the surrounding transaction is rolled back anyway
+        }
+    }
+
+    private void separator() throws SQLException {
+        if (rowStarted) {
+            ensure(1);
+            buffer[position++] = '\t';
+        }
+        rowStarted = true;
+    }
+
+    private void writeLong(long value) throws SQLException {
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        ensure(length);
+        while (length > 0) {
+            buffer[position++] = digits[--length];
+        }
+    }
+
+    private void twoDigits(int value) {
+        buffer[position++] = (byte) ('0' + value / 10);
+        buffer[position++] = (byte) ('0' + value % 10);
+    }
+
+    private void ensure(int length) throws SQLException {
+        if (position + length > buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
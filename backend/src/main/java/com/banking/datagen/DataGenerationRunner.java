@@ -0,0 +1,149 @@
+package com.banking.datagen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+/**
+ * Runs the synthetic data generator against the configured database when the application is
+ * started with the datagen profile, then exits (see scripts/generate-data.sh). Alongside the
+ * data it writes the files the benchmarks read: transfer pairs for benchmark-transfers.sh and a
+ * population file for the load test harness's --population option.
+ */
+@Component
+@Profile("datagen")
+public class DataGenerationRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataGenerationRunner.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${banking.datagen.seed:42}")
+    private long seed;
+
+    @Value("${banking.datagen.customers:10000}")
+    private int customers;
+
+    @Value("${banking.datagen.max-accounts-per-customer:3}")
+    private int maxAccountsPerCustomer;
+
+    @Value("${banking.datagen.events:1000000}")
+    private long events;
+
+    @Value("${banking.datagen.activity-skew:1.0}")
+    private double activitySkew;
+
+    @Value("${banking.datagen.hot-account-ratio:0.001}")
+    private double hotAccountRatio;
+
+    @Value("${banking.datagen.hot-activity-share:0.2}")
+    private double hotActivityShare;
+
+    @Value("${banking.datagen.transfer-ratio:0.25}")
+    private double transferRatio;
+
+    @Value("${banking.datagen.deposit-ratio:0.25}")
+    private double depositRatio;
+
+    @Value("${banking.datagen.payees-per-account:5}")
+    private int payeesPerAccount;
+
+    @Value("${banking.datagen.start-date:2024-01-01}")
+    private String startDate;
+
+    @Value("${banking.datagen.history-days:365}")
+    private int historyDays;
+
+    @Value("${banking.datagen.password:loadtest-password}")
+    private String password;
+
+    @Value("${banking.datagen.pin:1234}")
+    private String pin;
+
+    @Value("${banking.datagen.output-dir:datagen}")
+    private String outputDir;
+
+    @Value("${banking.datagen.benchmark-pairs:1000}")
+    private int benchmarkPairs;
+
+    @Value("${banking.datagen.population-customers:500}")
+    private int populationCustomers;
+
+    @Value("${banking.datagen.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        SyntheticDataSpec spec = new SyntheticDataSpec(seed, customers, maxAccountsPerCustomer, events,
+            activitySkew, hotAccountRatio, hotActivityShare, transferRatio, depositRatio, payeesPerAccount,
+            LocalDate.parse(startDate), historyDays, password, pin);
+        int exitCode = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            SyntheticDataSummary summary = new SyntheticDataGenerator(spec).load(connection);
+            Path directory = Paths.get(outputDir);
+            Files.createDirectories(directory);
+            writeTransferPairs(directory.resolve("transfer-pairs.txt"), summary);
+            writePopulation(connection, directory.resolve("population.tsv"), summary);
+            log.info("Benchmark files written to {}", directory.toAbsolutePath());
+        } catch (Exception e) {
+            log.error("Synthetic data generation failed", e);
+            exitCode = 1;
+        }
+        if (exitWhenDone) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+
+    // Disjoint account pairs, one "fromAccount toAccount pin" line each
+    private void writeTransferPairs(Path file, SyntheticDataSummary summary) throws Exception {
+        int pairs = Math.min(benchmarkPairs, summary.getAccounts() / 2);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < pairs; i++) {
+                long from = summary.getFirstAccountId() + 2L * i;
+                writer.write(SyntheticDataGenerator.accountNumber(from) + " "
+                    + SyntheticDataGenerator.accountNumber(from + 1) + " " + pin);
+                writer.newLine();
+            }
+        }
+    }
+
+    // One "email<TAB>customer id<TAB>account,account" line per customer
+    private void writePopulation(Connection connection, Path file, SyntheticDataSummary summary) throws Exception {
+        long lastCustomerId = summary.getFirstCustomerId() + Math.min(populationCustomers, summary.getCustomers()) - 1;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT c.id, c.email, string_agg(a.account_number, ',' ORDER BY a.id) FROM customers c "
+                    + "JOIN accounts a ON a.customer_id = c.id WHERE c.id BETWEEN ? AND ? GROUP BY c.id, c.email ORDER BY c.id");
+             BufferedWriter writer = Files.newBufferedWriter(file)) {
+            statement.setLong(1, summary.getFirstCustomerId());
+            statement.setLong(2, lastCustomerId);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    writer.write(rows.getString(2) + "\t" + rows.getLong(1) + "\t" + rows.getString(3));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.banking.datagen;
+
+import com.banking.model.TransactionCategory;
+import com.banking.security.PasswordUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Loads a synthetic but realistic dataset of customers, accounts and transactions into
+ * PostgreSQL with COPY, for benchmarks and for tests that need volume.
+ *
+ * Every account opens with a deposit before the history starts; after that events are spread
+ * evenly over the history and each picks an account from a Zipf distribution over a shuffled
+ * account order, with a small set of hot accounts taking a fixed extra share on top. Spending is
+ * drawn from per-category log-normal amounts, and transfers go to a few payees per account drawn
+ * from the same skewed distribution, so popular accounts also receive most of the money.
+ * Balances are carried per account while rows are written, so each transaction's
+ * balance_after_transaction follows from the one before it and no account ever goes negative;
+ * a withdrawal or transfer the account can't cover becomes an income deposit instead.
+ *
+ * Everything comes from one seeded SplittableRandom in a fixed order, so a spec reproduces the
+ * same rows. All rows are written in a single transaction with the three tables locked against
+ * inserts; the id sequences are moved past the new rows before committing.
+ */
+public class SyntheticDataGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private static final String[] FIRST_NAMES = {
+        "Thabo", "Lerato", "Sipho", "Naledi", "Johan", "Anika", "Pieter", "Zanele", "Kagiso", "Ayesha",
+        "Mandla", "Palesa", "David", "Sarah", "Themba", "Nomsa", "Ruan", "Precious", "Bongani", "Megan"
+    };
+    private static final String[] LAST_NAMES = {
+        "Mahlangu", "Nkosi", "Dlamini", "van der Merwe", "Botha", "Naidoo", "Mokoena", "Khumalo",
+        "Pillay", "Smith", "Ndlovu", "Pretorius", "Molefe", "Jacobs", "Zulu", "Mthembu"
+    };
+    private static final String[] CITIES = {
+        "Johannesburg", "Pretoria", "Cape Town", "Durban", "Gqeberha", "Bloemfontein", "Polokwane", "Mbombela"
+    };
+
+    // Spending categories with relative frequency, median amount in cents and merchants
+    private static final TransactionCategory[] SPEND_CATEGORIES = {
+        TransactionCategory.FOOD, TransactionCategory.TRANSPORT, TransactionCategory.BILLS,
+        TransactionCategory.SHOPPING, TransactionCategory.ENTERTAINMENT, TransactionCategory.HEALTHCARE,
+        TransactionCategory.EDUCATION
+    };
+    private static final double[] SPEND_WEIGHTS = { 30, 15, 15, 20, 10, 5, 5 };
+    private static final long[] SPEND_MEDIAN_CENTS = { 25_000, 30_000, 90_000, 60_000, 20_000, 45_000, 150_000 };
+    private static final String[][] MERCHANTS = {
+        { "Woolworths groceries", "Pick n Pay groceries", "Checkers groceries", "Spar groceries", "Restaurant" },
+        { "Uber trip", "Fuel purchase", "Gautrain", "Taxi fare", "Parking" },
+        { "Electricity prepaid", "Water and rates", "Vodacom airtime", "Insurance premium", "Internet subscription" },
+        { "Takealot order", "Mr Price", "Game store", "Clothing store", "Hardware store" },
+        { "Netflix subscription", "Cinema tickets", "Showmax subscription", "Concert tickets", "Spotify subscription" },
+        { "Pharmacy", "Doctor consultation", "Dentist", "Medical aid", "Optometrist" },
+        { "School fees", "University fees", "Textbooks", "Online course", "Stationery" }
+    };
+
+    private static final long SALARY_MEDIAN_CENTS = 1_800_000;
+    private static final long CASH_DEPOSIT_MEDIAN_CENTS = 50_000;
+    private static final long TRANSFER_MEDIAN_CENTS = 100_000;
+    private static final long OPENING_DEPOSIT_MEDIAN_CENTS = 500_000;
+    private static final int PROGRESS_INTERVAL = 10_000_000;
+
+    private final SyntheticDataSpec spec;
+    private final double[] spendCumulative;
+
+    public SyntheticDataGenerator(SyntheticDataSpec spec) {
+        if (spec.getCustomers() <= 0 || spec.getMaxAccountsPerCustomer() <= 0 || spec.getEvents() < 0) {
+            throw new RuntimeException("Customers and accounts per customer must be positive and events not negative");
+        }
+        this.spec = spec;
+        this.spendCumulative = cumulative(SPEND_WEIGHTS);
+    }
+
+    public static String customerId(long id) {
+        return String.format("SYN%08d", id);
+    }
+
+    // SYN prefix keeps generated numbers apart from the ACC numbers handed out to real accounts
+    public static String accountNumber(long id) {
+        return String.format("SYN%010d", id);
+    }
+
+    public static String email(long id) {
+        return "synthetic-" + id + "@example.com";
+    }
+
+    /**
+     * Writes the dataset through the given PostgreSQL connection and commits it. The connection's
+     * auto-commit setting is restored afterwards.
+     */
+    public SyntheticDataSummary load(Connection connection) throws SQLException {
+        long started = System.currentTimeMillis();
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        SyntheticDataSummary summary;
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE customers, accounts, transactions IN SHARE ROW EXCLUSIVE MODE");
+            }
+            summary = generate(connection, copyManager);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE customers, accounts, transactions");
+        }
+        summary.setElapsedMillis(System.currentTimeMillis() - started);
+        log.info("Generated {} customers, {} accounts ({} hot) and {} transactions from seed {} in {} ms",
+            summary.getCustomers(), summary.getAccounts(), summary.getHotAccounts(), summary.getTransactions(),
+            summary.getSeed(), summary.getElapsedMillis());
+        return summary;
+    }
+
+    private SyntheticDataSummary generate(Connection connection, CopyManager copyManager) throws SQLException {
+        SplittableRandom random = new SplittableRandom(spec.getSeed());
+        long customerBase = maxId(connection, "customers");
+        long accountBase = maxId(connection, "accounts");
+        long transactionBase = maxId(connection, "transactions");
+        long startEpoch = spec.getStartDate().atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        long historySeconds = Math.max(1, spec.getHistoryDays()) * 86_400L;
+
+        // Customers and the accounts they own, each opened some time before the history starts
+        int customers = spec.getCustomers();
+        int[] accountsPerCustomer = new int[customers];
+        int accounts = 0;
+        for (int c = 0; c < customers; c++) {
+            accountsPerCustomer[c] = 1 + random.nextInt(spec.getMaxAccountsPerCustomer());
+            accounts += accountsPerCustomer[c];
+        }
+        long[] openedAt = new long[accounts];
+        String passwordHash = PasswordUtils.hashPassword(spec.getPassword());
+        String pinHash = PasswordUtils.hashPassword(spec.getPin());
+
+        CopyWriter customerRows = new CopyWriter(copyManager, "COPY customers (id, email, full_name, password_hash, "
+            + "customer_id, phone_number, address, created_at, updated_at) FROM STDIN");
+        CopyWriter accountRows = null;
+        try {
+            long[] joinedAt = new long[customers];
+            for (int c = 0; c < customers; c++) {
+                long id = customerBase + c + 1;
+                joinedAt[c] = startEpoch - historySeconds - random.nextLong(historySeconds);
+                customerRows.number(id)
+                    .text(email(id))
+                    .text(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                    .text(passwordHash)
+                    .text(customerId(id))
+                    .text("+27" + (600_000_000 + random.nextInt(240_000_000)))
+                    .text((1 + random.nextInt(999)) + " Main Road " + CITIES[random.nextInt(CITIES.length)])
+                    .timestamp(joinedAt[c])
+                    .timestamp(joinedAt[c]);
+                customerRows.endRow();
+            }
+            customerRows.finish();
+
+            accountRows = new CopyWriter(copyManager, "COPY accounts (id, account_number, account_type, status, "
+                + "balance, pin_hash, created_at, updated_at, customer_id) FROM STDIN");
+            int account = 0;
+            for (int c = 0; c < customers; c++) {
+                for (int k = 0; k < accountsPerCustomer[c]; k++, account++) {
+                    long id = accountBase + account + 1;
+                    openedAt[account] = joinedAt[c] + random.nextLong(startEpoch - joinedAt[c]);
+                    accountRows.number(id)
+                        .text(accountNumber(id))
+                        .text(k % 2 == 0 ? "CURRENT" : "SAVINGS")
+                        .text("ACTIVE")
+                        .cents(0)
+                        .text(pinHash)
+                        .timestamp(openedAt[account])
+                        .timestamp(openedAt[account])
+                        .number(customerBase + c + 1);
+                    accountRows.endRow();
+                }
+            }
+            accountRows.finish();
+        } catch (SQLException | RuntimeException e) {
+            customerRows.abort();
+            if (accountRows != null) {
+                accountRows.abort();
+            }
+            throw e;
+        }
+
+        // Activity ranks: a shuffled account order with Zipf weights, the first ranks being hot
+        int[] rankToAccount = new int[accounts];
+        for (int i = 0; i < accounts; i++) {
+            rankToAccount[i] = i;
+        }
+        for (int i = accounts - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = rankToAccount[i];
+            rankToAccount[i] = rankToAccount[j];
+            rankToAccount[j] = swap;
+        }
+        double[] rankCumulative = new double[accounts];
+        double total = 0;
+        for (int r = 0; r < accounts; r++) {
+            total += 1.0 / Math.pow(r + 1, spec.getActivitySkew());
+            rankCumulative[r] = total;
+        }
+        int hotAccounts = spec.getHotAccountRatio() > 0
+            ? (int) Math.max(1, Math.min(accounts, Math.round(accounts * spec.getHotAccountRatio()))) : 0;
+
+        long[] balances = new long[accounts];
+        long transactionId = transactionBase;
+        CopyWriter rows = new CopyWriter(copyManager, "COPY transactions (id, transaction_id, description, amount, "
+            + "category, type, transaction_date, to_account_number, balance_after_transaction, account_id) FROM STDIN");
+        try {
+            for (int a = 0; a < accounts; a++) {
+                long amount = logNormalCents(random, OPENING_DEPOSIT_MEDIAN_CENTS, 1.0);
+                balances[a] += amount;
+                writeTransaction(rows, ++transactionId, "Opening deposit", amount, TransactionCategory.OTHER,
+                    "DEPOSIT", openedAt[a], null, balances[a], accountBase + a + 1);
+            }
+
+            double secondsPerEvent = spec.getEvents() > 0 ? (double) historySeconds / spec.getEvents() : 0;
+            for (long e = 0; e < spec.getEvents(); e++) {
+                if (e > 0 && e % PROGRESS_INTERVAL == 0) {
+                    log.info("Generated {} of {} events", e, spec.getEvents());
+                }
+                long at = startEpoch + (long) ((e + random.nextDouble()) * secondsPerEvent);
+                int a = pickAccount(random, rankToAccount, rankCumulative, hotAccounts);
+                long accountId = accountBase + a + 1;
+                double kind = random.nextDouble();
+
+                if (kind < spec.getTransferRatio() && accounts > 1) {
+                    int payee = payee(a, random.nextInt(Math.max(1, spec.getPayeesPerAccount())),
+                        rankToAccount, rankCumulative);
+                    long amount = logNormalCents(random, TRANSFER_MEDIAN_CENTS, 1.0);
+                    if (amount <= balances[a]) {
+                        long payeeId = accountBase + payee + 1;
+                        balances[a] -= amount;
+                        balances[payee] += amount;
+                        writeTransaction(rows, ++transactionId, "Transfer to " + accountNumber(payeeId), amount,
+                            TransactionCategory.OTHER, "TRANSFER_OUT", at, accountNumber(payeeId), balances[a], accountId);
+                        writeTransaction(rows, ++transactionId, "Transfer from " + accountNumber(accountId), amount,
+                            TransactionCategory.OTHER, "TRANSFER_IN", at, null, balances[payee], payeeId);
+                        continue;
+                    }
+                } else if (kind >= spec.getTransferRatio() + spec.getDepositRatio()) {
+                    int category = Arrays.binarySearch(spendCumulative, random.nextDouble() * spendCumulative[spendCumulative.length - 1]);
+                    category = category >= 0 ? category : -category - 1;
+                    long amount = logNormalCents(random, SPEND_MEDIAN_CENTS[category], 0.8);
+                    if (amount <= balances[a]) {
+                        balances[a] -= amount;
+                        String[] merchants = MERCHANTS[category];
+                        writeTransaction(rows, ++transactionId, merchants[random.nextInt(merchants.length)], amount,
+                            SPEND_CATEGORIES[category], "WITHDRAWAL", at, null, balances[a], accountId);
+                        continue;
+                    }
+                }
+
+                // Deposits, and anything the account couldn't cover: mostly salaries, some cash
+                boolean salary = random.nextDouble() < 0.6;
+                long amount = salary ? logNormalCents(random, SALARY_MEDIAN_CENTS, 0.5)
+                    : logNormalCents(random, CASH_DEPOSIT_MEDIAN_CENTS, 1.0);
+                balances[a] += amount;
+                writeTransaction(rows, ++transactionId, salary ? "Salary payment" : "Cash deposit", amount,
+                    salary ? TransactionCategory.SALARY : TransactionCategory.OTHER, "DEPOSIT", at, null,
+                    balances[a], accountId);
+            }
+            rows.finish();
+        } catch (SQLException | RuntimeException e) {
+            rows.abort();
+            throw e;
+        }
+
+        // Accounts were copied before their history was known; set the final balances in one pass
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE synthetic_balances (account_id BIGINT PRIMARY KEY, "
+                + "balance DECIMAL(15,2)) ON COMMIT DROP");
+        }
+        CopyWriter balanceRows = new CopyWriter(copyManager, "COPY synthetic_balances (account_id, balance) FROM STDIN");
+        try {
+            for (int a = 0; a < accounts; a++) {
+                balanceRows.number(accountBase + a + 1).cents(balances[a]);
+                balanceRows.endRow();
+            }
+            balanceRows.finish();
+        } catch (SQLException | RuntimeException e) {
+            balanceRows.abort();
+            throw e;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE accounts a SET balance = b.balance FROM synthetic_balances b "
+                + "WHERE a.id = b.account_id");
+        }
+
+        advanceSequence(connection, "customers", customerBase + customers);
+        advanceSequence(connection, "accounts", accountBase + accounts);
+        advanceSequence(connection, "transactions", transactionId);
+
+        return new SyntheticDataSummary(spec.getSeed(), customerBase + 1, customers, accountBase + 1, accounts,
+            hotAccounts, transactionBase + 1, transactionId - transactionBase, 0L);
+    }
+
+    private void writeTransaction(CopyWriter rows, long id, String description, long amount,
+                                  TransactionCategory category, String type, long at, String toAccountNumber,
+                                  long balanceAfter, long accountId) throws SQLException {
+        rows.number(id)
+            .text("SYN" + id)
+            .text(description)
+            .cents(amount)
+            .text(category.name())
+            .text(type)
+            .timestamp(at);
+        if (toAccountNumber != null) {
+            rows.text(toAccountNumber);
+        } else {
+            rows.nullValue();
+        }
+        rows.cents(balanceAfter).number(accountId);
+        rows.endRow();
+    }
+
+    private int pickAccount(SplittableRandom random, int[] rankToAccount, double[] rankCumulative, int hotAccounts) {
+        if (hotAccounts > 0 && random.nextDouble() < spec.getHotActivityShare()) {
+            return rankToAccount[random.nextInt(hotAccounts)];
+        }
+        return rankToAccount[sampleRank(random, rankCumulative)];
+    }
+
+    // The payee in a given slot is fixed per account, so the transfer graph is stable over time
+    private int payee(int account, int slot, int[] rankToAccount, double[] rankCumulative) {
+        SplittableRandom slotRandom = new SplittableRandom(spec.getSeed() * 1_000_003L
+            + (long) account * Math.max(1, spec.getPayeesPerAccount()) + slot);
+        int payee = rankToAccount[sampleRank(slotRandom, rankCumulative)];
+        return payee != account ? payee : (account + 1) % rankToAccount.length;
+    }
+
+    private static int sampleRank(SplittableRandom random, double[] rankCumulative) {
+        int rank = Arrays.binarySearch(rankCumulative, random.nextDouble() * rankCumulative[rankCumulative.length - 1]);
+        return Math.min(rank >= 0 ? rank : -rank - 1, rankCumulative.length - 1);
+    }
+
+    // Log-normal around the median, never below R1
+    private static long logNormalCents(SplittableRandom random, long medianCents, double sigma) {
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        return Math.max(100, Math.round(medianCents * Math.exp(sigma * gaussian)));
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    private static long maxId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private static void advanceSequence(Connection connection, String table, long lastId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT setval(pg_get_serial_sequence(?, 'id'), GREATEST(?, 1))")) {
+            statement.setString(1, table);
+            statement.setLong(2, lastId);
+            statement.executeQuery().close();
+        }
+    }
+}
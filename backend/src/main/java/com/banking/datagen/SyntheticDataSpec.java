@@ -0,0 +1,43 @@
+package com.banking.datagen;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Shape of a synthetic dataset. The same spec and seed against an empty database always
+ * produce the same rows; against a non-empty one the rows are identical apart from their ids.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyntheticDataSpec {
+    private long seed = 42L;
+    private int customers = 10_000;
+    private int maxAccountsPerCustomer = 3;
+
+    // Activity events after each account's opening deposit; a transfer writes two rows
+    private long events = 1_000_000L;
+
+    // Zipf exponent of activity per account: 0 is uniform, around 1 gives a long tail
+    private double activitySkew = 1.0;
+
+    // Fraction of accounts that are hot, and the share of all events that goes to them
+    private double hotAccountRatio = 0.001;
+    private double hotActivityShare = 0.2;
+
+    private double transferRatio = 0.25;
+    private double depositRatio = 0.25;
+
+    // Distinct payees each account sends transfers to, drawn from the same skewed distribution
+    private int payeesPerAccount = 5;
+
+    private LocalDate startDate = LocalDate.of(2024, 1, 1);
+    private int historyDays = 365;
+
+    // Shared by every generated customer and account, matching the load test harness defaults
+    private String password = "loadtest-password";
+    private String pin = "1234";
+}
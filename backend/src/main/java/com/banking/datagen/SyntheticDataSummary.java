@@ -0,0 +1,20 @@
+package com.banking.datagen;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyntheticDataSummary {
+    private long seed;
+    private long firstCustomerId;
+    private int customers;
+    private long firstAccountId;
+    private int accounts;
+    private int hotAccounts;
+    private long firstTransactionId;
+    private long transactions;
+    private long elapsedMillis;
+}
@@ -0,0 +1,22 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+// One decoded audit journal record
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditRecord {
+    private long sequence;
+    private long timestamp; // epoch millis
+    private String type;
+    private long transactionRowId;
+    private String accountNumber;
+    private String counterparty;
+    private BigDecimal amount;
+    private BigDecimal balanceAfter;
+    private String hash; // hex SHA-256 chaining this record to the previous one
+}
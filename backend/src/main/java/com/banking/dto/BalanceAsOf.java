@@ -0,0 +1,18 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceAsOf {
+    private String accountNumber;
+    private LocalDateTime asOf;
+    private BigDecimal balance; // null when the account was opened after asOf
+    private String transactionId; // last posting at or before asOf, null if there was none
+    private LocalDateTime transactionDate;
+}
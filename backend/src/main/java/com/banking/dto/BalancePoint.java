@@ -0,0 +1,15 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalancePoint {
+    private LocalDate date; // first day of the bucket
+    private BigDecimal balance; // balance at the end of the bucket
+}
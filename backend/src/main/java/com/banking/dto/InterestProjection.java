@@ -0,0 +1,16 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterestProjection {
+    private BigDecimal annualRate;
+    private int months;
+    private int accounts;
+    private BigDecimal totalInterest;
+}
@@ -0,0 +1,34 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import javax.validation.Valid;
+import javax.validation.constraints.Email;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
+
+// One customer in a bulk onboarding call, with the accounts to open for them
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OnboardingRequest {
+    @NotBlank(message = "Full name is required")
+    private String fullName;
+    
+    @Email(message = "Invalid email format")
+    @NotBlank(message = "Email is required")
+    private String email;
+    
+    @NotBlank(message = "Password is required")
+    @Size(min = 6, message = "Password must be at least 6 characters")
+    private String password;
+    
+    private String phoneNumber;
+    private String address;
+    
+    @Valid
+    private List<AccountDTO> accounts = new ArrayList<>();
+}
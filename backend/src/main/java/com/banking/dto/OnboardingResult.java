@@ -0,0 +1,18 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+// Outcome for one request of a bulk onboarding call, in request order; error is set instead of the ids
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OnboardingResult {
+    private String email;
+    private Long id;
+    private String customerId;
+    private List<String> accountNumbers;
+    private String error;
+}
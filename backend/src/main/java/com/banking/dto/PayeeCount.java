@@ -0,0 +1,15 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayeeCount {
+    private String accountNumber;
+    private long transfers;
+    private BigDecimal amount;
+}
@@ -0,0 +1,20 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayeeRanking {
+    private Long customerId; // null for the bank-wide ranking
+    private String rankedBy; // count or amount
+    private String source; // sketch, or exact when the customer isn't tracked
+    private List<PayeeCount> payees;
+    private Long throughTransactionId; // transfers up to this row are counted, and later ones committed on the answering instance
+    private Long maxOvercount; // sketch estimates exceed the true transfers by at most this, with high probability
+    private BigDecimal maxAmountOvercount;
+}
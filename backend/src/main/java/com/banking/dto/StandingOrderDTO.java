@@ -0,0 +1,31 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import com.banking.model.StandingOrderFrequency;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandingOrderDTO {
+    @NotBlank(message = "Destination account is required")
+    private String toAccountNumber;
+    
+    @NotNull(message = "Amount is required")
+    private BigDecimal amount;
+    
+    @NotNull(message = "Frequency is required")
+    private StandingOrderFrequency frequency;
+    
+    @NotNull(message = "First run is required")
+    private LocalDateTime firstRunAt;
+    
+    private LocalDateTime endAt;
+    private String description;
+    private String pin;
+}
@@ -0,0 +1,19 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementAccountTotals {
+    private String accountNumber;
+    private String accountType;
+    private BigDecimal openingBalance;
+    private BigDecimal moneyIn;
+    private BigDecimal moneyOut;
+    private BigDecimal closingBalance;
+    private int transactions;
+}
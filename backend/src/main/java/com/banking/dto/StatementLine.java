@@ -0,0 +1,23 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One posting of a consolidated statement with the running balances after it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementLine {
+    private LocalDateTime date;
+    private String accountNumber;
+    private String transactionId;
+    private String type;
+    private String category;
+    private String description;
+    private BigDecimal change; // signed: money in is positive
+    private BigDecimal accountBalance;
+    private BigDecimal combinedBalance; // all of the customer's accounts together
+}
@@ -0,0 +1,22 @@
+package com.banking.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+public class TransactionSearchCriteria {
+    private String query;
+    private boolean fuzzy;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private String type;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private LocalDateTime beforeDate; // keyset cursor: date and id of the last row on the previous page
+    private Long beforeId;
+    private int limit = 20;
+}
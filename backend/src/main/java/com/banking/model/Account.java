@@ -4,9 +4,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +37,31 @@ public class Account {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
+    // Balance writers lock the row first; this catches any save made from a copy read before
+    // someone else's committed change, which then fails instead of overwriting it
+    @JsonIgnore
+    @Version
+    @Column(columnDefinition = "BIGINT NOT NULL DEFAULT 0") // so schema updates fill existing rows
+    private Long version;
+    
+    // Number of balance shards when the account runs in hot-account mode, null otherwise.
+    // In that mode balance holds only the consolidated part; see AccountBalanceShard
+    private Integer balanceShards;
+    
+    @JsonIgnore
+    @Transient
+    private BigDecimal shardedBalance;
+    
+    // Interest accrued daily and not yet credited, and the last day accrued. Only the interest
+    // jobs write these, with their own UPDATEs, so entity saves can't overwrite them
+    @JsonIgnore
+    @Column(precision = 19, scale = 10, insertable = false, updatable = false)
+    private BigDecimal accruedInterest;
+    
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private LocalDate accrualDate;
+    
     @JsonBackReference
     @ManyToOne
     @JoinColumn(name = "customer_id")
@@ -43,6 +70,17 @@ public class Account {
     @OneToMany(mappedBy = "account", cascade = CascadeType.ALL)
     private List<Transaction> transactions = new ArrayList<>();
     
+    @JsonIgnore
+    public boolean isHotAccount() {
+        return balanceShards != null && balanceShards > 0;
+    }
+    
+    // Consolidated balance plus whatever was last read from the shards
+    public BigDecimal getAvailableBalance() {
+        BigDecimal available = balance != null ? balance : BigDecimal.ZERO;
+        return shardedBalance != null ? available.add(shardedBalance) : available;
+    }
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,31 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+
+// One slice of a hot account's balance; credits land on a single shard so they don't all
+// queue on the same accounts row lock
+@Entity
+@Table(name = "account_balance_shards",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "shard_index"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalanceShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+    
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+    
+    @Column(nullable = false)
+    private BigDecimal balance;
+}
@@ -0,0 +1,31 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Outbox row written in the same database transaction as the money movement it describes
+@Entity
+@Table(name = "account_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "customer_id")
+    private Long customerId;
+    
+    private String accountNumber;
+    private String eventType; // transaction type: DEPOSIT, WITHDRAWAL, TRANSFER_IN, TRANSFER_OUT, INTEREST
+    private String transactionId;
+    private BigDecimal amount;
+    private BigDecimal balanceAfterTransaction;
+    private LocalDateTime createdAt;
+}
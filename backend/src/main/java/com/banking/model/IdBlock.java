@@ -0,0 +1,24 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// High-water mark of an identifier series; instances lease ranges from nextValue (see IdAllocator)
+@Entity
+@Table(name = "id_blocks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdBlock {
+    @Id
+    private String name;
+    
+    @Column(nullable = false)
+    private Long nextValue;
+    
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,29 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobRun {
+    @Id
+    private String runKey; // e.g. monthly-interest-2026-10, unique per scheduled occurrence
+    
+    @Column(nullable = false)
+    private String jobName;
+    
+    private String owner; // instance that won the run and planned its shards
+    private int shardCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt; // set once no shard is pending, whether or not some failed
+    
+    @Column(columnDefinition = "INTEGER NOT NULL DEFAULT 0")
+    private int failedShards;
+}
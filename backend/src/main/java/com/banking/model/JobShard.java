@@ -0,0 +1,45 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_shards",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"run_key", "shard_index"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "run_key", nullable = false)
+    private String runKey;
+    
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+    
+    // Inclusive id range of the keyspace this shard covers
+    private long rangeStart;
+    private long rangeEnd;
+    
+    @Enumerated(EnumType.STRING)
+    private JobShardStatus status;
+    
+    private String owner;
+    private LocalDateTime completedAt;
+    
+    // Failed attempts so far, with the last one's error and time
+    @Column(columnDefinition = "INTEGER NOT NULL DEFAULT 0")
+    private int attempts;
+    
+    @Column(length = 1000)
+    private String lastError;
+    
+    private LocalDateTime lastAttemptAt;
+}
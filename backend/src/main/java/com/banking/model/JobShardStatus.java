@@ -0,0 +1,7 @@
+package com.banking.model;
+
+public enum JobShardStatus {
+    PENDING,
+    DONE,
+    FAILED // gave up after banking.jobs.max-attempts failures; reset with JobCoordinator.retryFailed
+}
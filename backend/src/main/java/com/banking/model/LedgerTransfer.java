@@ -0,0 +1,40 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// A transfer submitted to the ledger engine; the id is the ticket handed back to the client
+@Entity
+@Table(name = "ledger_transfers")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerTransfer {
+    @Id
+    private String id;
+    
+    @Column(nullable = false)
+    private String fromAccountNumber;
+    
+    @Column(nullable = false)
+    private String toAccountNumber;
+    
+    @Column(nullable = false)
+    private BigDecimal amount;
+    
+    private String description;
+    
+    @Enumerated(EnumType.STRING)
+    private LedgerTransferStatus status;
+    
+    private String error;
+    private String fromTransactionId;
+    private String toTransactionId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,8 @@
+package com.banking.model;
+
+public enum LedgerTransferStatus {
+    ACCEPTED,   // stored and queued, not yet applied
+    DEBITED,    // source side committed, credit handed off to the destination's partition
+    COMPLETED,
+    REJECTED
+}
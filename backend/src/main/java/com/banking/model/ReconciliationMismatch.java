@@ -0,0 +1,34 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reconciliation_mismatches")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationMismatch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String runKey;
+    
+    private Long accountId;
+    private String accountNumber;
+    
+    @Enumerated(EnumType.STRING)
+    private ReconciliationMismatchType mismatchType;
+    
+    private Long transactionId; // the offending row for CHAIN_BREAK, null for BALANCE_DRIFT
+    private BigDecimal expected;
+    private BigDecimal actual;
+    private LocalDateTime detectedAt;
+}
@@ -0,0 +1,6 @@
+package com.banking.model;
+
+public enum ReconciliationMismatchType {
+    CHAIN_BREAK,    // balanceAfterTransaction is not the previous balance plus or minus the amount
+    BALANCE_DRIFT   // the account balance differs from the balance its transactions add up to
+}
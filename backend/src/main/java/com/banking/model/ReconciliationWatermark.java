@@ -0,0 +1,25 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// How far an account's ledger has been verified; the next reconciliation starts after lastTransactionId
+@Entity
+@Table(name = "reconciliation_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationWatermark {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+    
+    private Long lastTransactionId;
+    private BigDecimal verifiedBalance; // balance after lastTransactionId, as recomputed from the amounts
+    private LocalDateTime verifiedAt;
+}
@@ -0,0 +1,26 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Serialized streaming analytics state, restored on startup (see PayeeAnalyticsService)
+@Entity
+@Table(name = "sketch_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SketchSnapshot {
+    @Id
+    private String name;
+    
+    private Long lastTransactionId; // the tailer's position when the snapshot was taken
+    
+    @Column(columnDefinition = "BYTEA")
+    private byte[] payload;
+    
+    private LocalDateTime createdAt;
+}
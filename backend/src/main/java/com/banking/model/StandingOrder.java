@@ -0,0 +1,66 @@
+package com.banking.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "standing_orders")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StandingOrder {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String fromAccountNumber;
+    
+    @Column(nullable = false)
+    private String toAccountNumber;
+    
+    @Column(nullable = false)
+    private BigDecimal amount;
+    
+    private String description;
+    
+    @Enumerated(EnumType.STRING)
+    private StandingOrderFrequency frequency;
+    
+    @Enumerated(EnumType.STRING)
+    private StandingOrderStatus status;
+    
+    private LocalDateTime firstRunAt;
+    private LocalDateTime endAt; // no occurrences after this, null for open-ended orders
+    
+    // Occurrences settled (paid or skipped) so far; the current one is frequency.occurrence(firstRunAt, count)
+    private long occurrenceCount;
+    
+    // When the current occurrence is next attempted: its due time, or a retry after a failure
+    private LocalDateTime nextRunAt;
+    
+    private int failedAttempts; // failed attempts at the current occurrence
+    private String lastError;
+    private LocalDateTime lastRunAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+        if (status == null) {
+            status = StandingOrderStatus.ACTIVE;
+        }
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,18 @@
+package com.banking.model;
+
+import java.time.LocalDateTime;
+
+public enum StandingOrderFrequency {
+    DAILY,
+    WEEKLY,
+    MONTHLY;
+    
+    // The n-th occurrence counted from the first, so monthly orders keep their day of month
+    public LocalDateTime occurrence(LocalDateTime first, long n) {
+        switch (this) {
+            case DAILY: return first.plusDays(n);
+            case WEEKLY: return first.plusWeeks(n);
+            default: return first.plusMonths(n);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.banking.model;
+
+public enum StandingOrderStatus {
+    ACTIVE,
+    PAUSED,
+    CANCELLED,
+    COMPLETED
+}
@@ -8,6 +8,7 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "transactions")
@@ -41,7 +42,8 @@ public class Transaction {
     protected void onCreate() {
         transactionDate = LocalDateTime.now();
         if (transactionId == null) {
-            transactionId = "TXN" + System.currentTimeMillis();
+            // Rows saved outside TransactionService; a timestamp alone collides within a batch
+            transactionId = "TXN-" + UUID.randomUUID();
         }
     }
 }
\ No newline at end of file
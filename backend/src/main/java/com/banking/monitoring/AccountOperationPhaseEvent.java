@@ -0,0 +1,51 @@
+package com.banking.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One timed phase of a deposit, withdrawal or transfer. Fields are only filled in when a
+ * recording wants the event, so with JFR off a phase costs little more than two clock checks
+ * the JIT can drop.
+ */
+@Name("com.banking.AccountOperationPhase")
+@Label("Account Operation Phase")
+@Category({ "Banking", "Accounts" })
+@StackTrace(false)
+public class AccountOperationPhaseEvent extends Event {
+    
+    public static final String ACCOUNT_LOAD = "ACCOUNT_LOAD";
+    public static final String PIN_VERIFY = "PIN_VERIFY";
+    public static final String FUNDS_CHECK = "FUNDS_CHECK"; // available funds and velocity limits
+    public static final String BALANCE_UPDATE = "BALANCE_UPDATE";
+    public static final String TRANSACTION_INSERT = "TRANSACTION_INSERT";
+    
+    @Label("Operation")
+    private String operation;
+    
+    @Label("Phase")
+    private String phase;
+    
+    @Label("Account Number")
+    private String accountNumber;
+    
+    public static AccountOperationPhaseEvent start(String operation, String phase) {
+        AccountOperationPhaseEvent event = new AccountOperationPhaseEvent();
+        event.operation = operation;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+    
+    // Phases that throw are left uncommitted
+    public void finish(String accountNumber) {
+        end();
+        if (shouldCommit()) {
+            this.accountNumber = accountNumber;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.banking.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One account-id shard of a monthly interest run
+@Name("com.banking.InterestChunk")
+@Label("Interest Run Chunk")
+@Category({ "Banking", "Jobs" })
+@StackTrace(false)
+public class InterestChunkEvent extends Event {
+    
+    @Label("Run Key")
+    public String runKey;
+    
+    @Label("First Account Id")
+    public long rangeStart;
+    
+    @Label("Last Account Id")
+    public long rangeEnd;
+    
+    @Label("Accounts")
+    public int accounts;
+    
+    @Label("Accounts Credited")
+    public int credited;
+}
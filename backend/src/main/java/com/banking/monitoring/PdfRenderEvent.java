@@ -0,0 +1,45 @@
+package com.banking.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One stage of rendering a statement PDF
+@Name("com.banking.PdfRender")
+@Label("PDF Render Stage")
+@Category({ "Banking", "Statements" })
+@StackTrace(false)
+public class PdfRenderEvent extends Event {
+    
+    public static final String DOCUMENT_SETUP = "DOCUMENT_SETUP";
+    public static final String ACCOUNT_DETAILS = "ACCOUNT_DETAILS";
+    public static final String TRANSACTION_TABLE = "TRANSACTION_TABLE";
+    public static final String LAYOUT_AND_WRITE = "LAYOUT_AND_WRITE";
+    
+    @Label("Stage")
+    private String stage;
+    
+    @Label("Account Number")
+    private String accountNumber;
+    
+    @Label("Transactions")
+    private int transactionCount;
+    
+    public static PdfRenderEvent start(String stage) {
+        PdfRenderEvent event = new PdfRenderEvent();
+        event.stage = stage;
+        event.begin();
+        return event;
+    }
+    
+    public void finish(String accountNumber, int transactionCount) {
+        end();
+        if (shouldCommit()) {
+            this.accountNumber = accountNumber;
+            this.transactionCount = transactionCount;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.banking.repository;
+
+import com.banking.model.AccountBalanceShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountBalanceShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+    
+    @Modifying
+    @Query("UPDATE AccountBalanceShard s SET s.balance = s.balance + :amount " +
+           "WHERE s.accountId = :accountId AND s.shardIndex = :shardIndex")
+    int credit(@Param("accountId") Long accountId, @Param("shardIndex") int shardIndex,
+               @Param("amount") BigDecimal amount);
+    
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM AccountBalanceShard s WHERE s.accountId = :accountId")
+    BigDecimal sumBalance(@Param("accountId") Long accountId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountBalanceShard s WHERE s.accountId = :accountId ORDER BY s.shardIndex")
+    List<AccountBalanceShard> findByAccountIdForUpdate(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,25 @@
+package com.banking.repository;
+
+import com.banking.model.AccountEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AccountEventRepository extends JpaRepository<AccountEvent, Long> {
+    List<AccountEvent> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
+    List<AccountEvent> findTop500ByCustomerIdAndIdGreaterThanOrderByIdAsc(Long customerId, Long id);
+    List<AccountEvent> findByIdInOrderByIdAsc(Collection<Long> ids);
+    
+    @Query("SELECT MAX(e.id) FROM AccountEvent e")
+    Long findMaxId();
+    
+    @Modifying
+    @Query("DELETE FROM AccountEvent e WHERE e.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,9 +1,19 @@
 package com.banking.repository;
 
 import com.banking.model.Account;
+import com.banking.model.AccountStatus;
+import com.banking.model.AccountType;
 import com.banking.model.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +23,61 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByAccountNumber(String accountNumber);
     List<Account> findByCustomerAndStatus(Customer customer, String status);
     boolean existsByAccountNumber(String accountNumber);
+    
+    // Hot accounts take credits without touching their row, so they have no usable version
+    @Query("SELECT a.updatedAt FROM Account a WHERE a.accountNumber = :accountNumber AND a.balanceShards IS NULL")
+    Optional<LocalDateTime> findUpdatedAtByAccountNumber(@Param("accountNumber") String accountNumber);
+    
+    // Held until the caller's transaction ends; every path that changes a balance loads the row this way
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.accountNumber = :accountNumber")
+    Optional<Account> findByAccountNumberForUpdate(@Param("accountNumber") String accountNumber);
+    
+    @Query("SELECT a.balanceShards FROM Account a WHERE a.accountNumber = :accountNumber")
+    Optional<Integer> findBalanceShardsByAccountNumber(@Param("accountNumber") String accountNumber);
+    
+    // Locks rows in id order so concurrent batches over overlapping accounts can't deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.accountNumber IN :accountNumbers ORDER BY a.id")
+    List<Account> findByAccountNumberInForUpdate(@Param("accountNumbers") Collection<String> accountNumbers);
+    
+    @Query("SELECT MIN(a.id) FROM Account a")
+    Long findMinId();
+    
+    @Query("SELECT MAX(a.id) FROM Account a")
+    Long findMaxId();
+    
+    List<Account> findByIdBetweenAndStatusOrderById(Long startId, Long endId, AccountStatus status);
+    
+    @Query("SELECT a FROM Account a JOIN FETCH a.customer " +
+           "WHERE a.id BETWEEN :startId AND :endId AND a.status = :status ORDER BY a.id")
+    List<Account> findWithCustomerByIdBetweenAndStatus(@Param("startId") Long startId, @Param("endId") Long endId,
+                                                       @Param("status") AccountStatus status);
+    
+    // id, account type and accrual date of the accounts an interest accrual shard covers
+    @Query("SELECT a.id, a.accountType, a.accrualDate FROM Account a " +
+           "WHERE a.id BETWEEN :startId AND :endId AND a.status = :status ORDER BY a.id")
+    List<Object[]> findAccrualStateByIdBetween(@Param("startId") Long startId, @Param("endId") Long endId,
+                                               @Param("status") AccountStatus status);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id BETWEEN :startId AND :endId AND a.status = :status " +
+           "AND a.accruedInterest >= :minimum ORDER BY a.id")
+    List<Account> findAccruedByIdBetweenForUpdate(@Param("startId") Long startId, @Param("endId") Long endId,
+                                                 @Param("status") AccountStatus status,
+                                                 @Param("minimum") BigDecimal minimum);
+    
+    @Modifying
+    @Query("UPDATE Account a SET a.accruedInterest = a.accruedInterest - :amount WHERE a.id = :id")
+    int deductAccruedInterest(@Param("id") Long id, @Param("amount") BigDecimal amount);
+    
+    // Available balances, including the shards of hot accounts
+    @Query("SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM AccountBalanceShard s WHERE s.accountId = a.id), 0) " +
+           "FROM Account a WHERE a.status = :status")
+    List<BigDecimal> findBalancesByStatus(@Param("status") AccountStatus status);
+    
+    @Query("SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM AccountBalanceShard s WHERE s.accountId = a.id), 0) " +
+           "FROM Account a WHERE a.status = :status AND a.accountType = :accountType")
+    List<BigDecimal> findBalancesByStatusAndAccountType(@Param("status") AccountStatus status,
+                                                       @Param("accountType") AccountType accountType);
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.banking.repository;
+
+import com.banking.model.JobRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, String> {
+    
+    // Returns 1 for the one instance whose insert wins, 0 for everyone else
+    @Modifying
+    @Query(value = "INSERT INTO job_runs (run_key, job_name, owner, shard_count, created_at) " +
+                   "VALUES (:runKey, :jobName, :owner, :shardCount, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (run_key) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("runKey") String runKey, @Param("jobName") String jobName,
+                       @Param("owner") String owner, @Param("shardCount") int shardCount);
+    
+    List<JobRun> findByCompletedAtIsNull();
+    
+    Optional<JobRun> findTopByJobNameOrderByCreatedAtDesc(String jobName);
+}
@@ -0,0 +1,47 @@
+package com.banking.repository;
+
+import com.banking.model.JobShard;
+import com.banking.model.JobShardStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface JobShardRepository extends JpaRepository<JobShard, Long> {
+    
+    // Row-locks the next unfinished shard for the rest of the caller's transaction, skipping
+    // shards another instance is working on. A crashed instance's lock goes away with its
+    // connection, which makes the shard claimable again. A shard that failed is left alone
+    // until the retry delay has passed.
+    @Query(value = "SELECT * FROM job_shards WHERE run_key = :runKey AND status = 'PENDING' " +
+                   "AND (last_attempt_at IS NULL OR last_attempt_at < :retryBefore) " +
+                   "ORDER BY shard_index LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<JobShard> claimNextPending(@Param("runKey") String runKey,
+                                        @Param("retryBefore") LocalDateTime retryBefore);
+    
+    // Counts a failed attempt, marking the shard FAILED once it has used up its attempts
+    @Modifying
+    @Query(value = "UPDATE job_shards SET attempts = attempts + 1, last_error = :error, last_attempt_at = :now, " +
+                   "status = CASE WHEN attempts + 1 >= :maxAttempts THEN 'FAILED' ELSE status END, " +
+                   "owner = :owner WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int recordFailure(@Param("id") Long id, @Param("error") String error, @Param("now") LocalDateTime now,
+                      @Param("maxAttempts") int maxAttempts, @Param("owner") String owner);
+    
+    @Modifying
+    @Query(value = "UPDATE job_shards SET status = 'PENDING', attempts = 0, last_attempt_at = NULL " +
+                   "WHERE run_key = :runKey AND status = 'FAILED'", nativeQuery = true)
+    int resetFailed(@Param("runKey") String runKey);
+    
+    long countByRunKeyAndStatus(String runKey, JobShardStatus status);
+    
+    @Query("SELECT COUNT(s) FROM JobShard s, JobRun r WHERE s.runKey = r.runKey " +
+           "AND r.jobName = :jobName AND s.status = :status")
+    long countByJobNameAndStatus(@Param("jobName") String jobName, @Param("status") JobShardStatus status);
+    
+    List<JobShard> findByRunKeyAndAttemptsGreaterThanOrderByShardIndex(String runKey, int attempts);
+}
@@ -0,0 +1,33 @@
+package com.banking.repository;
+
+import com.banking.model.LedgerTransfer;
+import com.banking.model.LedgerTransferStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LedgerTransferRepository extends JpaRepository<LedgerTransfer, String> {
+    
+    // Hand-offs whose credit has not committed yet, oldest first
+    List<LedgerTransfer> findTop500ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(LedgerTransferStatus status,
+                                                                             LocalDateTime before);
+    
+    // Held while crediting, so a recovered duplicate on another worker or instance waits and then
+    // sees the transfer already COMPLETED
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM LedgerTransfer t WHERE t.id = :id")
+    Optional<LedgerTransfer> findByIdForUpdate(@Param("id") String id);
+    
+    // A batch's debit tickets, locked in id order so a duplicate queued elsewhere waits and then skips
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM LedgerTransfer t WHERE t.id IN :ids ORDER BY t.id")
+    List<LedgerTransfer> findByIdInForUpdate(@Param("ids") Collection<String> ids);
+}
@@ -0,0 +1,12 @@
+package com.banking.repository;
+
+import com.banking.model.ReconciliationMismatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, Long> {
+    List<ReconciliationMismatch> findTop1000ByRunKeyOrderById(String runKey);
+    long countByRunKey(String runKey);
+}
@@ -0,0 +1,44 @@
+package com.banking.repository;
+
+import com.banking.model.ReconciliationWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReconciliationWatermarkRepository extends JpaRepository<ReconciliationWatermark, Long> {
+    
+    // One row per account in the range, read in a single snapshot:
+    // (id, account_number, balance incl. shards, balance_shards, latest transaction id,
+    //  watermark transaction id, watermark balance)
+    @Query(value = "SELECT a.id, a.account_number, " +
+                   "a.balance + COALESCE((SELECT SUM(s.balance) FROM account_balance_shards s WHERE s.account_id = a.id), 0), " +
+                   "a.balance_shards, (SELECT MAX(t.id) FROM transactions t WHERE t.account_id = a.id), " +
+                   "w.last_transaction_id, w.verified_balance " +
+                   "FROM accounts a LEFT JOIN reconciliation_watermarks w ON w.account_id = a.id " +
+                   "WHERE a.id BETWEEN :startId AND :endId ORDER BY a.id", nativeQuery = true)
+    List<Object[]> findAccountSnapshots(@Param("startId") Long startId, @Param("endId") Long endId);
+    
+    // (account_id, id, type, amount, balance_after_transaction) of the rows after each account's
+    // watermark, older than the cutoff; reads only new rows through the (account_id, id) index
+    @Query(value = "SELECT t.account_id, t.id, t.type, t.amount, t.balance_after_transaction " +
+                   "FROM accounts a LEFT JOIN reconciliation_watermarks w ON w.account_id = a.id " +
+                   "JOIN transactions t ON t.account_id = a.id AND t.id > COALESCE(w.last_transaction_id, 0) " +
+                   "WHERE a.id BETWEEN :startId AND :endId AND t.transaction_date < :cutoff " +
+                   "ORDER BY t.account_id, t.id", nativeQuery = true)
+    List<Object[]> findUnverifiedTransactions(@Param("startId") Long startId, @Param("endId") Long endId,
+                                              @Param("cutoff") LocalDateTime cutoff);
+    
+    @Modifying
+    @Query(value = "INSERT INTO reconciliation_watermarks (account_id, last_transaction_id, verified_balance, verified_at) " +
+                   "VALUES (:accountId, :lastTransactionId, :verifiedBalance, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (account_id) DO UPDATE SET last_transaction_id = EXCLUDED.last_transaction_id, " +
+                   "verified_balance = EXCLUDED.verified_balance, verified_at = EXCLUDED.verified_at", nativeQuery = true)
+    int upsert(@Param("accountId") Long accountId, @Param("lastTransactionId") Long lastTransactionId,
+               @Param("verifiedBalance") BigDecimal verifiedBalance);
+}
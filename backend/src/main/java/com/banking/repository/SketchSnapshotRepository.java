@@ -0,0 +1,9 @@
+package com.banking.repository;
+
+import com.banking.model.SketchSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SketchSnapshotRepository extends JpaRepository<SketchSnapshot, String> {
+}
@@ -0,0 +1,26 @@
+package com.banking.repository;
+
+import com.banking.model.StandingOrder;
+import com.banking.model.StandingOrderStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StandingOrderRepository extends JpaRepository<StandingOrder, Long> {
+    List<StandingOrder> findByFromAccountNumberOrderByNextRunAt(String fromAccountNumber);
+    
+    // (id, nextRunAt) of active orders due in [from, to), for loading the timing wheel
+    @Query("SELECT o.id, o.nextRunAt FROM StandingOrder o " +
+           "WHERE o.status = :status AND o.nextRunAt >= :from AND o.nextRunAt < :to ORDER BY o.nextRunAt")
+    List<Object[]> findDueBetween(@Param("status") StandingOrderStatus status,
+                                  @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    // Skips orders another instance is executing right now instead of waiting for them
+    @Query(value = "SELECT * FROM standing_orders WHERE id = :id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<StandingOrder> lockById(@Param("id") Long id);
+}
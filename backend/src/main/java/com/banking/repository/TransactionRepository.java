@@ -1,9 +1,12 @@
 package com.banking.repository;
 
 import com.banking.model.Account;
+import com.banking.model.AccountStatus;
 import com.banking.model.Transaction;
 import com.banking.model.TransactionCategory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,10 +16,116 @@ import java.util.List;
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     List<Transaction> findByAccountOrderByTransactionDateDesc(Account account);
+    List<Transaction> findByAccountOrderByIdDesc(Account account, Pageable pageable);
     List<Transaction> findByAccountAndTransactionDateBetween(
         Account account, LocalDateTime startDate, LocalDateTime endDate);
     
     @Query("SELECT t FROM Transaction t WHERE t.account = :account AND t.category = :category")
     List<Transaction> findByAccountAndCategory(@Param("account") Account account, 
                                                @Param("category") TransactionCategory category);
+    
+    @Query("SELECT MAX(t.id) FROM Transaction t WHERE t.account.accountNumber = :accountNumber")
+    Long findLatestIdByAccountNumber(@Param("accountNumber") String accountNumber);
+    
+    @Query("SELECT MAX(t.transactionDate) FROM Transaction t WHERE t.type = :type AND t.description = :description")
+    LocalDateTime findLatestTransactionDate(@Param("type") String type, @Param("description") String description);
+    
+    @Query("SELECT MIN(t.id) FROM Transaction t")
+    Long findMinId();
+    
+    @Query("SELECT MAX(t.id) FROM Transaction t")
+    Long findMaxId();
+    
+    // id, description and toAccountNumber of rows still without a real category
+    @Query("SELECT t.id, t.description, t.toAccountNumber FROM Transaction t " +
+           "WHERE t.id BETWEEN :startId AND :endId AND (t.category IS NULL OR t.category = :other)")
+    List<Object[]> findUncategorizedBetween(@Param("startId") long startId, @Param("endId") long endId,
+                                            @Param("other") TransactionCategory other);
+    
+    // One ordered pass over a range of accounts for a period, grouped by account
+    @Query("SELECT t FROM Transaction t WHERE t.account.id BETWEEN :startId AND :endId " +
+           "AND t.account.status = :status AND t.transactionDate >= :from AND t.transactionDate < :to " +
+           "ORDER BY t.account.id, t.transactionDate, t.id")
+    List<Transaction> findByAccountIdRangeAndPeriod(@Param("startId") Long startId, @Param("endId") Long endId,
+                                                    @Param("status") AccountStatus status,
+                                                    @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    // (account id, date, balance after) of a range of accounts' postings in a period, in posting order per account
+    @Query("SELECT t.account.id, t.transactionDate, t.balanceAfterTransaction FROM Transaction t " +
+           "WHERE t.account.id BETWEEN :startId AND :endId " +
+           "AND t.transactionDate >= :from AND t.transactionDate < :to " +
+           "ORDER BY t.account.id, t.transactionDate, t.id")
+    List<Object[]> findBalanceChangesByAccountIdRangeAndPeriod(@Param("startId") Long startId,
+                                                               @Param("endId") Long endId,
+                                                               @Param("from") LocalDateTime from,
+                                                               @Param("to") LocalDateTime to);
+    
+    // One page of an account's postings before :to, oldest first, starting after the (date, id) position given
+    @Query("SELECT t.id, t.transactionDate, t.transactionId, t.type, t.category, t.description, " +
+           "t.balanceAfterTransaction, t.amount FROM Transaction t WHERE t.account.id = :accountId AND t.transactionDate < :to " +
+           "AND (t.transactionDate > :afterDate OR (t.transactionDate = :afterDate AND t.id > :afterId)) " +
+           "ORDER BY t.transactionDate, t.id")
+    List<Object[]> findPostingsAfter(@Param("accountId") Long accountId, @Param("afterDate") LocalDateTime afterDate,
+                                     @Param("afterId") Long afterId, @Param("to") LocalDateTime to,
+                                     Pageable pageable);
+    
+    // account id and balance after the last posting before the given time, one index seek per account
+    @Query(value = "SELECT a.id, x.balance_after_transaction FROM accounts a " +
+                   "CROSS JOIN LATERAL (SELECT t.balance_after_transaction FROM transactions t " +
+                   "WHERE t.account_id = a.id AND t.transaction_date < :before " +
+                   "ORDER BY t.transaction_date DESC, t.id DESC LIMIT 1) x " +
+                   "WHERE a.id BETWEEN :startId AND :endId", nativeQuery = true)
+    List<Object[]> findBalancesBefore(@Param("startId") Long startId, @Param("endId") Long endId,
+                                      @Param("before") LocalDateTime before);
+    
+    // (account number, payee, last paid) of every payee paid since the given time, least recently paid first
+    @Query("SELECT t.account.accountNumber, t.toAccountNumber, MAX(t.transactionDate) FROM Transaction t " +
+           "WHERE t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL AND t.transactionDate >= :since " +
+           "GROUP BY t.account.accountNumber, t.toAccountNumber ORDER BY MAX(t.transactionDate)")
+    List<Object[]> findPayeesSince(@Param("since") LocalDateTime since);
+    
+    // (account number, date, amount) of withdrawals and outgoing transfers since the given time, oldest first
+    @Query("SELECT t.account.accountNumber, t.transactionDate, t.amount FROM Transaction t " +
+           "WHERE t.type IN ('WITHDRAWAL', 'TRANSFER_OUT') AND t.transactionDate >= :since " +
+           "ORDER BY t.transactionDate, t.id")
+    List<Object[]> findDebitsSince(@Param("since") LocalDateTime since);
+    
+    // (id, customer id, payee, amount, date) of outgoing transfers after the given row, in id order
+    @Query("SELECT t.id, c.id, t.toAccountNumber, t.amount, t.transactionDate FROM Transaction t " +
+           "JOIN t.account a LEFT JOIN a.customer c " +
+           "WHERE t.id > :afterId AND t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL ORDER BY t.id")
+    List<Object[]> findTransfersOutAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // (payee, transfers, total amount) over all outgoing transfers; a full scan, for offline comparison
+    @Query("SELECT t.toAccountNumber, COUNT(t), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL " +
+           "GROUP BY t.toAccountNumber ORDER BY COUNT(t) DESC, t.toAccountNumber")
+    List<Object[]> findTopPayeesByCount(Pageable pageable);
+    
+    @Query("SELECT t.toAccountNumber, COUNT(t), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL " +
+           "GROUP BY t.toAccountNumber ORDER BY SUM(t.amount) DESC, t.toAccountNumber")
+    List<Object[]> findTopPayeesByAmount(Pageable pageable);
+    
+    @Query("SELECT t.toAccountNumber, COUNT(t), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.account.customer.id = :customerId AND t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL " +
+           "GROUP BY t.toAccountNumber ORDER BY COUNT(t) DESC, t.toAccountNumber")
+    List<Object[]> findTopPayeesByCountForCustomer(@Param("customerId") Long customerId, Pageable pageable);
+    
+    @Query("SELECT t.toAccountNumber, COUNT(t), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.account.customer.id = :customerId AND t.type = 'TRANSFER_OUT' AND t.toAccountNumber IS NOT NULL " +
+           "GROUP BY t.toAccountNumber ORDER BY SUM(t.amount) DESC, t.toAccountNumber")
+    List<Object[]> findTopPayeesByAmountForCustomer(@Param("customerId") Long customerId, Pageable pageable);
+    
+    @Query("SELECT t.id FROM Transaction t WHERE t.transactionDate >= :from AND t.transactionDate < :to")
+    List<Long> findIdsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    
+    // (id, type, account number, payee, amount, balance after) of the given rows, in id order, for the audit journal
+    @Query("SELECT t.id, t.type, a.accountNumber, t.toAccountNumber, t.amount, t.balanceAfterTransaction " +
+           "FROM Transaction t LEFT JOIN t.account a WHERE t.id IN :ids ORDER BY t.id")
+    List<Object[]> findAuditFieldsByIdIn(@Param("ids") List<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE Transaction t SET t.category = :category WHERE t.id IN :ids")
+    int updateCategory(@Param("category") TransactionCategory category, @Param("ids") List<Long> ids);
 }
\ No newline at end of file
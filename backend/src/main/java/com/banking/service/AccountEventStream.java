@@ -0,0 +1,281 @@
+package com.banking.service;
+
+import com.banking.model.AccountEvent;
+import com.banking.repository.AccountEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes account events from the account_events outbox to per-customer Server-Sent Events
+ * subscribers.
+ *
+ * Every instance tails the outbox on its own and fans each event out to the customers
+ * connected to it. A subscriber has a small bounded buffer; if a slow client lets it fill up,
+ * the buffer is dropped and the client is sent a single "resync" event telling it to refetch
+ * balances and reconnect with its last event id. Idle connections hold no thread, only the
+ * emitter and an empty buffer.
+ *
+ * Outbox ids are handed out before commit, so the tail can pass an id whose transaction is
+ * still committing. The poller never waits on such a gap: it remembers the ids it skipped and
+ * looks them up again on every poll for banking.events.gap-window-ms, delivering any that have
+ * committed since. Ids still missing after that belonged to rolled-back transactions. A late
+ * event reaches live subscribers even though its id is below ones they have already seen.
+ */
+@Service
+public class AccountEventStream {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountEventStream.class);
+
+    @Autowired
+    private AccountEventRepository accountEventRepository;
+
+    @Autowired
+    private RecentTransactionCache recentTransactionCache;
+
+    @Value("${banking.events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+
+    @Value("${banking.events.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${banking.events.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${banking.events.delivery-threads:4}")
+    private int deliveryThreads;
+
+    @Value("${banking.events.gap-window-ms:60000}")
+    private long gapWindowMs;
+
+    private static final int MAX_SKIPPED_IDS = 1000;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private ExecutorService delivery;
+    private volatile long cursor = -1;
+    // Ids below the cursor that had not committed when it passed them, with when they were
+    // first missed; only touched by the poller
+    private final TreeMap<Long, Long> skipped = new TreeMap<>();
+
+    @PostConstruct
+    public void init() {
+        delivery = Executors.newFixedThreadPool(deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        delivery.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    // lastEventId is the id of the last event the client saw, or null for live events only
+    public SseEmitter subscribe(Long customerId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(customerId, emitter, subscriberBuffer);
+
+        // Register before replaying so nothing committed in between is missed; the replay
+        // advances lastDeliveredId and live duplicates are skipped on delivery
+        subscribers.compute(customerId, (id, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+
+        if (lastEventId != null) {
+            subscriber.lastDeliveredId = lastEventId;
+            subscriber.replayPending = true;
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @Scheduled(fixedDelayString = "${banking.events.poll-interval-ms:250}")
+    public void pollOutbox() {
+        if (cursor < 0) {
+            Long maxId = accountEventRepository.findMaxId();
+            cursor = maxId != null ? maxId : 0L;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!skipped.isEmpty()) {
+            rescanSkipped(now);
+        }
+        List<AccountEvent> batch;
+        do {
+            batch = accountEventRepository.findTop500ByIdGreaterThanOrderByIdAsc(cursor);
+            for (AccountEvent event : batch) {
+                for (long id = Math.max(cursor + 1, event.getId() - MAX_SKIPPED_IDS); id < event.getId(); id++) {
+                    skipped.put(id, now);
+                }
+                publish(event, false);
+                cursor = event.getId();
+            }
+        } while (batch.size() == 500);
+        while (skipped.size() > MAX_SKIPPED_IDS) {
+            skipped.pollFirstEntry();
+        }
+    }
+
+    // Delivers skipped ids that have committed since, and forgets those missing for the whole window
+    private void rescanSkipped(long now) {
+        for (AccountEvent event : accountEventRepository.findByIdInOrderByIdAsc(new ArrayList<>(skipped.keySet()))) {
+            skipped.remove(event.getId());
+            publish(event, true);
+        }
+        skipped.values().removeIf(firstMissed -> now - firstMissed >= gapWindowMs);
+    }
+
+    private void publish(AccountEvent event, boolean late) {
+        recentTransactionCache.onCommittedEvent(event.getAccountNumber(), event.getTransactionId());
+        Set<Subscriber> targets = subscribers.getOrDefault(event.getCustomerId(), Collections.emptySet());
+        for (Subscriber subscriber : targets) {
+            if (late) {
+                subscriber.lateIds.add(event.getId());
+            }
+            if (!subscriber.buffer.offer(event)) {
+                subscriber.resyncRequired = true;
+                subscriber.buffer.clear();
+                subscriber.lateIds.clear();
+            }
+            schedule(subscriber);
+        }
+    }
+
+    // Comment lines keep idle connections from being closed by proxies and load balancers
+    @Scheduled(fixedDelayString = "${banking.events.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.heartbeatDue = true;
+                schedule(subscriber);
+            }
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * ?")
+    @Transactional
+    public void purgeOldEvents() {
+        int deleted = accountEventRepository.deleteOlderThan(LocalDateTime.now().minusDays(retentionDays));
+        log.info("Purged {} account events older than {} days", deleted, retentionDays);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            delivery.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Only one drain runs per subscriber at a time, so events are sent in order
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.replayPending) {
+                replay(subscriber);
+            }
+            if (subscriber.resyncRequired) {
+                subscriber.resyncRequired = false;
+                subscriber.emitter.send(SseEmitter.event().name("resync")
+                    .data(Collections.singletonMap("lastEventId", subscriber.lastDeliveredId)));
+            }
+            AccountEvent event;
+            while ((event = subscriber.buffer.poll()) != null) {
+                send(subscriber, event);
+            }
+            if (subscriber.heartbeatDue) {
+                subscriber.heartbeatDue = false;
+                subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+            }
+        } catch (IOException | IllegalStateException disconnected) {
+            remove(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (!subscriber.buffer.isEmpty() || subscriber.resyncRequired) {
+            schedule(subscriber);
+        }
+    }
+
+    // Catches a reconnecting client up from the outbox; more than a buffer's worth means resync
+    private void replay(Subscriber subscriber) throws IOException {
+        subscriber.replayPending = false;
+        List<AccountEvent> missed = accountEventRepository
+            .findTop500ByCustomerIdAndIdGreaterThanOrderByIdAsc(subscriber.customerId, subscriber.lastDeliveredId);
+        if (missed.size() > subscriberBuffer) {
+            subscriber.resyncRequired = true;
+            subscriber.lastDeliveredId = missed.get(missed.size() - 1).getId();
+            return;
+        }
+        for (AccountEvent event : missed) {
+            send(subscriber, event);
+        }
+    }
+
+    // Ids at or below the last one delivered are duplicates, unless the poller found them late
+    private void send(Subscriber subscriber, AccountEvent event) throws IOException {
+        if (event.getId() <= subscriber.lastDeliveredId && !subscriber.lateIds.remove(event.getId())) {
+            return;
+        }
+        subscriber.emitter.send(SseEmitter.event()
+            .id(String.valueOf(event.getId()))
+            .name("account-event")
+            .data(event));
+        subscriber.lastDeliveredId = Math.max(subscriber.lastDeliveredId, event.getId());
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.customerId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static class Subscriber {
+        private final Long customerId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<AccountEvent> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Set<Long> lateIds = ConcurrentHashMap.newKeySet();
+        private volatile boolean resyncRequired;
+        private volatile boolean replayPending;
+        private volatile boolean heartbeatDue;
+        private volatile long lastDeliveredId;
+
+        Subscriber(Long customerId, SseEmitter emitter, int bufferSize) {
+            this.customerId = customerId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.banking.service;
 import com.banking.model.*;
 import com.banking.dto.AccountDTO;
 import com.banking.dto.TransactionDTO;
+import com.banking.monitoring.AccountOperationPhaseEvent;
 import com.banking.repository.AccountRepository;
 import com.banking.repository.CustomerRepository;
 import com.banking.security.PasswordUtils;
@@ -10,7 +11,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class AccountService {
@@ -24,12 +28,21 @@ public class AccountService {
     @Autowired
     private TransactionService transactionService;
     
+    @Autowired
+    private HotAccountService hotAccountService;
+    
+    @Autowired
+    private VelocityCheckService velocityCheckService;
+    
+    @Autowired
+    private IdAllocator idAllocator;
+    
     public Account createAccount(Long customerId, AccountDTO accountDTO) {
         Customer customer = customerRepository.findById(customerId)
             .orElseThrow(() -> new RuntimeException("Customer not found with id: " + customerId));
         
         Account account = new Account();
-        account.setAccountNumber(PasswordUtils.generateAccountNumber());
+        account.setAccountNumber(idAllocator.nextAccountNumber());
         account.setAccountType(accountDTO.getAccountType());
         account.setStatus(AccountStatus.ACTIVE);
         account.setBalance(BigDecimal.ZERO);
@@ -49,58 +62,112 @@ public class AccountService {
     }
     
     public Account getAccount(String accountNumber) {
-        return accountRepository.findByAccountNumber(accountNumber)
+        Account account = accountRepository.findByAccountNumber(accountNumber)
             .orElseThrow(() -> new RuntimeException("Account not found with number: " + accountNumber));
+        if (account.isHotAccount()) {
+            hotAccountService.refreshShardedBalance(account);
+        }
+        return account;
+    }
+    
+    // For the paths that change a balance. The row is locked as it is first read and stays locked
+    // until the transaction ends, so these writes and the ledger engine's batches wait for each
+    // other instead of overwriting one another
+    private Account getAccountForUpdate(String accountNumber) {
+        Account account = accountRepository.findByAccountNumberForUpdate(accountNumber)
+            .orElseThrow(() -> new RuntimeException("Account not found with number: " + accountNumber));
+        if (account.isHotAccount()) {
+            hotAccountService.refreshShardedBalance(account);
+        }
+        return account;
+    }
+    
+    // Hot accounts take credits on a shard, so a row that is only credited is left unlocked;
+    // locking it would serialize the credits again
+    private boolean isHotAccount(String accountNumber) {
+        Integer shards = accountRepository.findBalanceShardsByAccountNumber(accountNumber).orElse(null);
+        return shards != null && shards > 0;
+    }
+    
+    // The account to credit, unlocked only while it is in hot-account mode. One switched out of
+    // that mode since the check is credited on its row, so it is locked after all
+    private Account getAccountForCredit(String accountNumber) {
+        Account account = getAccount(accountNumber);
+        if (!account.isHotAccount()) {
+            hotAccountService.lock(account);
+        }
+        return account;
+    }
+    
+    // Cheap version lookup used to validate conditional GETs without loading the account graph;
+    // empty for hot accounts, whose balance changes without touching updatedAt
+    public Optional<LocalDateTime> getAccountVersion(String accountNumber) {
+        return accountRepository.findUpdatedAtByAccountNumber(accountNumber);
     }
     
     @Transactional
     public Account deposit(String accountNumber, BigDecimal amount, String description) {
-        Account account = getAccount(accountNumber);
+        AccountOperationPhaseEvent phase = AccountOperationPhaseEvent.start("DEPOSIT", AccountOperationPhaseEvent.ACCOUNT_LOAD);
+        Account account = isHotAccount(accountNumber) ? getAccountForCredit(accountNumber) : getAccountForUpdate(accountNumber);
+        phase.finish(accountNumber);
         
         if (account.getStatus() != AccountStatus.ACTIVE) {
             throw new RuntimeException("Account is not active");
         }
         
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
+        phase = AccountOperationPhaseEvent.start("DEPOSIT", AccountOperationPhaseEvent.BALANCE_UPDATE);
+        credit(account, amount);
+        phase.finish(accountNumber);
         
         TransactionDTO transactionDTO = new TransactionDTO();
         transactionDTO.setAmount(amount);
         transactionDTO.setType("DEPOSIT");
         transactionDTO.setDescription(description != null ? description : "Cash deposit");
-        transactionDTO.setCategory(TransactionCategory.OTHER);
         
-        transactionService.createTransaction(account, transactionDTO, account.getBalance());
+        phase = AccountOperationPhaseEvent.start("DEPOSIT", AccountOperationPhaseEvent.TRANSACTION_INSERT);
+        transactionService.createTransaction(account, transactionDTO, balanceAfter(account));
+        phase.finish(accountNumber);
         
         return account;
     }
     
     @Transactional
     public Account withdraw(String accountNumber, BigDecimal amount, String pin, String description) {
-        Account account = getAccount(accountNumber);
+        AccountOperationPhaseEvent phase = AccountOperationPhaseEvent.start("WITHDRAWAL", AccountOperationPhaseEvent.ACCOUNT_LOAD);
+        Account account = getAccountForUpdate(accountNumber);
+        phase.finish(accountNumber);
         
         if (account.getStatus() != AccountStatus.ACTIVE) {
             throw new RuntimeException("Account is not active");
         }
         
+        phase = AccountOperationPhaseEvent.start("WITHDRAWAL", AccountOperationPhaseEvent.PIN_VERIFY);
         if (account.getPinHash() != null && !PasswordUtils.verifyPassword(pin, account.getPinHash())) {
             throw new RuntimeException("Invalid PIN");
         }
+        phase.finish(accountNumber);
         
-        if (account.getBalance().compareTo(amount) < 0) {
+        phase = AccountOperationPhaseEvent.start("WITHDRAWAL", AccountOperationPhaseEvent.FUNDS_CHECK);
+        if (!hasFunds(account, amount)) {
             throw new RuntimeException("Insufficient funds");
         }
         
+        velocityCheckService.checkAndRecord(accountNumber, null, amount);
+        phase.finish(accountNumber);
+        
+        phase = AccountOperationPhaseEvent.start("WITHDRAWAL", AccountOperationPhaseEvent.BALANCE_UPDATE);
         account.setBalance(account.getBalance().subtract(amount));
         accountRepository.save(account);
+        phase.finish(accountNumber);
         
         TransactionDTO transactionDTO = new TransactionDTO();
         transactionDTO.setAmount(amount);
         transactionDTO.setType("WITHDRAWAL");
         transactionDTO.setDescription(description != null ? description : "Cash withdrawal");
-        transactionDTO.setCategory(TransactionCategory.OTHER);
         
-        transactionService.createTransaction(account, transactionDTO, account.getBalance());
+        phase = AccountOperationPhaseEvent.start("WITHDRAWAL", AccountOperationPhaseEvent.TRANSACTION_INSERT);
+        transactionService.createTransaction(account, transactionDTO, balanceAfter(account));
+        phase.finish(accountNumber);
         
         return account;
     }
@@ -108,10 +175,32 @@ public class AccountService {
     @Transactional
     public TransferResult transfer(String fromAccountNumber, String toAccountNumber, 
                                    BigDecimal amount, String pin, String description) {
-        
+        return executeTransfer(fromAccountNumber, toAccountNumber, amount, pin, true, description);
+    }
+    
+    // For transfers the customer authorized in advance, such as standing orders; no PIN is checked
+    @Transactional
+    public TransferResult transferAuthorized(String fromAccountNumber, String toAccountNumber,
+                                             BigDecimal amount, String description) {
+        return executeTransfer(fromAccountNumber, toAccountNumber, amount, null, false, description);
+    }
+    
+    private TransferResult executeTransfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount,
+                                           String pin, boolean pinRequired, String description) {
         // Validate accounts
-        Account fromAccount = getAccount(fromAccountNumber);
-        Account toAccount = getAccount(toAccountNumber);
+        AccountOperationPhaseEvent phase = AccountOperationPhaseEvent.start("TRANSFER", AccountOperationPhaseEvent.ACCOUNT_LOAD);
+        // Rows are locked in id order, as the ledger engine locks its batches, so no two
+        // transfers over the same pair of accounts can deadlock
+        boolean hotDestination = isHotAccount(toAccountNumber);
+        List<String> lockedNumbers = new ArrayList<>();
+        lockedNumbers.add(fromAccountNumber);
+        if (!hotDestination) {
+            lockedNumbers.add(toAccountNumber);
+        }
+        List<Account> locked = accountRepository.findByAccountNumberInForUpdate(lockedNumbers);
+        Account fromAccount = lockedAccount(locked, fromAccountNumber);
+        Account toAccount = hotDestination ? getAccountForCredit(toAccountNumber) : lockedAccount(locked, toAccountNumber);
+        phase.finish(fromAccountNumber);
         
         // Check if accounts are active
         if (fromAccount.getStatus() != AccountStatus.ACTIVE) {
@@ -123,12 +212,16 @@ public class AccountService {
         }
         
         // Verify PIN
-        if (fromAccount.getPinHash() != null && !PasswordUtils.verifyPassword(pin, fromAccount.getPinHash())) {
+        phase = AccountOperationPhaseEvent.start("TRANSFER", AccountOperationPhaseEvent.PIN_VERIFY);
+        if (pinRequired && fromAccount.getPinHash() != null
+                && !PasswordUtils.verifyPassword(pin, fromAccount.getPinHash())) {
             throw new RuntimeException("Invalid PIN");
         }
+        phase.finish(fromAccountNumber);
         
         // Check sufficient funds
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+        phase = AccountOperationPhaseEvent.start("TRANSFER", AccountOperationPhaseEvent.FUNDS_CHECK);
+        if (!hasFunds(fromAccount, amount)) {
             throw new RuntimeException("Insufficient funds");
         }
         
@@ -136,12 +229,20 @@ public class AccountService {
         boolean isInternalTransfer = fromAccount.getCustomer().getId()
                 .equals(toAccount.getCustomer().getId());
         
+        // Moving money between the customer's own accounts never counts as a new payee, and the
+        // payee of a transfer authorized in advance was approved when it was set up
+        velocityCheckService.checkAndRecord(fromAccountNumber, isInternalTransfer ? null : toAccountNumber,
+            amount, !pinRequired);
+        phase.finish(fromAccountNumber);
+        
         // Perform transfer
+        phase = AccountOperationPhaseEvent.start("TRANSFER", AccountOperationPhaseEvent.BALANCE_UPDATE);
         fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
-        
         accountRepository.save(fromAccount);
-        accountRepository.save(toAccount);
+        credit(toAccount, amount);
+        phase.finish(fromAccountNumber);
+        
+        phase = AccountOperationPhaseEvent.start("TRANSFER", AccountOperationPhaseEvent.TRANSACTION_INSERT);
         
         // Create transaction for sender
         TransactionDTO fromTransactionDTO = new TransactionDTO();
@@ -150,10 +251,9 @@ public class AccountService {
         fromTransactionDTO.setDescription(description != null ? description : 
             (isInternalTransfer ? "Transfer to your " : "Transfer to ") + toAccountNumber);
         fromTransactionDTO.setToAccountNumber(toAccountNumber);
-        fromTransactionDTO.setCategory(TransactionCategory.OTHER);
         
         Transaction fromTransaction = transactionService.createTransaction(
-            fromAccount, fromTransactionDTO, fromAccount.getBalance());
+            fromAccount, fromTransactionDTO, balanceAfter(fromAccount));
         
         // Create transaction for recipient
         TransactionDTO toTransactionDTO = new TransactionDTO();
@@ -161,10 +261,10 @@ public class AccountService {
         toTransactionDTO.setType("TRANSFER_IN");
         toTransactionDTO.setDescription(description != null ? description : 
             (isInternalTransfer ? "Transfer from your " : "Transfer from ") + fromAccountNumber);
-        toTransactionDTO.setCategory(TransactionCategory.OTHER);
         
         Transaction toTransaction = transactionService.createTransaction(
-            toAccount, toTransactionDTO, toAccount.getBalance());
+            toAccount, toTransactionDTO, balanceAfter(toAccount));
+        phase.finish(fromAccountNumber);
         
         // Return transfer result with details
         return new TransferResult(
@@ -179,8 +279,47 @@ public class AccountService {
         );
     }
     
+    private Account lockedAccount(List<Account> locked, String accountNumber) {
+        Account account = locked.stream()
+            .filter(candidate -> candidate.getAccountNumber().equals(accountNumber))
+            .findFirst()
+            .orElseThrow(() -> new RuntimeException("Account not found with number: " + accountNumber));
+        if (account.isHotAccount()) {
+            hotAccountService.refreshShardedBalance(account);
+        }
+        return account;
+    }
+    
+    // Hot accounts take credits on a balance shard instead of the accounts row
+    private void credit(Account account, BigDecimal amount) {
+        if (account.isHotAccount()) {
+            hotAccountService.credit(account, amount);
+        } else {
+            account.setBalance(account.getBalance().add(amount));
+            accountRepository.save(account);
+        }
+    }
+    
+    // True when the consolidated balance covers the debit, sweeping a hot account's shards into
+    // it first if needed
+    private boolean hasFunds(Account account, BigDecimal amount) {
+        if (account.getBalance().compareTo(amount) >= 0) {
+            return true;
+        }
+        if (account.isHotAccount()) {
+            hotAccountService.consolidate(account);
+            return account.getBalance().compareTo(amount) >= 0;
+        }
+        return false;
+    }
+    
+    private BigDecimal balanceAfter(Account account) {
+        return account.isHotAccount() ? hotAccountService.refreshShardedBalance(account) : account.getBalance();
+    }
+    
+    @Transactional
     public Account updateAccountStatus(String accountNumber, AccountStatus status) {
-        Account account = getAccount(accountNumber);
+        Account account = getAccountForUpdate(accountNumber);
         account.setStatus(status);
         return accountRepository.save(account);
     }
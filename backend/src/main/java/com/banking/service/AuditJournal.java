@@ -0,0 +1,695 @@
+package com.banking.service;
+
+import com.banking.dto.AuditRecord;
+import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, tamper-evident journal of every committed money movement.
+ *
+ * Records go into fixed-size segment files written through a memory-mapped buffer; a new segment
+ * is started when the current one is full. Each record carries a CRC32C over its contents and a
+ * SHA-256 hash of the previous record's hash plus its own fields, so changing, dropping or
+ * reordering any record breaks every hash after it. Segment headers carry the hash the segment
+ * continues from, so the chain runs across files. The encoder writes straight into the mapped
+ * buffer and reuses its digest, CRC and hash scratch space, and movements waiting for their commit
+ * sit in reused per-thread slots, so an append allocates nothing of its own and holds the lock for
+ * about a microsecond.
+ *
+ * Records are appended after the database commit, so the journal never holds a movement that was
+ * rolled back. A crash between commit and append, or a failed append, would lose records, so the
+ * journal is reconciled against the transactions table every minute: rows committed since the
+ * last check that are still missing from the journal one check later are appended then, and
+ * counted in the head. Rows written by other instances reach this instance's journal the same
+ * way. The mapped pages are forced to disk every second.
+ *
+ * Record layout (big-endian): int length, int crc, long sequence, long timestamp, long
+ * transaction row id, byte type, long amount unscaled, byte amount scale, long balance unscaled,
+ * byte balance scale, byte n + n account number bytes, byte n + n counterparty bytes, 32 hash bytes.
+ * A zero length marks the end of a segment's records.
+ */
+@Service
+public class AuditJournal {
+    
+    private static final Logger log = LoggerFactory.getLogger(AuditJournal.class);
+    
+    private static final int MAGIC = 0x4D434A31; // "MCJ1"
+    private static final int HEADER_SIZE = 48;   // magic, version, first sequence, previous hash
+    private static final int FIXED_SIZE = 53;    // record bytes other than the strings and the hash
+    private static final int HASH_SIZE = 32;
+    private static final int MAX_RECORD_SIZE = FIXED_SIZE + 2 * 255 + HASH_SIZE;
+    private static final String[] TYPES = { "OTHER", "DEPOSIT", "WITHDRAWAL", "TRANSFER_OUT", "TRANSFER_IN", "INTEREST" };
+    private static final double[] POWERS_OF_TEN = new double[19];
+    
+    static {
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Value("${banking.audit.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${banking.audit.journal-dir:audit-journal}")
+    private String journalDir;
+    
+    @Value("${banking.audit.segment-size-mb:64}")
+    private int segmentSizeMb;
+    
+    @Value("${banking.audit.reconcile-lookback-minutes:60}")
+    private int reconcileLookbackMinutes;
+    
+    @Value("${banking.audit.reconcile-grace-seconds:30}")
+    private int reconcileGraceSeconds;
+    
+    private final CRC32C crc = new CRC32C();
+    private final byte[] lastHash = new byte[HASH_SIZE];
+    private final AfterCommitAppender afterCommitAppender = new AfterCommitAppender();
+    private final ThreadLocal<PendingRecords> pending = ThreadLocal.withInitial(PendingRecords::new);
+    private MessageDigest digest;
+    private MappedByteBuffer segment;
+    private long nextSequence = 1;
+    
+    // Reconciliation state, only touched by the scheduled reconcile()
+    private LocalDateTime reconciledThrough;
+    private Set<Long> suspectedMissing = new HashSet<>();
+    private volatile LocalDateTime lastReconciledThrough;
+    private volatile long recoveredRecords;
+    
+    @PostConstruct
+    public void init() throws IOException, NoSuchAlgorithmException {
+        if (!enabled) {
+            return;
+        }
+        digest = MessageDigest.getInstance("SHA-256");
+        Files.createDirectories(Paths.get(journalDir));
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment();
+        } else {
+            resume(segments.get(segments.size() - 1));
+        }
+        log.info("Audit journal open at sequence {} in {}", nextSequence, journalDir);
+    }
+    
+    @PreDestroy
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+    
+    // Journals the transaction once the surrounding database transaction has committed
+    public void appendAfterCommit(String type, long transactionRowId, String accountNumber, String counterparty,
+                                  BigDecimal amount, BigDecimal balanceAfter) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            PendingRecords records = pending.get();
+            if (records.isEmpty()) {
+                // One shared synchronization per transaction; it appends whatever this thread queued
+                TransactionSynchronizationManager.registerSynchronization(afterCommitAppender);
+            }
+            records.add(type, transactionRowId, accountNumber, counterparty, amount, balanceAfter);
+        } else {
+            append(type, transactionRowId, accountNumber, counterparty, amount, balanceAfter);
+        }
+    }
+    
+    // Returns the record's sequence number
+    public synchronized long append(String type, long transactionRowId, String accountNumber, String counterparty,
+                                    BigDecimal amount, BigDecimal balanceAfter) {
+        if (segment == null) {
+            throw new IllegalStateException(enabled ? "Audit journal is closed" : "Audit journal is disabled");
+        }
+        // Everything that can fail is worked out before the first byte is written
+        long amountUnscaled = unscaled(amount);
+        long balanceUnscaled = unscaled(balanceAfter);
+        int accountLength = asciiLength(accountNumber);
+        int counterpartyLength = asciiLength(counterparty);
+        int length = FIXED_SIZE + accountLength + counterpartyLength + HASH_SIZE;
+        if (segment.remaining() < length + 4) { // keep room for the zero end marker
+            roll();
+        }
+        MappedByteBuffer buffer = segment;
+        int start = buffer.position();
+        long sequence = nextSequence;
+        buffer.position(start + 8);
+        buffer.putLong(sequence);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(transactionRowId);
+        buffer.put(typeCode(type));
+        buffer.putLong(amountUnscaled);
+        buffer.put(amount != null ? (byte) amount.scale() : -1);
+        buffer.putLong(balanceUnscaled);
+        buffer.put(balanceAfter != null ? (byte) balanceAfter.scale() : -1);
+        putAscii(buffer, accountNumber, accountLength);
+        putAscii(buffer, counterparty, counterpartyLength);
+        int hashAt = buffer.position();
+        
+        // hash = SHA-256(previous hash || fields)
+        digest.update(lastHash);
+        buffer.position(start + 8).limit(hashAt);
+        digest.update(buffer);
+        buffer.limit(buffer.capacity());
+        try {
+            digest.digest(lastHash, 0, HASH_SIZE);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        buffer.position(hashAt);
+        buffer.put(lastHash);
+        
+        crc.reset();
+        buffer.position(start + 8).limit(start + length);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity());
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length); // written last: a record only counts once its length is set
+        buffer.position(start + length);
+        nextSequence++;
+        return sequence;
+    }
+    
+    @Scheduled(fixedDelayString = "${banking.audit.force-interval-ms:1000}")
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+    
+    // Sequence and hash of the newest record, for anchoring the chain somewhere outside this system
+    public synchronized Map<String, Object> getHead() {
+        Map<String, Object> head = new LinkedHashMap<>();
+        head.put("enabled", enabled);
+        head.put("lastSequence", nextSequence - 1);
+        head.put("lastHash", toHex(lastHash));
+        head.put("reconciledThrough", lastReconciledThrough);
+        head.put("recoveredRecords", recoveredRecords);
+        return head;
+    }
+    
+    /**
+     * Checks the transactions committed since the last run against the journal. Rows that are
+     * missing are only suspected at first, since their commit may not have reached afterCommit
+     * yet; rows still missing at the next run are appended from the table. The newest
+     * reconcile-grace-seconds of rows wait for the next run.
+     */
+    @Scheduled(fixedDelayString = "${banking.audit.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!enabled || segment == null) {
+            return;
+        }
+        LocalDateTime to = LocalDateTime.now().minusSeconds(reconcileGraceSeconds);
+        LocalDateTime from = reconciledThrough != null ? reconciledThrough : to.minusMinutes(reconcileLookbackMinutes);
+        if (!to.isAfter(from)) {
+            return;
+        }
+        // Records are appended after their row's transaction date, so any record for a row in the
+        // window was appended at or after its start
+        long fromMillis = from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Set<Long> journaled = new HashSet<>();
+        String error;
+        try {
+            error = replay(segmentCovering(fromMillis), record -> {
+                if (record.getTimestamp() >= fromMillis) {
+                    journaled.add(record.getTransactionRowId());
+                }
+                return true;
+            });
+        } catch (IOException e) {
+            log.error("Could not read the audit journal to reconcile it", e);
+            return;
+        }
+        if (error != null) {
+            log.error("Audit journal failed verification, not reconciling: {}", error);
+            return;
+        }
+        
+        List<Long> lost = new ArrayList<>();
+        for (Long id : suspectedMissing) {
+            if (!journaled.contains(id)) {
+                lost.add(id);
+            }
+        }
+        Set<Long> missing = new HashSet<>();
+        for (Long id : transactionRepository.findIdsBetween(from, to)) {
+            if (!journaled.contains(id)) {
+                missing.add(id);
+            }
+        }
+        if (!lost.isEmpty()) {
+            for (Object[] row : transactionRepository.findAuditFieldsByIdIn(lost)) {
+                append((String) row[1], (Long) row[0], (String) row[2], (String) row[3],
+                    (BigDecimal) row[4], (BigDecimal) row[5]);
+            }
+            recoveredRecords += lost.size();
+            log.warn("Journaled {} committed transactions that were missing from the audit journal", lost.size());
+        }
+        suspectedMissing = missing;
+        reconciledThrough = to;
+        lastReconciledThrough = to;
+    }
+    
+    /**
+     * Replays every segment and checks the header chain, each record's CRC, sequence continuity
+     * and hash. Stops at the first problem and reports where it is.
+     */
+    public Map<String, Object> verify() throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long[] records = new long[1];
+        String error = replay(1, record -> {
+            records[0]++;
+            return true;
+        });
+        List<Path> segments = listSegments();
+        result.put("segments", segments.size());
+        result.put("records", records[0]);
+        result.put("valid", error == null);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+    
+    // Up to limit records starting at fromSequence
+    public List<AuditRecord> read(long fromSequence, int limit) throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        replay(fromSequence, record -> {
+            if (records.size() < limit) {
+                records.add(record);
+            }
+            return records.size() < limit;
+        });
+        return records;
+    }
+    
+    @FunctionalInterface
+    public interface RecordVisitor {
+        // Return false to stop the replay early
+        boolean visit(AuditRecord record);
+    }
+    
+    /**
+     * Reads segments in order, verifying as it goes, and hands every record from fromSequence on
+     * to the visitor. Returns null when the journal checked out up to where the replay stopped,
+     * otherwise a description of the first problem.
+     */
+    public String replay(long fromSequence, RecordVisitor visitor) throws IOException {
+        // Records appended after this point may still be half-written, so the replay stops before them
+        List<Path> segments;
+        long lastSequence;
+        synchronized (this) {
+            segments = listSegments();
+            lastSequence = nextSequence - 1;
+        }
+        MessageDigest verifier;
+        try {
+            verifier = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        CRC32C checker = new CRC32C();
+        byte[] hash = new byte[HASH_SIZE];
+        long expected = 1;
+        boolean started = false;
+        for (int s = 0; s < segments.size(); s++) {
+            Path path = segments.get(s);
+            // Skip whole segments before fromSequence; the chain is then trusted from the next header
+            if (s + 1 < segments.size() && firstSequence(segments.get(s + 1)) <= fromSequence) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    return path.getFileName() + ": bad segment header";
+                }
+                long first = buffer.getLong(8);
+                byte[] previous = new byte[HASH_SIZE];
+                buffer.position(16);
+                buffer.get(previous);
+                if (!started) {
+                    expected = first;
+                    hash = previous;
+                    started = true;
+                }
+                if (first != expected) {
+                    return path.getFileName() + ": starts at sequence " + first + ", expected " + expected;
+                }
+                if (!Arrays.equals(previous, hash)) {
+                    return path.getFileName() + ": header hash does not continue the previous segment";
+                }
+                int position = HEADER_SIZE;
+                while (position + 4 <= buffer.limit() && expected <= lastSequence) {
+                    int length = buffer.getInt(position);
+                    if (length == 0) {
+                        break;
+                    }
+                    if (length < FIXED_SIZE + HASH_SIZE || length > MAX_RECORD_SIZE || position + length > buffer.limit()) {
+                        return "sequence " + expected + ": bad record length " + length;
+                    }
+                    checker.reset();
+                    buffer.position(position + 8).limit(position + length);
+                    checker.update(buffer);
+                    buffer.limit(buffer.capacity());
+                    if ((int) checker.getValue() != buffer.getInt(position + 4)) {
+                        return "sequence " + expected + ": CRC mismatch";
+                    }
+                    AuditRecord record = decode(buffer, position, length);
+                    if (record.getSequence() != expected) {
+                        return "sequence " + expected + ": found sequence " + record.getSequence();
+                    }
+                    verifier.update(hash);
+                    buffer.position(position + 8).limit(position + length - HASH_SIZE);
+                    verifier.update(buffer);
+                    buffer.limit(buffer.capacity());
+                    hash = verifier.digest();
+                    byte[] stored = new byte[HASH_SIZE];
+                    buffer.position(position + length - HASH_SIZE);
+                    buffer.get(stored);
+                    if (!Arrays.equals(hash, stored)) {
+                        return "sequence " + expected + ": hash chain broken";
+                    }
+                    if (expected >= fromSequence && !visitor.visit(record)) {
+                        return null;
+                    }
+                    expected++;
+                    position += length;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private AuditRecord decode(MappedByteBuffer buffer, int position, int length) {
+        buffer.position(position + 8);
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        long transactionRowId = buffer.getLong();
+        int type = buffer.get();
+        BigDecimal amount = getDecimal(buffer);
+        BigDecimal balanceAfter = getDecimal(buffer);
+        String accountNumber = getAscii(buffer);
+        String counterparty = getAscii(buffer);
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.position(position + length - HASH_SIZE);
+        buffer.get(hash);
+        return new AuditRecord(sequence, timestamp, type >= 0 && type < TYPES.length ? TYPES[type] : "OTHER",
+            transactionRowId, accountNumber, counterparty, amount, balanceAfter, toHex(hash));
+    }
+    
+    // First sequence of the newest segment whose first record is no later than the given time
+    private long segmentCovering(long millis) throws IOException {
+        List<Path> segments = listSegments();
+        ByteBuffer head = ByteBuffer.allocate(24);
+        for (int s = segments.size() - 1; s > 0; s--) {
+            head.clear();
+            try (FileChannel channel = FileChannel.open(segments.get(s), StandardOpenOption.READ)) {
+                channel.read(head, HEADER_SIZE);
+            }
+            // length, crc, sequence, timestamp; an empty segment holds nothing to go on
+            if (head.getInt(0) != 0 && head.getLong(16) <= millis) {
+                return firstSequence(segments.get(s));
+            }
+        }
+        return 1;
+    }
+    
+    private void roll() {
+        segment.force();
+        try {
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void openSegment() throws IOException {
+        Path path = Paths.get(journalDir, String.format("segment-%020d.journal", nextSequence));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeMb * 1024L * 1024L);
+        }
+        segment.putInt(MAGIC);
+        segment.putInt(1);
+        segment.putLong(nextSequence);
+        segment.put(lastHash);
+        segment.force();
+    }
+    
+    // Finds the end of the newest segment, trusting records whose CRC checks out
+    private void resume(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        nextSequence = segment.getLong(8);
+        segment.position(16);
+        segment.get(lastHash);
+        int position = HEADER_SIZE;
+        while (position + 4 <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length < FIXED_SIZE + HASH_SIZE || length > MAX_RECORD_SIZE || position + length > segment.limit()) {
+                break;
+            }
+            crc.reset();
+            segment.position(position + 8).limit(position + length);
+            crc.update(segment);
+            segment.limit(segment.capacity());
+            if ((int) crc.getValue() != segment.getInt(position + 4)) {
+                break; // torn write from a crash; later appends overwrite it
+            }
+            segment.position(position + length - HASH_SIZE);
+            segment.get(lastHash);
+            nextSequence = segment.getLong(position + 8) + 1;
+            position += length;
+        }
+        if (position + 4 <= segment.limit()) {
+            segment.putInt(position, 0);
+        }
+        segment.position(position);
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        Path dir = Paths.get(journalDir);
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".journal"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+    
+    private static long firstSequence(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".journal".length()));
+    }
+    
+    private static byte typeCode(String type) {
+        for (int i = 1; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+    
+    private static long unscaled(BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value.scale() < 0 || value.scale() > 18) {
+            throw new IllegalArgumentException("Unsupported scale for audit journal: " + value);
+        }
+        if (value.precision() <= 15) {
+            // Under 2^52 unscaled, the double round trip is exact and, unlike unscaledValue(), allocates nothing
+            return Math.round(value.doubleValue() * POWERS_OF_TEN[value.scale()]);
+        }
+        return value.unscaledValue().longValueExact();
+    }
+    
+    private static BigDecimal getDecimal(MappedByteBuffer buffer) {
+        long unscaled = buffer.getLong();
+        byte scale = buffer.get();
+        return scale == -1 ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+    
+    private static int asciiLength(String value) {
+        return value == null ? 0 : Math.min(value.length(), 255);
+    }
+    
+    // Non-ASCII characters are stored as '?'; account numbers are ASCII
+    private static void putAscii(MappedByteBuffer buffer, String value, int length) {
+        buffer.put((byte) length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            buffer.put(c < 128 ? (byte) c : (byte) '?');
+        }
+    }
+    
+    private static String getAscii(MappedByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+    
+    private static String toHex(byte[] bytes) {
+        return String.format("%064x", new BigInteger(1, bytes));
+    }
+    
+    // Appends the records a thread queued during its transaction once that transaction commits
+    private class AfterCommitAppender implements TransactionSynchronization {
+        
+        @Override
+        public void suspend() {
+            pending.get().suspend();
+        }
+        
+        @Override
+        public void resume() {
+            pending.get().resume();
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            PendingRecords records = pending.get();
+            try {
+                if (status == STATUS_COMMITTED) {
+                    for (int i = records.start; i < records.count; i++) {
+                        PendingRecord r = records.slots[i];
+                        try {
+                            append(r.type, r.transactionRowId, r.accountNumber, r.counterparty, r.amount, r.balanceAfter);
+                        } catch (RuntimeException e) {
+                            // The money has moved; failing the request now would only mislead the caller.
+                            // reconcile() journals the row from the table.
+                            log.error("Could not journal transaction {}", r.transactionRowId, e);
+                        }
+                    }
+                }
+            } finally {
+                records.clear();
+            }
+        }
+    }
+    
+    /**
+     * Records one thread has queued for its open transaction, in slots reused from one
+     * transaction to the next. A transaction suspended for a REQUIRES_NEW one keeps its records
+     * below start until it resumes.
+     */
+    private static class PendingRecords {
+        private PendingRecord[] slots = new PendingRecord[4];
+        private int[] starts = new int[4];
+        private int depth;
+        private int start;
+        private int count;
+        
+        boolean isEmpty() {
+            return count == start;
+        }
+        
+        void add(String type, long transactionRowId, String accountNumber, String counterparty,
+                 BigDecimal amount, BigDecimal balanceAfter) {
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count * 2);
+            }
+            PendingRecord slot = slots[count];
+            if (slot == null) {
+                slot = slots[count] = new PendingRecord();
+            }
+            slot.type = type;
+            slot.transactionRowId = transactionRowId;
+            slot.accountNumber = accountNumber;
+            slot.counterparty = counterparty;
+            slot.amount = amount;
+            slot.balanceAfter = balanceAfter;
+            count++;
+        }
+        
+        void suspend() {
+            if (depth == starts.length) {
+                starts = Arrays.copyOf(starts, depth * 2);
+            }
+            starts[depth++] = start;
+            start = count;
+        }
+        
+        void resume() {
+            start = starts[--depth];
+        }
+        
+        // Drops the records of the transaction that just completed
+        void clear() {
+            for (int i = start; i < count; i++) {
+                slots[i].clear();
+            }
+            count = start;
+        }
+    }
+    
+    private static class PendingRecord {
+        private String type;
+        private long transactionRowId;
+        private String accountNumber;
+        private String counterparty;
+        private BigDecimal amount;
+        private BigDecimal balanceAfter;
+        
+        void clear() {
+            type = null;
+            accountNumber = null;
+            counterparty = null;
+            amount = null;
+            balanceAfter = null;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.banking.service;
+
+import com.banking.dto.BalanceAsOf;
+import com.banking.dto.StatementAccountTotals;
+import com.banking.dto.StatementLine;
+import com.banking.model.Account;
+import com.banking.model.Customer;
+import com.banking.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * One statement across all of a customer's accounts, in date order, with running balances per
+ * account and for the accounts combined.
+ *
+ * Each account gets a cursor that reads its postings for the period a page at a time, oldest
+ * first, by keyset on (transaction_date, id). A heap holding one cursor per account always
+ * yields the oldest pending posting, so rows are written as they are merged and memory depends
+ * on the number of accounts and the page size, never on the number of transactions. Pages are
+ * read in short transactions of their own, so a slow client holds no connection between pages.
+ * A posting's signed change is its amount, negative for debits as in the ledger reconciliation,
+ * and each account's running balance starts from its balance just before the period. Recorded
+ * balanceAfterTransaction values are not used, since a hot account's are only approximate.
+ */
+@Service
+public class ConsolidatedStatementService {
+
+    @FunctionalInterface
+    public interface LineSink {
+        void accept(StatementLine line) throws IOException;
+    }
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private BalanceHistoryService balanceHistoryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Lazy
+    @Autowired
+    private PdfService pdfService;
+
+    @Value("${banking.statements.consolidated-page-size:500}")
+    private int pageSize;
+
+    private TransactionTemplate pageTransaction;
+
+    @PostConstruct
+    public void init() {
+        // A new transaction, not the request's open-in-view one, so each page releases its connection
+        pageTransaction = new TransactionTemplate(transactionManager);
+        pageTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        pageTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Merges the accounts' postings for the period into the sink in date order and returns the
+     * totals per account, in the order the accounts were given.
+     */
+    public List<StatementAccountTotals> merge(List<Account> accounts, LocalDate startDate, LocalDate endDate,
+                                              LineSink sink) throws IOException {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        List<StatementAccountTotals> totals = new ArrayList<>(accounts.size());
+        if (accounts.isEmpty()) {
+            return totals;
+        }
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+
+        // Timestamps are stored to the microsecond, so this is the balance just before the period
+        List<String> accountNumbers = accounts.stream().map(Account::getAccountNumber).collect(Collectors.toList());
+        List<BalanceAsOf> openings = pageTransaction.execute(status ->
+            balanceHistoryService.getBalancesAsOf(accountNumbers, from.minusNanos(1000)));
+
+        BigDecimal combined = BigDecimal.ZERO;
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(accounts.size(), Comparator
+            .comparing((Cursor cursor) -> (LocalDateTime) cursor.current()[1])
+            .thenComparing(cursor -> (Long) cursor.current()[0]));
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            BalanceAsOf opening = openings.get(i);
+            BigDecimal balance = opening != null && opening.getBalance() != null ? opening.getBalance() : BigDecimal.ZERO;
+            StatementAccountTotals accountTotals = new StatementAccountTotals(account.getAccountNumber(),
+                account.getAccountType() != null ? account.getAccountType().toString() : "",
+                balance, BigDecimal.ZERO, BigDecimal.ZERO, balance, 0);
+            totals.add(accountTotals);
+            combined = combined.add(balance);
+
+            Cursor cursor = new Cursor(account, accountTotals, to);
+            if (cursor.fetch(from, 0L)) {
+                heap.add(cursor);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            Object[] row = cursor.current();
+            StatementAccountTotals accountTotals = cursor.totals;
+            BigDecimal amount = row[7] != null ? (BigDecimal) row[7] : BigDecimal.ZERO;
+            BigDecimal change;
+            if (LedgerReconciliationService.isDebit((String) row[3])) {
+                change = amount.negate();
+                accountTotals.setMoneyOut(accountTotals.getMoneyOut().add(amount));
+            } else {
+                change = amount;
+                accountTotals.setMoneyIn(accountTotals.getMoneyIn().add(amount));
+            }
+            accountTotals.setClosingBalance(accountTotals.getClosingBalance().add(change));
+            accountTotals.setTransactions(accountTotals.getTransactions() + 1);
+            combined = combined.add(change);
+
+            sink.accept(new StatementLine((LocalDateTime) row[1], cursor.account.getAccountNumber(),
+                (String) row[2], (String) row[3], row[4] != null ? row[4].toString() : "OTHER",
+                (String) row[5], change, accountTotals.getClosingBalance(), combined));
+
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return totals;
+    }
+
+    public void writeCsv(List<Account> accounts, LocalDate startDate, LocalDate endDate,
+                         OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("Date,Account,Transaction,Type,Category,Description,Change,Account Balance,Combined Balance\n");
+        List<StatementAccountTotals> totals = merge(accounts, startDate, endDate, line -> {
+            writer.write(line.getDate().toString());
+            for (Object value : new Object[] { line.getAccountNumber(), line.getTransactionId(), line.getType(),
+                    line.getCategory(), line.getDescription(), line.getChange(), line.getAccountBalance(),
+                    line.getCombinedBalance() }) {
+                writer.write(',');
+                writer.write(csv(value));
+            }
+            writer.write('\n');
+        });
+
+        writer.write("\nAccount,Type,Opening Balance,Money In,Money Out,Closing Balance,Transactions\n");
+        StatementAccountTotals combined = combine(totals);
+        totals.add(combined);
+        for (StatementAccountTotals accountTotals : totals) {
+            writer.write(csv(accountTotals.getAccountNumber()) + "," + csv(accountTotals.getAccountType()) + ","
+                + accountTotals.getOpeningBalance() + "," + accountTotals.getMoneyIn() + ","
+                + accountTotals.getMoneyOut() + "," + accountTotals.getClosingBalance() + ","
+                + accountTotals.getTransactions() + "\n");
+        }
+        writer.flush();
+    }
+
+    public void writePdf(Customer customer, List<Account> accounts, LocalDate startDate, LocalDate endDate,
+                         OutputStream outputStream) throws IOException {
+        try (PdfService.ConsolidatedStatementWriter writer = pdfService.openConsolidatedStatement(
+                customer, startDate, endDate, outputStream)) {
+            List<StatementAccountTotals> totals = merge(accounts, startDate, endDate, writer::addLine);
+            totals.add(combine(totals));
+            writer.addTotals(totals);
+        }
+    }
+
+    // The totals of all accounts together, as the last row of the summary
+    private static StatementAccountTotals combine(List<StatementAccountTotals> totals) {
+        StatementAccountTotals combined = new StatementAccountTotals("All accounts", "",
+            BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0);
+        for (StatementAccountTotals accountTotals : totals) {
+            combined.setOpeningBalance(combined.getOpeningBalance().add(accountTotals.getOpeningBalance()));
+            combined.setMoneyIn(combined.getMoneyIn().add(accountTotals.getMoneyIn()));
+            combined.setMoneyOut(combined.getMoneyOut().add(accountTotals.getMoneyOut()));
+            combined.setClosingBalance(combined.getClosingBalance().add(accountTotals.getClosingBalance()));
+            combined.setTransactions(combined.getTransactions() + accountTotals.getTransactions());
+        }
+        return combined;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    // One account's postings for the period, a page at a time
+    private class Cursor {
+        private final Account account;
+        private final StatementAccountTotals totals;
+        private final LocalDateTime to;
+        private List<Object[]> page;
+        private int position;
+
+        Cursor(Account account, StatementAccountTotals totals, LocalDateTime to) {
+            this.account = account;
+            this.totals = totals;
+            this.to = to;
+        }
+
+        Object[] current() {
+            return page.get(position);
+        }
+
+        boolean advance() {
+            position++;
+            if (position < page.size()) {
+                return true;
+            }
+            if (page.size() < pageSize) {
+                return false;
+            }
+            Object[] last = page.get(page.size() - 1);
+            return fetch((LocalDateTime) last[1], (Long) last[0]);
+        }
+
+        boolean fetch(LocalDateTime afterDate, Long afterId) {
+            page = pageTransaction.execute(status -> transactionRepository.findPostingsAfter(
+                account.getId(), afterDate, afterId, to, PageRequest.of(0, pageSize)));
+            position = 0;
+            return !page.isEmpty();
+        }
+    }
+}
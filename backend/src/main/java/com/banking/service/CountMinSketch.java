@@ -0,0 +1,122 @@
+package com.banking.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch of weights per string key. Not thread-safe; callers lock around it.
+ *
+ * depth rows of width counters each, the width rounded up to a power of two. A key maps to one
+ * counter per row through double hashing of a 64-bit hash, and its estimate is the smallest of
+ * those counters. Updates are conservative: a counter is only raised as far as the key's new
+ * estimate, which keeps collisions from inflating keys that already have a larger count. An
+ * estimate is never below the true total, and exceeds it by more than {@link #errorBound} with
+ * probability at most e^-depth. Counters only grow, so a key's estimate never goes down.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final long[] counters; // row-major, depth * width
+    private long total;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException("Depth and width must be positive");
+        }
+        this.depth = depth;
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.mask = this.width - 1;
+        this.counters = new long[depth * this.width];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // Sum of every weight added
+    public long total() {
+        return total;
+    }
+
+    // Adds the weight to the key and returns the key's new estimate
+    public long add(String key, long weight) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long target = estimate(h1, h2) + weight;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + ((h1 + row * h2) & mask);
+            if (counters[index] < target) {
+                counters[index] = target;
+            }
+        }
+        total += weight;
+        return target;
+    }
+
+    public long estimate(String key) {
+        long hash = hash(key);
+        return estimate((int) hash, (int) (hash >>> 32) | 1);
+    }
+
+    // With probability 1 - e^-depth no estimate exceeds its key's true total by more than this
+    public long errorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0L);
+        total = 0;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeLong(total);
+        for (long counter : counters) {
+            out.writeLong(counter);
+        }
+    }
+
+    // Reads a sketch written by writeTo; its shape has to match this one's
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != depth || in.readInt() != width) {
+            throw new IOException("Sketch dimensions don't match");
+        }
+        total = in.readLong();
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = in.readLong();
+        }
+    }
+
+    private long estimate(int h1, int h2) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    // FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ef77bL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
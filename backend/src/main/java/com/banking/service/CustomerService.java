@@ -5,32 +5,60 @@ import com.banking.dto.CustomerDTO;
 import com.banking.dto.LoginRequest;
 import com.banking.repository.CustomerRepository;
 import com.banking.security.PasswordUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.Locale;
 import java.util.Optional;
 
 @Service
 public class CustomerService {
     
+    private static final String UNIQUE_VIOLATION = "23505";
+    
     @Autowired
     private CustomerRepository customerRepository;
     
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    // The unique constraint on email is the duplicate check, saving a lookup per registration
     public Customer registerCustomer(CustomerDTO customerDTO) {
-        if (customerRepository.existsByEmail(customerDTO.getEmail())) {
-            throw new RuntimeException("Email already exists");
-        }
-        
         Customer customer = new Customer();
         customer.setFullName(customerDTO.getFullName());
         customer.setEmail(customerDTO.getEmail());
         customer.setPasswordHash(PasswordUtils.hashPassword(customerDTO.getPassword()));
-        customer.setCustomerId(PasswordUtils.generateCustomerId());
+        customer.setCustomerId(idAllocator.nextCustomerId());
         customer.setPhoneNumber(customerDTO.getPhoneNumber());
         customer.setAddress(customerDTO.getAddress());
         customer.setCreatedAt(LocalDateTime.now());
         
-        return customerRepository.save(customer);
+        try {
+            return customerRepository.saveAndFlush(customer);
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateEmail(e)) {
+                throw new RuntimeException("Email already exists");
+            }
+            throw e;
+        }
+    }
+    
+    // Only a unique violation on the email column is a duplicate registration; a clash on customer_id
+    // or a missing value is a fault and goes up as it is. Postgres names the constraint
+    // customers_email_key, H2 reports its index on CUSTOMERS(EMAIL)
+    private static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                ConstraintViolationException violation = (ConstraintViolationException) cause;
+                String constraint = violation.getConstraintName() != null
+                    ? violation.getConstraintName() : violation.getSQLException().getMessage();
+                return UNIQUE_VIOLATION.equals(violation.getSQLState()) && constraint != null
+                    && constraint.toLowerCase(Locale.ROOT).contains("email");
+            }
+        }
+        return false;
     }
     
     public Optional<Customer> login(LoginRequest loginRequest) {
@@ -0,0 +1,341 @@
+package com.banking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkheads for request work: money movement, history reads and statement rendering each run
+ * on their own lane, so a burst in one can't take the threads or database connections the
+ * others need.
+ *
+ * A lane is a fixed thread pool with a bounded queue, a connection budget (a semaphore capping
+ * how many of its tasks use the database at once, sized so the budgets leave part of the Hikari
+ * pool to background work) and an admission timeout: work that hasn't started within it, queue
+ * and budget wait included, is turned away. Work is never abandoned once started, since a
+ * transfer that times out still commits. Each lane has a circuit breaker that opens after a run
+ * of queue-full or admission timeouts and then refuses new work straight away until a trial task
+ * gets through.
+ *
+ * Transactional and read tasks hold a connection for their whole run and get an EntityManager
+ * bound to the lane thread, as open-in-view gives request threads. Report tasks are mostly
+ * rendering, so they take the budget only around their queries through {@link #withConnection}.
+ */
+@Service
+public class ExecutionLanes {
+
+    public enum Lane {
+        TRANSACTIONAL(true),
+        READ(true),
+        REPORT(false);
+
+        private final boolean connectionPerTask;
+
+        Lane(boolean connectionPerTask) {
+            this.connectionPerTask = connectionPerTask;
+        }
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionLanes.class);
+    private static final ThreadLocal<LaneExecutor> CURRENT = new ThreadLocal<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${banking.lanes.transactional.threads:16}")
+    private int transactionalThreads;
+
+    @Value("${banking.lanes.transactional.queue:200}")
+    private int transactionalQueue;
+
+    @Value("${banking.lanes.transactional.connections:4}")
+    private int transactionalConnections;
+
+    @Value("${banking.lanes.transactional.timeout-ms:2000}")
+    private long transactionalTimeoutMs;
+
+    @Value("${banking.lanes.read.threads:8}")
+    private int readThreads;
+
+    @Value("${banking.lanes.read.queue:200}")
+    private int readQueue;
+
+    @Value("${banking.lanes.read.connections:2}")
+    private int readConnections;
+
+    @Value("${banking.lanes.read.timeout-ms:3000}")
+    private long readTimeoutMs;
+
+    @Value("${banking.lanes.report.threads:2}")
+    private int reportThreads;
+
+    @Value("${banking.lanes.report.queue:20}")
+    private int reportQueue;
+
+    @Value("${banking.lanes.report.connections:1}")
+    private int reportConnections;
+
+    @Value("${banking.lanes.report.timeout-ms:10000}")
+    private long reportTimeoutMs;
+
+    @Value("${banking.lanes.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${banking.lanes.breaker.open-ms:5000}")
+    private long breakerOpenMs;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int poolSize;
+
+    private final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+
+    @PostConstruct
+    public void init() {
+        lanes.put(Lane.TRANSACTIONAL, new LaneExecutor(Lane.TRANSACTIONAL, transactionalThreads,
+            transactionalQueue, transactionalConnections, transactionalTimeoutMs));
+        lanes.put(Lane.READ, new LaneExecutor(Lane.READ, readThreads, readQueue, readConnections, readTimeoutMs));
+        lanes.put(Lane.REPORT, new LaneExecutor(Lane.REPORT, reportThreads, reportQueue, reportConnections,
+            reportTimeoutMs));
+        // Workers, pollers and REQUIRES_NEW transactions inside lane tasks draw on the same pool
+        int budgets = transactionalConnections + readConnections + reportConnections;
+        if (budgets >= poolSize) {
+            log.warn("Lane connection budgets add up to {} of {} pooled connections, leaving none for background work",
+                budgets, poolSize);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(lane -> lane.pool.shutdownNow());
+    }
+
+    /**
+     * Runs the work on the given lane. The future fails with {@link LaneUnavailableException}
+     * when the lane turns the work away, and with the work's own exception otherwise.
+     */
+    public <T> CompletableFuture<T> submit(Lane lane, Callable<T> work) {
+        LaneExecutor executor = lanes.get(lane);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (!executor.breaker.allow()) {
+            executor.reject("circuit-open", result);
+            return result;
+        }
+        long submittedAt = System.nanoTime();
+        try {
+            executor.pool.execute(() -> executor.run(work, submittedAt, result));
+        } catch (RejectedExecutionException e) {
+            executor.breaker.onSaturated();
+            executor.reject("queue-full", result);
+        }
+        return result;
+    }
+
+    /**
+     * Runs database work inside a report task under the lane's connection budget. Elsewhere,
+     * including transactional and read tasks that already hold the budget, it just runs it.
+     */
+    public <T> T withConnection(Callable<T> work) throws Exception {
+        LaneExecutor executor = CURRENT.get();
+        if (executor == null || executor.lane.connectionPerTask) {
+            return work.call();
+        }
+        if (!executor.connections.tryAcquire(executor.timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new LaneUnavailableException(executor.lane);
+        }
+        try {
+            return work.call();
+        } finally {
+            executor.connections.release();
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (LaneExecutor executor : lanes.values()) {
+            Map<String, Object> lane = new HashMap<>();
+            lane.put("threads", executor.pool.getMaximumPoolSize());
+            lane.put("active", executor.pool.getActiveCount());
+            lane.put("queued", executor.pool.getQueue().size());
+            lane.put("connectionBudget", executor.connectionBudget);
+            lane.put("connectionsInUse", executor.connectionBudget - executor.connections.availablePermits());
+            lane.put("timeoutMs", executor.timeoutMs);
+            lane.put("circuit", executor.breaker.state());
+            status.put(executor.lane.key(), lane);
+        }
+        return status;
+    }
+
+    public static class LaneUnavailableException extends RuntimeException {
+        public LaneUnavailableException(Lane lane) {
+            super("The " + lane.key() + " lane is busy, please retry shortly");
+        }
+    }
+
+    private class LaneExecutor {
+        private final Lane lane;
+        private final ThreadPoolExecutor pool;
+        private final Semaphore connections;
+        private final int connectionBudget;
+        private final long timeoutMs;
+        private final CircuitBreaker breaker = new CircuitBreaker();
+        private final Timer waitTimer;
+        private final Timer runTimer;
+
+        LaneExecutor(Lane lane, int threads, int queue, int connectionBudget, long timeoutMs) {
+            this.lane = lane;
+            this.connectionBudget = connectionBudget;
+            this.connections = new Semaphore(connectionBudget);
+            this.timeoutMs = timeoutMs;
+            this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+                    Thread thread = new Thread(runnable, "lane-" + lane.key());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+            String tag = lane.key();
+            waitTimer = Timer.builder("banking.lanes.wait").tag("lane", tag)
+                .description("Time from submission until the work started, queue and connection budget included")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+            runTimer = Timer.builder("banking.lanes.execution").tag("lane", tag)
+                .description("Time the work ran on its lane")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+            Gauge.builder("banking.lanes.active", pool, ThreadPoolExecutor::getActiveCount).tag("lane", tag)
+                .register(meterRegistry);
+            Gauge.builder("banking.lanes.queued", pool, executor -> executor.getQueue().size()).tag("lane", tag)
+                .register(meterRegistry);
+            Gauge.builder("banking.lanes.connections.in-use", connections,
+                    semaphore -> connectionBudget - semaphore.availablePermits()).tag("lane", tag)
+                .register(meterRegistry);
+            Gauge.builder("banking.lanes.circuit.open", breaker, b -> b.state().equals("CLOSED") ? 0 : 1)
+                .tag("lane", tag)
+                .register(meterRegistry);
+        }
+
+        <T> void run(Callable<T> work, long submittedAt, CompletableFuture<T> result) {
+            long deadline = submittedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            boolean permit = false;
+            EntityManager entityManager = null;
+            CURRENT.set(this);
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || (lane.connectionPerTask
+                        && !(permit = connections.tryAcquire(remaining, TimeUnit.NANOSECONDS)))) {
+                    breaker.onSaturated();
+                    reject("timeout", result);
+                    return;
+                }
+                breaker.onAdmitted();
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                if (lane.connectionPerTask) {
+                    entityManager = entityManagerFactory.createEntityManager();
+                    TransactionSynchronizationManager.bindResource(entityManagerFactory,
+                        new EntityManagerHolder(entityManager));
+                }
+                try {
+                    result.complete(work.call());
+                } finally {
+                    runTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(new LaneUnavailableException(lane));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                if (entityManager != null) {
+                    TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+                    entityManager.close();
+                }
+                if (permit) {
+                    connections.release();
+                }
+                CURRENT.remove();
+            }
+        }
+
+        void reject(String reason, CompletableFuture<?> result) {
+            Counter.builder("banking.lanes.rejected").tag("lane", lane.key()).tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+            result.completeExceptionally(new LaneUnavailableException(lane));
+        }
+    }
+
+    // Opens after a run of saturation failures; once open-ms has passed a single trial is let
+    // through, and whether it gets admitted decides between closing and opening again
+    private class CircuitBreaker {
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean open;
+        private boolean trialInFlight;
+
+        synchronized boolean allow() {
+            if (!open) {
+                return true;
+            }
+            if (trialInFlight || System.currentTimeMillis() < openUntil) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized void onAdmitted() {
+            consecutiveFailures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        synchronized void onSaturated() {
+            consecutiveFailures++;
+            if (trialInFlight || consecutiveFailures >= breakerFailureThreshold) {
+                open = true;
+                openUntil = System.currentTimeMillis() + breakerOpenMs;
+                trialInFlight = false;
+                consecutiveFailures = 0;
+            }
+        }
+
+        synchronized String state() {
+            if (!open) {
+                return "CLOSED";
+            }
+            return trialInFlight || System.currentTimeMillis() >= openUntil ? "HALF_OPEN" : "OPEN";
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.AccountBalanceShard;
+import com.banking.repository.AccountBalanceShardRepository;
+import com.banking.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot-account mode for merchant and settlement accounts that receive many concurrent credits.
+ *
+ * The balance is split into the accounts row (the consolidated part) plus N shard rows. Credits
+ * add to one randomly chosen shard with a single atomic UPDATE, so concurrent credits only
+ * contend when they pick the same shard. Debits spend the consolidated part first and, when it
+ * falls short, lock the account row and all shards and sweep the shards into it.
+ */
+@Service
+public class HotAccountService {
+    
+    public static final int MAX_SHARDS = 64;
+    
+    @Autowired
+    private AccountBalanceShardRepository shardRepository;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    public void credit(Account account, BigDecimal amount) {
+        int shard = ThreadLocalRandom.current().nextInt(account.getBalanceShards());
+        if (shardRepository.credit(account.getId(), shard, amount) != 1) {
+            throw new RuntimeException("Balance shard " + shard + " missing for account " + account.getAccountNumber());
+        }
+    }
+    
+    // Reads the shard total into the account; committed credits by others are included
+    public BigDecimal refreshShardedBalance(Account account) {
+        account.setShardedBalance(shardRepository.sumBalance(account.getId()));
+        return account.getAvailableBalance();
+    }
+    
+    // Locks the account row until the transaction ends. A copy read before someone else's
+    // committed change fails its version check here rather than being written back later
+    public void lock(Account account) {
+        entityManager.lock(account, LockModeType.PESSIMISTIC_WRITE);
+    }
+    
+    // Moves every shard's funds into the consolidated balance; the caller saves the account.
+    // The row is locked before the shards, in the same order as configureShards
+    public void consolidate(Account account) {
+        lock(account);
+        List<AccountBalanceShard> shards = shardRepository.findByAccountIdForUpdate(account.getId());
+        BigDecimal swept = BigDecimal.ZERO;
+        for (AccountBalanceShard shard : shards) {
+            swept = swept.add(shard.getBalance());
+            shard.setBalance(BigDecimal.ZERO);
+        }
+        shardRepository.saveAll(shards);
+        account.setBalance(account.getBalance().add(swept));
+        account.setShardedBalance(BigDecimal.ZERO);
+    }
+    
+    // Switches hot-account mode on with the given shard count, or off when shards is 0
+    @Transactional
+    public Account configureShards(String accountNumber, int shards) {
+        if (shards < 0 || shards > MAX_SHARDS) {
+            throw new RuntimeException("Shard count must be between 0 and " + MAX_SHARDS);
+        }
+        // The consolidated balance is rewritten below, so debits have to wait
+        Account account = accountRepository.findByAccountNumberForUpdate(accountNumber)
+            .orElseThrow(() -> new RuntimeException("Account not found with number: " + accountNumber));
+        
+        if (account.isHotAccount()) {
+            List<AccountBalanceShard> existing = shardRepository.findByAccountIdForUpdate(account.getId());
+            BigDecimal swept = BigDecimal.ZERO;
+            for (AccountBalanceShard shard : existing) {
+                swept = swept.add(shard.getBalance());
+            }
+            shardRepository.deleteAll(existing);
+            shardRepository.flush(); // deletes must reach the database before re-inserting shard indexes
+            account.setBalance(account.getBalance().add(swept));
+        }
+        
+        for (int i = 0; i < shards; i++) {
+            shardRepository.save(new AccountBalanceShard(null, account.getId(), i, BigDecimal.ZERO));
+        }
+        account.setBalanceShards(shards > 0 ? shards : null);
+        account.setShardedBalance(BigDecimal.ZERO);
+        return accountRepository.save(account);
+    }
+}
@@ -0,0 +1,119 @@
+package com.banking.service;
+
+import com.banking.model.IdBlock;
+import com.banking.repository.IdBlockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out customer IDs, account numbers and transaction IDs that can never collide, across
+ * threads and instances.
+ *
+ * Each series has a row in id_blocks. An instance leases a block of block-size values by moving
+ * the row's nextValue forward under a row lock, in its own transaction so a caller rolling back
+ * can't give the range away twice, and then hands the block out with an atomic increment. A
+ * new lease is only needed once per block, so the database sees one small update per thousand
+ * identifiers. Values left in a block when an instance stops are skipped, never reused.
+ *
+ * The formats can't meet the identifiers issued before: those were CUST plus exactly six digits,
+ * ACC plus ten digits starting 1-9 and TXN plus a millisecond timestamp, while these are CUST
+ * plus eight digits, ACC plus a zero and nine digits, and TXN plus a zero and twelve digits.
+ */
+@Service
+public class IdAllocator {
+    
+    public static final String CUSTOMER_IDS = "customer_id";
+    public static final String ACCOUNT_NUMBERS = "account_number";
+    public static final String TRANSACTION_IDS = "transaction_id";
+    
+    @Autowired
+    private IdBlockRepository idBlockRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${banking.ids.block-size:1000}")
+    private int blockSize;
+    
+    private final Map<String, AtomicReference<Block>> blocks = new ConcurrentHashMap<>();
+    private TransactionTemplate leaseTransaction;
+    
+    @PostConstruct
+    public void init() {
+        leaseTransaction = new TransactionTemplate(transactionManager);
+        leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    public String nextCustomerId() {
+        return String.format("CUST%08d", next(CUSTOMER_IDS));
+    }
+    
+    public String nextAccountNumber() {
+        return String.format("ACC0%09d", next(ACCOUNT_NUMBERS));
+    }
+    
+    public String nextTransactionId() {
+        return String.format("TXN0%012d", next(TRANSACTION_IDS));
+    }
+    
+    public long next(String series) {
+        AtomicReference<Block> current = blocks.computeIfAbsent(series, name -> new AtomicReference<>(new Block(0, 0)));
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return value;
+            }
+            // Exhausted: one thread leases the next block while the others wait for it
+            synchronized (current) {
+                if (current.get() == block) {
+                    long start = lease(series);
+                    current.set(new Block(start, start + blockSize));
+                }
+            }
+        }
+    }
+    
+    private long lease(String series) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return leaseTransaction.execute(status -> {
+                    IdBlock row = idBlockRepository.findByNameForUpdate(series)
+                        .orElseGet(() -> new IdBlock(series, 1L, null));
+                    long start = row.getNextValue();
+                    row.setNextValue(start + blockSize);
+                    row.setUpdatedAt(LocalDateTime.now());
+                    idBlockRepository.saveAndFlush(row);
+                    return start;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Another instance created the series row first; lock it and lease again
+                if (attempt >= 2) {
+                    throw new RuntimeException("Could not lease a block of " + series, e);
+                }
+            }
+        }
+    }
+    
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+        
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
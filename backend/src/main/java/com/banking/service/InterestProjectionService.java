@@ -0,0 +1,226 @@
+package com.banking.service;
+
+import com.banking.dto.InterestProjection;
+import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compound interest projections for many balances, rates and horizons at once.
+ *
+ * The monthly loop in {@link InterestService} rounds every month's interest to cents with
+ * HALF_UP, so a textbook closed form (balance * (1 + r)^n) drifts from it. Instead balances are
+ * carried as whole cents and the monthly rate as a fixed-point long with the same 10 decimal
+ * places the loop uses, which reproduces the loop exactly with a couple of integer operations
+ * per month. Once a month's interest rounds to zero the balance can never grow again, so the
+ * remaining months are skipped. Balances that don't fit the fast path fall back to BigDecimal,
+ * and so does any total that outgrows a long, so no input makes a projection fail halfway.
+ */
+@Service
+public class InterestProjectionService {
+
+    static final int RATE_SCALE = 10;
+    private static final long CENTS_ROUNDING_DIVISOR = 10_000_000_000L; // 10^RATE_SCALE
+    private static final long CENTS_ROUNDING_HALF = CENTS_ROUNDING_DIVISOR / 2;
+    private static final BigDecimal MONTHS_PER_YEAR = new BigDecimal("12");
+    private static final int ACCOUNTS_PER_TASK = 2048;
+
+    public static BigDecimal monthlyRate(BigDecimal annualRate) {
+        return annualRate.divide(MONTHS_PER_YEAR, RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    // Total interest earned over the given number of months, identical to the month-by-month loop
+    public BigDecimal projectInterest(BigDecimal balance, BigDecimal annualRate, int months) {
+        Totals totals = new Totals(1);
+        accumulate(balance, monthlyRate(annualRate), new int[] { months }, totals, 0, new long[1]);
+        return totals.get(0);
+    }
+
+    /**
+     * Evaluates every balance under every rate for every horizon and returns one aggregated row
+     * per (rate, horizon) pair, in the order the rates and horizons were given.
+     */
+    public List<InterestProjection> projectGrid(List<BigDecimal> balances, List<BigDecimal> annualRates,
+                                                List<Integer> horizons) {
+        int[] sortedHorizons = horizons.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        BigDecimal[] monthlyRates = annualRates.stream()
+            .map(InterestProjectionService::monthlyRate)
+            .toArray(BigDecimal[]::new);
+        BigDecimal[] balanceArray = balances.toArray(new BigDecimal[0]);
+
+        Totals totals = ForkJoinPool.commonPool()
+            .invoke(new GridTask(balanceArray, 0, balanceArray.length, monthlyRates, sortedHorizons));
+
+        List<InterestProjection> projections = new ArrayList<>();
+        for (int r = 0; r < annualRates.size(); r++) {
+            for (int horizon : horizons) {
+                int h = Arrays.binarySearch(sortedHorizons, horizon);
+                projections.add(new InterestProjection(annualRates.get(r), horizon, balanceArray.length,
+                    totals.get(r * sortedHorizons.length + h)));
+            }
+        }
+        return projections;
+    }
+
+    // Adds the cumulative interest (in cents) at each sorted horizon into totals[offset..]
+    private static void accumulate(BigDecimal balance, BigDecimal monthlyRate, int[] sortedHorizons,
+                                   Totals totals, int offset, long[] scratch) {
+        if (balance == null || sortedHorizons.length == 0) {
+            return;
+        }
+        if (balance.scale() <= 2 && monthlyRate.scale() == RATE_SCALE
+                && projectCents(balance, monthlyRate, sortedHorizons, scratch)) {
+            for (int h = 0; h < sortedHorizons.length; h++) {
+                totals.add(offset + h, scratch[h]);
+            }
+            return;
+        }
+        accumulateDecimal(balance, monthlyRate, sortedHorizons, totals, offset);
+    }
+
+    // Fills scratch with cumulative interest in cents per horizon; false if a value left long range
+    private static boolean projectCents(BigDecimal balance, BigDecimal monthlyRate, int[] sortedHorizons,
+                                        long[] scratch) {
+        try {
+            long cents = balance.movePointRight(2).longValueExact();
+            long rateUnits = monthlyRate.unscaledValue().longValueExact();
+            long interest = 0;
+            int month = 0;
+            for (int h = 0; h < sortedHorizons.length; h++) {
+                int horizon = sortedHorizons[h];
+                while (month < horizon) {
+                    long monthly = roundToCents(Math.multiplyExact(cents, rateUnits));
+                    if (monthly == 0) {
+                        month = horizon; // fixed point: every later month also earns nothing
+                        break;
+                    }
+                    interest = Math.addExact(interest, monthly);
+                    cents = Math.addExact(cents, monthly);
+                    month++;
+                }
+                scratch[h] = interest;
+            }
+            return true;
+        } catch (ArithmeticException overflow) {
+            return false;
+        }
+    }
+
+    // HALF_UP from 12 to 2 decimal places, rounding ties away from zero like BigDecimal
+    private static long roundToCents(long product) {
+        if (product >= 0) {
+            return (product + CENTS_ROUNDING_HALF) / CENTS_ROUNDING_DIVISOR;
+        }
+        return -((-product + CENTS_ROUNDING_HALF) / CENTS_ROUNDING_DIVISOR);
+    }
+
+    private static void accumulateDecimal(BigDecimal balance, BigDecimal monthlyRate, int[] sortedHorizons,
+                                          Totals totals, int offset) {
+        BigDecimal currentBalance = balance;
+        BigDecimal interest = BigDecimal.ZERO;
+        int month = 0;
+        for (int h = 0; h < sortedHorizons.length; h++) {
+            for (; month < sortedHorizons[h]; month++) {
+                BigDecimal monthly = currentBalance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+                interest = interest.add(monthly);
+                currentBalance = currentBalance.add(monthly);
+            }
+            totals.add(offset + h, interest.movePointRight(2));
+        }
+    }
+
+    // Splits the balances in half until a slice is small enough, then walks it for every rate
+    private static class GridTask extends RecursiveTask<Totals> {
+        private final BigDecimal[] balances;
+        private final int from;
+        private final int to;
+        private final BigDecimal[] monthlyRates;
+        private final int[] sortedHorizons;
+
+        GridTask(BigDecimal[] balances, int from, int to, BigDecimal[] monthlyRates, int[] sortedHorizons) {
+            this.balances = balances;
+            this.from = from;
+            this.to = to;
+            this.monthlyRates = monthlyRates;
+            this.sortedHorizons = sortedHorizons;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= ACCOUNTS_PER_TASK) {
+                Totals totals = new Totals(monthlyRates.length * sortedHorizons.length);
+                long[] scratch = new long[sortedHorizons.length];
+                for (int r = 0; r < monthlyRates.length; r++) {
+                    int offset = r * sortedHorizons.length;
+                    for (int i = from; i < to; i++) {
+                        accumulate(balances[i], monthlyRates[r], sortedHorizons, totals, offset, scratch);
+                    }
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            GridTask left = new GridTask(balances, from, mid, monthlyRates, sortedHorizons);
+            GridTask right = new GridTask(balances, mid, to, monthlyRates, sortedHorizons);
+            left.fork();
+            Totals totals = right.compute();
+            totals.addAll(left.join());
+            return totals;
+        }
+    }
+
+    // Interest in cents per (rate, horizon) cell; a cell that outgrows a long carries on in BigDecimal
+    private static class Totals {
+        private final long[] cents;
+        private BigDecimal[] overflow;
+
+        Totals(int size) {
+            cents = new long[size];
+        }
+
+        void add(int index, long value) {
+            try {
+                cents[index] = Math.addExact(cents[index], value);
+            } catch (ArithmeticException e) {
+                spill(index, BigDecimal.valueOf(value));
+            }
+        }
+
+        // value is a whole number of cents
+        void add(int index, BigDecimal value) {
+            if (value.scale() == 0 && value.unscaledValue().bitLength() < 64) {
+                add(index, value.longValue());
+            } else {
+                spill(index, value);
+            }
+        }
+
+        void addAll(Totals other) {
+            for (int i = 0; i < cents.length; i++) {
+                add(i, other.cents[i]);
+                if (other.overflow != null && other.overflow[i] != null) {
+                    spill(i, other.overflow[i]);
+                }
+            }
+        }
+
+        BigDecimal get(int index) {
+            BigDecimal total = BigDecimal.valueOf(cents[index]);
+            if (overflow != null && overflow[index] != null) {
+                total = total.add(overflow[index]);
+            }
+            return total.movePointLeft(2);
+        }
+
+        private void spill(int index, BigDecimal value) {
+            if (overflow == null) {
+                overflow = new BigDecimal[cents.length];
+            }
+            overflow[index] = overflow[index] == null ? value : overflow[index].add(value);
+        }
+    }
+}
@@ -1,93 +1,350 @@
 package com.banking.service;
 
 import com.banking.model.Account;
+import com.banking.model.AccountStatus;
 import com.banking.model.AccountType;
 import com.banking.model.TransactionCategory;
 import com.banking.repository.AccountRepository;
+import com.banking.repository.TransactionRepository;
 import com.banking.dto.TransactionDTO;
+import com.banking.monitoring.InterestChunkEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Credits interest on active accounts.
+ *
+ * Interest accrues daily on each account's average balance over the day, so moving money around
+ * a month-end snapshot earns nothing. A day's balance segments come from balanceAfterTransaction:
+ * the balance before the day starts (one index seek per account) and then each posting's balance
+ * until the next one, taken from one ordered pass over the day's postings for a range of
+ * accounts. Each day's interest is added to the account's accruedInterest at 10 decimal places.
+ * On the first of the month the accrued amount is credited rounded to cents, and the sub-cent
+ * remainder carries into the next month.
+ *
+ * Days and months are coordinator runs, planned strictly in order: a day is only accrued once
+ * the previous one is complete, and a month is only capitalized once its last day is. Each tick
+ * catches up on what is missing, so days skipped while no instance was running are still
+ * accrued from the history. With banking.interest.accrual-enabled=false the previous monthly
+ * credit on the balance at midnight runs instead.
+ *
+ * Accrual never reaches back into a month the monthly credit has already paid for. Without
+ * banking.interest.accrual-start-date it starts on the first of the month of the latest monthly
+ * credit, since that credit covered the month before; with no monthly credit ever posted there is
+ * nothing to overlap and the catch-up window applies on its own.
+ */
 @Service
 public class InterestService {
     
     @Autowired
     private AccountRepository accountRepository;
     
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
     @Autowired
     private TransactionService transactionService;
     
+    @Autowired
+    private InterestProjectionService interestProjectionService;
+    
+    @Autowired
+    private HotAccountService hotAccountService;
+    
+    @Autowired
+    private JobCoordinator jobCoordinator;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${banking.interest.accrual-enabled:true}")
+    private boolean accrualEnabled;
+    
+    @Value("${banking.interest.accrual-catch-up-days:32}")
+    private int accrualCatchUpDays;
+    
+    // Days before this are never accrued; when empty it is worked out from the monthly credits
+    @Value("${banking.interest.accrual-start-date:}")
+    private String accrualStartDate;
+    
+    private volatile LocalDate accrualStart;
+    
     private static final BigDecimal SAVINGS_INTEREST_RATE = new BigDecimal("0.04"); // 4% annual
     private static final BigDecimal CURRENT_INTEREST_RATE = new BigDecimal("0.01"); // 1% annual
     
+    private static final int ACCRUAL_SCALE = 10;
+    private static final BigDecimal SECONDS_PER_DAY = new BigDecimal(86_400);
+    private static final BigDecimal HALF_CENT = new BigDecimal("0.005");
+    
+    private static final String ACCRUE_SQL = "UPDATE accounts SET accrued_interest = COALESCE(accrued_interest, 0) + ?, "
+        + "accrual_date = ? WHERE id = ? AND (accrual_date IS NULL OR accrual_date < ?)";
+    
+    public static final String MONTHLY_CREDIT_DESCRIPTION = "Monthly interest credit";
+    
+    public static final String MONTHLY_INTEREST_JOB = "monthly-interest";
+    public static final String DAILY_ACCRUAL_JOB = "interest-accrual";
+    public static final String CAPITALIZATION_JOB = "interest-capitalization";
+    
+    @PostConstruct
+    public void registerJobs() {
+        jobCoordinator.registerJob(MONTHLY_INTEREST_JOB, this::applyMonthlyInterest);
+        jobCoordinator.registerJob(DAILY_ACCRUAL_JOB, this::accrueRange);
+        jobCoordinator.registerJob(CAPITALIZATION_JOB, this::capitalizeRange);
+    }
+    
+    /**
+     * Accrues every complete day not yet accrued, capitalizing each month as its last day is
+     * done. Stops at the first run another instance is still finishing; the next tick goes on.
+     */
+    @Scheduled(cron = "${banking.interest.accrual-cron:0 15 * * * ?}")
+    public void accrueDailyInterest() {
+        if (!accrualEnabled) {
+            return;
+        }
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        if (minId == null) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate day = yesterday.minusDays(accrualCatchUpDays - 1);
+        LocalDate start = getAccrualStart();
+        if (start != null && day.isBefore(start)) {
+            day = start;
+        }
+        for (; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            if (!runToCompletion(DAILY_ACCRUAL_JOB, DAILY_ACCRUAL_JOB + "-" + day, minId, maxId)) {
+                return;
+            }
+            if (day.equals(YearMonth.from(day).atEndOfMonth())
+                    && !runToCompletion(CAPITALIZATION_JOB, CAPITALIZATION_JOB + "-" + YearMonth.from(day), minId, maxId)) {
+                return;
+            }
+        }
+    }
+    
+    // The configured start date, else the first of the month of the latest monthly credit; null
+    // when neither exists. Found once, as the monthly credits stop once accrual is on
+    private LocalDate getAccrualStart() {
+        if (accrualStart == null) {
+            if (!accrualStartDate.isEmpty()) {
+                accrualStart = LocalDate.parse(accrualStartDate);
+            } else {
+                LocalDateTime lastCredit = transactionRepository
+                    .findLatestTransactionDate("INTEREST", MONTHLY_CREDIT_DESCRIPTION);
+                accrualStart = lastCredit != null
+                    ? lastCredit.toLocalDate().withDayOfMonth(1)
+                    : LocalDate.MIN;
+            }
+        }
+        return accrualStart == LocalDate.MIN ? null : accrualStart;
+    }
+    
+    private boolean runToCompletion(String jobName, String runKey, long minId, long maxId) {
+        if (jobCoordinator.isComplete(runKey)) {
+            return true;
+        }
+        jobCoordinator.run(jobName, runKey, minId, maxId);
+        return jobCoordinator.isComplete(runKey);
+    }
+    
+    // Legacy monthly credit; every instance fires this and the coordinator credits each range once
     @Scheduled(cron = "0 0 0 1 * ?") // Run at midnight on the first day of every month
-    @Transactional
     public void calculateMonthlyInterest() {
-        List<Account> allAccounts = accountRepository.findAll();
+        if (accrualEnabled) {
+            return;
+        }
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        if (minId == null) {
+            return;
+        }
+        jobCoordinator.run(MONTHLY_INTEREST_JOB, MONTHLY_INTEREST_JOB + "-" + YearMonth.now(), minId, maxId);
+    }
+    
+    // Accrues one day for one shard of accounts; runs inside the coordinator's shard transaction
+    private void accrueRange(String runKey, long startId, long endId) {
+        InterestChunkEvent event = new InterestChunkEvent();
+        event.begin();
+        LocalDate day = LocalDate.parse(runKey.substring(DAILY_ACCRUAL_JOB.length() + 1));
+        LocalDateTime dayStart = day.atStartOfDay();
+        LocalDateTime dayEnd = dayStart.plusDays(1);
+        BigDecimal dayCount = new BigDecimal(day.lengthOfYear()).multiply(SECONDS_PER_DAY);
         
-        for (Account account : allAccounts) {
-            if (account.getStatus() == com.banking.model.AccountStatus.ACTIVE) {
-                BigDecimal interest = calculateInterest(account);
-                
-                if (interest.compareTo(BigDecimal.ZERO) > 0) {
-                    // Add interest to account
-                    account.setBalance(account.getBalance().add(interest));
-                    accountRepository.save(account);
-                    
-                    // Create transaction record for interest
-                    TransactionDTO transactionDTO = new TransactionDTO();
-                    transactionDTO.setAmount(interest);
-                    transactionDTO.setType("INTEREST");
-                    transactionDTO.setDescription("Monthly interest credit");
-                    transactionDTO.setCategory(TransactionCategory.OTHER);
-                    
-                    transactionService.createTransaction(account, transactionDTO, account.getBalance());
+        List<Object[]> accounts = accountRepository.findAccrualStateByIdBetween(startId, endId, AccountStatus.ACTIVE);
+        Map<Long, BigDecimal> openingBalances = new HashMap<>();
+        for (Object[] row : transactionRepository.findBalancesBefore(startId, endId, dayStart)) {
+            openingBalances.put(((Number) row[0]).longValue(), (BigDecimal) row[1]);
+        }
+        List<Object[]> changes = transactionRepository
+            .findBalanceChangesByAccountIdRangeAndPeriod(startId, endId, dayStart, dayEnd);
+        
+        // Both lists are ordered by account id, so one merge walk gives each account its postings
+        List<Object[]> updates = new ArrayList<>();
+        int next = 0;
+        for (Object[] account : accounts) {
+            long accountId = (Long) account[0];
+            while (next < changes.size() && (Long) changes.get(next)[0] < accountId) {
+                next++;
+            }
+            LocalDate accrualDate = (LocalDate) account[2];
+            if (accrualDate != null && !accrualDate.isBefore(day)) {
+                continue;
+            }
+            
+            BigDecimal balance = openingBalances.getOrDefault(accountId, BigDecimal.ZERO);
+            BigDecimal balanceSeconds = BigDecimal.ZERO;
+            LocalDateTime segmentStart = dayStart;
+            for (; next < changes.size() && (Long) changes.get(next)[0] == accountId; next++) {
+                Object[] change = changes.get(next);
+                LocalDateTime postedAt = (LocalDateTime) change[1];
+                balanceSeconds = balanceSeconds.add(segment(balance, segmentStart, postedAt));
+                segmentStart = postedAt;
+                if (change[2] != null) {
+                    balance = (BigDecimal) change[2];
                 }
             }
+            balanceSeconds = balanceSeconds.add(segment(balance, segmentStart, dayEnd));
+            
+            BigDecimal interest = balanceSeconds.multiply(getAnnualRate((AccountType) account[1]))
+                .divide(dayCount, ACCRUAL_SCALE, RoundingMode.HALF_UP);
+            if (interest.signum() > 0) {
+                updates.add(new Object[] { interest, Date.valueOf(day), accountId, Date.valueOf(day) });
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(ACCRUE_SQL, updates);
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.runKey = runKey;
+            event.rangeStart = startId;
+            event.rangeEnd = endId;
+            event.accounts = accounts.size();
+            event.credited = updates.size();
+            event.commit();
         }
     }
     
-    private BigDecimal calculateInterest(Account account) {
-        BigDecimal balance = account.getBalance();
-        BigDecimal rate;
+    // Balance times the seconds it was held; overdrawn segments earn nothing
+    private static BigDecimal segment(BigDecimal balance, LocalDateTime from, LocalDateTime to) {
+        long seconds = Duration.between(from, to).getSeconds();
+        if (seconds <= 0 || balance.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return balance.multiply(BigDecimal.valueOf(seconds));
+    }
+    
+    // Credits one shard's accrued interest for the month; runs inside the coordinator's shard transaction
+    private void capitalizeRange(String runKey, long startId, long endId) {
+        InterestChunkEvent event = new InterestChunkEvent();
+        event.begin();
+        String month = runKey.substring(CAPITALIZATION_JOB.length() + 1);
+        List<Account> accounts = accountRepository
+            .findAccruedByIdBetweenForUpdate(startId, endId, AccountStatus.ACTIVE, HALF_CENT);
         
-        if (account.getAccountType() == AccountType.SAVINGS) {
-            rate = SAVINGS_INTEREST_RATE;
-        } else {
-            rate = CURRENT_INTEREST_RATE;
+        for (Account account : accounts) {
+            if (account.isHotAccount()) {
+                hotAccountService.refreshShardedBalance(account);
+            }
+            BigDecimal interest = account.getAccruedInterest().setScale(2, RoundingMode.HALF_UP);
+            account.setBalance(account.getBalance().add(interest));
+            accountRepository.save(account);
+            accountRepository.deductAccruedInterest(account.getId(), interest);
+            
+            TransactionDTO transactionDTO = new TransactionDTO();
+            transactionDTO.setAmount(interest);
+            transactionDTO.setType("INTEREST");
+            transactionDTO.setDescription("Interest credit for " + month);
+            transactionDTO.setCategory(TransactionCategory.OTHER);
+            
+            transactionService.createTransaction(account, transactionDTO, account.getAvailableBalance());
         }
         
-        // Calculate monthly interest (annual rate / 12)
-        BigDecimal monthlyRate = rate.divide(new BigDecimal("12"), 10, RoundingMode.HALF_UP);
-        return balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+        event.end();
+        if (event.shouldCommit()) {
+            event.runKey = runKey;
+            event.rangeStart = startId;
+            event.rangeEnd = endId;
+            event.accounts = accounts.size();
+            event.credited = accounts.size();
+            event.commit();
+        }
     }
     
-    public BigDecimal calculateProjectedInterest(Account account, int months) {
-        BigDecimal balance = account.getBalance();
-        BigDecimal rate;
+    // Credits one shard of accounts; runs inside the coordinator's shard transaction
+    private void applyMonthlyInterest(String runKey, long startId, long endId) {
+        InterestChunkEvent event = new InterestChunkEvent();
+        event.begin();
+        List<Account> accounts = accountRepository
+            .findByIdBetweenAndStatusOrderById(startId, endId, AccountStatus.ACTIVE);
+        int credited = 0;
         
-        if (account.getAccountType() == AccountType.SAVINGS) {
-            rate = SAVINGS_INTEREST_RATE;
-        } else {
-            rate = CURRENT_INTEREST_RATE;
+        for (Account account : accounts) {
+            if (account.isHotAccount()) {
+                hotAccountService.refreshShardedBalance(account);
+            }
+            BigDecimal interest = calculateInterest(account);
+            
+            if (interest.compareTo(BigDecimal.ZERO) > 0) {
+                // Add interest to account
+                account.setBalance(account.getBalance().add(interest));
+                accountRepository.save(account);
+                
+                // Create transaction record for interest
+                TransactionDTO transactionDTO = new TransactionDTO();
+                transactionDTO.setAmount(interest);
+                transactionDTO.setType("INTEREST");
+                transactionDTO.setDescription(MONTHLY_CREDIT_DESCRIPTION);
+                transactionDTO.setCategory(TransactionCategory.OTHER);
+                
+                transactionService.createTransaction(account, transactionDTO, account.getAvailableBalance());
+                credited++;
+            }
         }
         
-        BigDecimal monthlyRate = rate.divide(new BigDecimal("12"), 10, RoundingMode.HALF_UP);
-        BigDecimal totalInterest = BigDecimal.ZERO;
-        BigDecimal currentBalance = balance;
-        
-        for (int i = 0; i < months; i++) {
-            BigDecimal monthlyInterest = currentBalance.multiply(monthlyRate)
-                .setScale(2, RoundingMode.HALF_UP);
-            totalInterest = totalInterest.add(monthlyInterest);
-            currentBalance = currentBalance.add(monthlyInterest);
+        event.end();
+        if (event.shouldCommit()) {
+            event.runKey = runKey;
+            event.rangeStart = startId;
+            event.rangeEnd = endId;
+            event.accounts = accounts.size();
+            event.credited = credited;
+            event.commit();
         }
+    }
+    
+    private BigDecimal calculateInterest(Account account) {
+        BigDecimal balance = account.getAvailableBalance();
+        BigDecimal rate = getAnnualRate(account.getAccountType());
         
-        return totalInterest;
+        // Calculate monthly interest (annual rate / 12)
+        BigDecimal monthlyRate = InterestProjectionService.monthlyRate(rate);
+        return balance.multiply(monthlyRate).setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    public BigDecimal getAnnualRate(AccountType accountType) {
+        return accountType == AccountType.SAVINGS ? SAVINGS_INTEREST_RATE : CURRENT_INTEREST_RATE;
+    }
+    
+    public BigDecimal calculateProjectedInterest(Account account, int months) {
+        return interestProjectionService.projectInterest(
+            account.getAvailableBalance(), getAnnualRate(account.getAccountType()), months);
     }
 }
\ No newline at end of file
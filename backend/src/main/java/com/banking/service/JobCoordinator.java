@@ -0,0 +1,287 @@
+package com.banking.service;
+
+import com.banking.model.JobRun;
+import com.banking.model.JobShard;
+import com.banking.model.JobShardStatus;
+import com.banking.repository.JobRunRepository;
+import com.banking.repository.JobShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs scheduled jobs safely when several instances fire the same cron at once.
+ *
+ * Each occurrence of a job has a run key. The first instance to insert the job_runs row owns the
+ * run and, in the same transaction, splits the id keyspace into job_shards rows. Every instance
+ * then claims pending shards with FOR UPDATE SKIP LOCKED and processes each one inside the
+ * transaction that holds its lock, marking it DONE before commit. A shard is therefore applied
+ * exactly once, and if an instance dies mid-shard its transaction rolls back and the shard is
+ * picked up by whoever polls next.
+ *
+ * A shard whose processor throws is rolled back the same way, and the failure is counted on
+ * the shard with its error. It is retried once the retry delay has passed, and after
+ * banking.jobs.max-attempts failures it is marked FAILED and left for an operator to look at
+ * (see getRunStatus and retryFailed). A run with failed shards is finished but not complete.
+ */
+@Service
+public class JobCoordinator {
+    
+    private static final Logger log = LoggerFactory.getLogger(JobCoordinator.class);
+    
+    @FunctionalInterface
+    public interface ShardProcessor {
+        // Called inside the shard's transaction with the run key and the shard's inclusive id range
+        void process(String runKey, long rangeStart, long rangeEnd);
+    }
+    
+    @Autowired
+    private JobRunRepository jobRunRepository;
+    
+    @Autowired
+    private JobShardRepository jobShardRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${banking.jobs.worker-threads:2}")
+    private int workerThreads;
+    
+    @Value("${banking.jobs.shard-size:1000}")
+    private long shardSize;
+    
+    @Value("${banking.jobs.max-attempts:5}")
+    private int maxAttempts;
+    
+    @Value("${banking.jobs.retry-delay-ms:60000}")
+    private long retryDelayMs;
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName()
+        + "-" + UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, ShardProcessor> processors = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService workers;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "job-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+    
+    public void registerJob(String jobName, ShardProcessor processor) {
+        processors.put(jobName, processor);
+    }
+    
+    public String getInstanceId() {
+        return instanceId;
+    }
+    
+    /**
+     * Plans the run (if no other instance has) and then helps process its shards until none are
+     * left to claim. Returns the number of shards this instance processed.
+     */
+    public int run(String jobName, String runKey, long minId, long maxId) {
+        if (planRun(jobName, runKey, minId, maxId)) {
+            log.info("Instance {} owns run {}", instanceId, runKey);
+        }
+        return processShards(jobName, runKey);
+    }
+    
+    // True once every shard of the run is done, on whichever instances processed them
+    public boolean isComplete(String runKey) {
+        return jobRunRepository.findById(runKey)
+            .map(run -> run.getCompletedAt() != null && run.getFailedShards() == 0)
+            .orElse(false);
+    }
+    
+    // Shard counts by status, plus every shard that has failed at least once with its last error
+    public Map<String, Object> getRunStatus(String runKey) {
+        JobRun run = jobRunRepository.findById(runKey)
+            .orElseThrow(() -> new RuntimeException("Job run not found: " + runKey));
+        List<Map<String, Object>> failures = new ArrayList<>();
+        for (JobShard shard : jobShardRepository.findByRunKeyAndAttemptsGreaterThanOrderByShardIndex(runKey, 0)) {
+            Map<String, Object> failure = new LinkedHashMap<>();
+            failure.put("shardIndex", shard.getShardIndex());
+            failure.put("rangeStart", shard.getRangeStart());
+            failure.put("rangeEnd", shard.getRangeEnd());
+            failure.put("status", shard.getStatus());
+            failure.put("attempts", shard.getAttempts());
+            failure.put("lastError", shard.getLastError());
+            failure.put("lastAttemptAt", shard.getLastAttemptAt());
+            failures.add(failure);
+        }
+        
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("runKey", run.getRunKey());
+        status.put("jobName", run.getJobName());
+        status.put("owner", run.getOwner());
+        status.put("createdAt", run.getCreatedAt());
+        status.put("completedAt", run.getCompletedAt());
+        status.put("complete", run.getCompletedAt() != null && run.getFailedShards() == 0);
+        status.put("shardCount", run.getShardCount());
+        for (JobShardStatus shardStatus : JobShardStatus.values()) {
+            status.put(shardStatus.name().toLowerCase() + "Shards",
+                jobShardRepository.countByRunKeyAndStatus(runKey, shardStatus));
+        }
+        status.put("failures", failures);
+        return status;
+    }
+    
+    // Puts the run's FAILED shards back to pending with fresh attempts; the resume tick picks them up
+    public int retryFailed(String runKey) {
+        Integer reset = transactionTemplate.execute(status -> {
+            JobRun run = jobRunRepository.findById(runKey)
+                .orElseThrow(() -> new RuntimeException("Job run not found: " + runKey));
+            int shards = jobShardRepository.resetFailed(runKey);
+            if (shards > 0) {
+                run.setCompletedAt(null);
+                run.setFailedShards(0);
+                jobRunRepository.save(run);
+            }
+            return shards;
+        });
+        return reset != null ? reset : 0;
+    }
+    
+    // True when this instance created the run; false if another instance already had
+    public boolean planRun(String jobName, String runKey, long minId, long maxId) {
+        long span = maxId >= minId ? maxId - minId + 1 : 0;
+        int shardCount = (int) Math.max(1, (span + shardSize - 1) / shardSize);
+        Boolean owner = transactionTemplate.execute(status -> {
+            if (jobRunRepository.insertIfAbsent(runKey, jobName, instanceId, shardCount) == 0) {
+                return false;
+            }
+            List<JobShard> shards = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                long start = minId + i * shardSize;
+                long end = i == shardCount - 1 ? Math.max(maxId, start) : start + shardSize - 1;
+                shards.add(new JobShard(null, runKey, i, start, end, JobShardStatus.PENDING, null, null, 0, null, null));
+            }
+            jobShardRepository.saveAll(shards);
+            return true;
+        });
+        return Boolean.TRUE.equals(owner);
+    }
+    
+    public int processShards(String jobName, String runKey) {
+        ShardProcessor processor = processors.get(jobName);
+        if (processor == null) {
+            throw new IllegalStateException("No processor registered for job " + jobName);
+        }
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < workerThreads; i++) {
+            futures.add(workers.submit(() -> {
+                int processed = 0;
+                while (processNextShard(runKey, processor)) {
+                    processed++;
+                }
+                return processed;
+            }));
+        }
+        int processed = 0;
+        for (Future<Integer> future : futures) {
+            try {
+                processed += future.get();
+            } catch (Exception e) {
+                log.error("Shard worker for run {} failed", runKey, e);
+            }
+        }
+        markCompleteIfFinished(runKey);
+        return processed;
+    }
+    
+    // False when nothing is left to claim, and after a shard fails so the worker doesn't spin on it
+    private boolean processNextShard(String runKey, ShardProcessor processor) {
+        Long[] claimedId = new Long[1];
+        try {
+            Boolean claimed = transactionTemplate.execute(status -> {
+                JobShard shard = jobShardRepository
+                    .claimNextPending(runKey, LocalDateTime.now().minus(retryDelayMs, ChronoUnit.MILLIS))
+                    .orElse(null);
+                if (shard == null) {
+                    return false;
+                }
+                claimedId[0] = shard.getId();
+                processor.process(runKey, shard.getRangeStart(), shard.getRangeEnd());
+                shard.setStatus(JobShardStatus.DONE);
+                shard.setOwner(instanceId);
+                shard.setCompletedAt(LocalDateTime.now());
+                jobShardRepository.save(shard);
+                return true;
+            });
+            return Boolean.TRUE.equals(claimed);
+        } catch (RuntimeException e) {
+            if (claimedId[0] == null) {
+                throw e;
+            }
+            // The shard's work rolled back with its transaction; count the attempt in a new one
+            String error = String.valueOf(e);
+            String lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+            transactionTemplate.executeWithoutResult(status -> jobShardRepository
+                .recordFailure(claimedId[0], lastError, LocalDateTime.now(), maxAttempts, instanceId));
+            log.warn("Shard {} of run {} failed", claimedId[0], runKey, e);
+            return false;
+        }
+    }
+    
+    private void markCompleteIfFinished(String runKey) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (jobShardRepository.countByRunKeyAndStatus(runKey, JobShardStatus.PENDING) == 0) {
+                jobRunRepository.findById(runKey).ifPresent(run -> {
+                    if (run.getCompletedAt() == null) {
+                        run.setCompletedAt(LocalDateTime.now());
+                        run.setFailedShards((int) jobShardRepository.countByRunKeyAndStatus(runKey, JobShardStatus.FAILED));
+                        jobRunRepository.save(run);
+                        if (run.getFailedShards() > 0) {
+                            log.error("Run {} finished with {} failed shard(s)", runKey, run.getFailedShards());
+                        }
+                    }
+                });
+            }
+        });
+    }
+    
+    // Picks up shards left behind by instances that died after the cron had fired everywhere
+    @Scheduled(fixedDelayString = "${banking.jobs.resume-interval-ms:60000}")
+    public void resumeIncompleteRuns() {
+        for (JobRun run : jobRunRepository.findByCompletedAtIsNull()) {
+            if (processors.containsKey(run.getJobName())) {
+                int processed = processShards(run.getJobName(), run.getRunKey());
+                if (processed > 0) {
+                    log.info("Instance {} resumed {} shard(s) of run {}", instanceId, processed, run.getRunKey());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionDTO;
+import com.banking.model.Account;
+import com.banking.model.AccountStatus;
+import com.banking.model.LedgerTransfer;
+import com.banking.model.LedgerTransferStatus;
+import com.banking.model.Transaction;
+import com.banking.repository.AccountRepository;
+import com.banking.repository.LedgerTransferRepository;
+import com.banking.security.PasswordUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous transfer execution on hash-partitioned single-writer workers.
+ *
+ * Every account belongs to one partition by the hash of its number, and only that partition's
+ * worker thread ever writes it from here. A submitted transfer is validated on the request
+ * thread, stored as an ACCEPTED ticket, placed on the source partition's bounded
+ * {@link MpscRingBuffer} and answered with the ticket. The worker drains its ring in batches and
+ * applies each batch in one database transaction: the batch's tickets and accounts are locked
+ * once in id order, the transfers are applied one after another to those in-memory rows, and
+ * everything is flushed with a single commit. Workers on one instance never touch each other's
+ * accounts, so they don't contend with one another.
+ *
+ * When both accounts share a partition the transfer completes in one step. Otherwise the source
+ * worker debits and persists the ticket as DEBITED, and only after that commit hands the credit
+ * to the destination partition, which locks the ticket and credits only if it is still DEBITED.
+ * Tickets left ACCEPTED or DEBITED by a crash are re-queued by a periodic sweep; each step only
+ * runs while the locked ticket is still in the status it expects, so a ticket queued twice is
+ * applied once.
+ *
+ * This is not a single-writer ledger across the whole system: the synchronous paths in
+ * AccountService, other instances' workers and the job and standing-order workers still write
+ * the same accounts rows, so each batch re-reads balances under row locks rather than caching
+ * them, and a batch waits for any of those writers holding one of its rows. The version column on
+ * accounts turns any save from a stale copy into a failure instead of a lost update.
+ *
+ * Each ticket object is owned by the worker applying it; status reads get a copy published after
+ * every commit, so they never see a half-applied transfer.
+ */
+@Service
+public class LedgerEngine {
+    
+    private static final Logger log = LoggerFactory.getLogger(LedgerEngine.class);
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 1_000_000_000L; // a safety net; producers unpark the worker
+    
+    @Autowired
+    private AccountService accountService;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private LedgerTransferRepository ledgerTransferRepository;
+    
+    @Autowired
+    private TransactionService transactionService;
+    
+    @Autowired
+    private HotAccountService hotAccountService;
+    
+    @Autowired
+    private VelocityCheckService velocityCheckService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${banking.ledger.partitions:4}")
+    private int partitionCount;
+    
+    @Value("${banking.ledger.ring-size:4096}")
+    private int ringSize;
+    
+    @Value("${banking.ledger.batch-size:256}")
+    private int batchSize;
+    
+    @Value("${banking.ledger.handoff-retry-minutes:1}")
+    private long handoffRetryMinutes;
+    
+    private final Map<String, LedgerTransfer> inFlight = new ConcurrentHashMap<>();
+    private Partition[] partitions;
+    private TransactionTemplate transactionTemplate;
+    private volatile boolean running = true;
+    
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, new MpscRingBuffer<>(ringSize));
+        }
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+    }
+    
+    // Lets the workers finish what is queued, up to a few seconds
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+            partition.thread.join(5000);
+        }
+    }
+    
+    /**
+     * Validates and queues a transfer, returning its ACCEPTED ticket. Throws when the transfer is
+     * invalid, or {@link EngineBusyException} when the source partition's ring is full.
+     */
+    public LedgerTransfer submit(String fromAccountNumber, String toAccountNumber, BigDecimal amount,
+                                 String pin, String description) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("Amount must be positive");
+        }
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new RuntimeException("Cannot transfer to the same account");
+        }
+        Account fromAccount = accountService.getAccount(fromAccountNumber);
+        accountService.getAccount(toAccountNumber);
+        if (fromAccount.getPinHash() != null && !PasswordUtils.verifyPassword(pin, fromAccount.getPinHash())) {
+            throw new RuntimeException("Invalid PIN");
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        LedgerTransfer transfer = new LedgerTransfer(UUID.randomUUID().toString(), fromAccountNumber,
+            toAccountNumber, amount, description, LedgerTransferStatus.ACCEPTED, null, null, null, now, now);
+        // Durable before it is answered, so an accepted transfer survives a restart
+        ledgerTransferRepository.save(transfer);
+        LedgerTransfer accepted = snapshot(transfer);
+        inFlight.put(transfer.getId(), accepted);
+        if (!partitionOf(fromAccountNumber).offer(new Command(transfer, false))) {
+            inFlight.remove(transfer.getId());
+            transfer.setStatus(LedgerTransferStatus.REJECTED);
+            transfer.setError("Transfer queue was full");
+            transfer.setUpdatedAt(LocalDateTime.now());
+            ledgerTransferRepository.save(transfer);
+            throw new EngineBusyException();
+        }
+        return accepted;
+    }
+    
+    public Optional<LedgerTransfer> getTransfer(String ticket) {
+        LedgerTransfer transfer = inFlight.get(ticket);
+        return transfer != null ? Optional.of(transfer) : ledgerTransferRepository.findById(ticket);
+    }
+    
+    // Re-queues debits and credit hand-offs that were lost, e.g. because the instance stopped in between
+    @Scheduled(fixedDelayString = "${banking.ledger.recovery-interval-ms:60000}")
+    public void recoverHandoffs() {
+        LocalDateTime before = LocalDateTime.now().minusMinutes(handoffRetryMinutes);
+        int requeued = 0;
+        for (LedgerTransfer transfer : ledgerTransferRepository.findTop500ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(
+                LedgerTransferStatus.ACCEPTED, before)) {
+            if (inFlight.putIfAbsent(transfer.getId(), snapshot(transfer)) == null) {
+                if (partitionOf(transfer.getFromAccountNumber()).offer(new Command(transfer, false))) {
+                    requeued++;
+                } else {
+                    inFlight.remove(transfer.getId()); // ring full; the next sweep tries again
+                }
+            }
+        }
+        for (LedgerTransfer transfer : ledgerTransferRepository.findTop500ByStatusAndUpdatedAtBeforeOrderByUpdatedAt(
+                LedgerTransferStatus.DEBITED, before)) {
+            if (inFlight.putIfAbsent(transfer.getId(), snapshot(transfer)) == null) {
+                partitionOf(transfer.getToAccountNumber()).handoff(new Command(transfer, true));
+                requeued++;
+            }
+        }
+        if (requeued > 0) {
+            log.info("Re-queued {} ledger transfer(s)", requeued);
+        }
+    }
+    
+    private Partition partitionOf(String accountNumber) {
+        return partitions[Math.floorMod(accountNumber.hashCode(), partitions.length)];
+    }
+    
+    private void process(Partition partition, List<Command> batch) {
+        List<Command> handoffs = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                handoffs.clear();
+                applyBatch(partition, batch, handoffs);
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() > 1) {
+                // Retry one by one so a single bad command doesn't sink the rest
+                for (Command command : batch) {
+                    process(partition, Collections.singletonList(command));
+                }
+                return;
+            }
+            fail(batch.get(0), e);
+            return;
+        }
+        // Published before the hand-off, after which the destination's worker owns the transfer. A
+        // debit stays while its credit is pending; everything else is finished and read from the table.
+        Set<String> awaitingCredit = new HashSet<>();
+        for (Command handoff : handoffs) {
+            awaitingCredit.add(handoff.transfer.getId());
+        }
+        for (Command command : batch) {
+            if (awaitingCredit.contains(command.transfer.getId())) {
+                inFlight.put(command.transfer.getId(), snapshot(command.transfer));
+            } else {
+                inFlight.remove(command.transfer.getId());
+            }
+        }
+        // The debits are durable now, so the credits can go to their partitions
+        for (Command handoff : handoffs) {
+            partitionOf(handoff.transfer.getToAccountNumber()).handoff(handoff);
+        }
+    }
+    
+    private void applyBatch(Partition partition, List<Command> batch, List<Command> handoffs) {
+        Set<String> accountNumbers = new HashSet<>();
+        Set<String> debitTickets = new HashSet<>();
+        for (Command command : batch) {
+            if (command.credit || partitionOf(command.transfer.getToAccountNumber()) == partition) {
+                accountNumbers.add(command.transfer.getToAccountNumber());
+            }
+            if (!command.credit) {
+                accountNumbers.add(command.transfer.getFromAccountNumber());
+                debitTickets.add(command.transfer.getId());
+            }
+        }
+        Map<String, LedgerTransfer> tickets = new HashMap<>();
+        if (!debitTickets.isEmpty()) {
+            for (LedgerTransfer stored : ledgerTransferRepository.findByIdInForUpdate(debitTickets)) {
+                tickets.put(stored.getId(), stored);
+            }
+        }
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findByAccountNumberInForUpdate(accountNumbers)) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+        
+        for (Command command : batch) {
+            LedgerTransfer transfer = command.transfer;
+            if (command.credit) {
+                LedgerTransfer stored = ledgerTransferRepository.findByIdForUpdate(transfer.getId()).orElse(null);
+                if (stored == null || stored.getStatus() != LedgerTransferStatus.DEBITED) {
+                    // Already credited by a recovered duplicate; take over the stored outcome
+                    if (stored != null) {
+                        takeOver(transfer, stored);
+                    }
+                    continue;
+                }
+                stored.setToTransactionId(credit(accounts.get(transfer.getToAccountNumber()), transfer).getTransactionId());
+                stored.setStatus(LedgerTransferStatus.COMPLETED);
+                stored.setUpdatedAt(LocalDateTime.now());
+                transfer.setToTransactionId(stored.getToTransactionId());
+                transfer.setStatus(LedgerTransferStatus.COMPLETED);
+                continue;
+            }
+            
+            LedgerTransfer stored = tickets.get(transfer.getId());
+            if (stored == null || stored.getStatus() != LedgerTransferStatus.ACCEPTED) {
+                // Already debited or rejected by a recovered duplicate; take over the stored outcome
+                if (stored != null) {
+                    takeOver(transfer, stored);
+                }
+                continue;
+            }
+            Account fromAccount = accounts.get(transfer.getFromAccountNumber());
+            boolean local = partitionOf(transfer.getToAccountNumber()) == partition;
+            try {
+                validateDebit(fromAccount, local ? accounts.get(transfer.getToAccountNumber())
+                    : accountService.getAccount(transfer.getToAccountNumber()), transfer);
+            } catch (RuntimeException rejected) {
+                transfer.setStatus(LedgerTransferStatus.REJECTED);
+                transfer.setError(rejected.getMessage());
+                transfer.setUpdatedAt(LocalDateTime.now());
+                ledgerTransferRepository.save(transfer);
+                continue;
+            }
+            fromAccount.setBalance(fromAccount.getBalance().subtract(transfer.getAmount()));
+            transfer.setFromTransactionId(record(fromAccount, transfer, "TRANSFER_OUT").getTransactionId());
+            if (local) {
+                transfer.setToTransactionId(credit(accounts.get(transfer.getToAccountNumber()), transfer).getTransactionId());
+                transfer.setStatus(LedgerTransferStatus.COMPLETED);
+            } else {
+                transfer.setStatus(LedgerTransferStatus.DEBITED);
+                handoffs.add(new Command(transfer, true));
+            }
+            transfer.setUpdatedAt(LocalDateTime.now());
+            ledgerTransferRepository.save(transfer);
+        }
+    }
+    
+    private static void takeOver(LedgerTransfer transfer, LedgerTransfer stored) {
+        transfer.setStatus(stored.getStatus());
+        transfer.setError(stored.getError());
+        transfer.setFromTransactionId(stored.getFromTransactionId());
+        transfer.setToTransactionId(stored.getToTransactionId());
+        transfer.setUpdatedAt(stored.getUpdatedAt());
+    }
+    
+    // A copy for status reads; the worker keeps changing its own
+    private static LedgerTransfer snapshot(LedgerTransfer transfer) {
+        return new LedgerTransfer(transfer.getId(), transfer.getFromAccountNumber(), transfer.getToAccountNumber(),
+            transfer.getAmount(), transfer.getDescription(), transfer.getStatus(), transfer.getError(),
+            transfer.getFromTransactionId(), transfer.getToTransactionId(), transfer.getCreatedAt(),
+            transfer.getUpdatedAt());
+    }
+    
+    // Same rules as the synchronous transfer; throws to reject before anything is written
+    private void validateDebit(Account fromAccount, Account toAccount, LedgerTransfer transfer) {
+        if (fromAccount == null || fromAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new RuntimeException("Source account is not active");
+        }
+        if (fromAccount.getBalance().compareTo(transfer.getAmount()) < 0 && fromAccount.isHotAccount()) {
+            hotAccountService.consolidate(fromAccount);
+        }
+        if (fromAccount.getBalance().compareTo(transfer.getAmount()) < 0) {
+            throw new RuntimeException("Insufficient funds");
+        }
+        if (toAccount == null || toAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new RuntimeException("Destination account is not active");
+        }
+        boolean internal = fromAccount.getCustomer().getId().equals(toAccount.getCustomer().getId());
+        velocityCheckService.checkAndRecord(fromAccount.getAccountNumber(),
+            internal ? null : toAccount.getAccountNumber(), transfer.getAmount());
+    }
+    
+    private Transaction credit(Account toAccount, LedgerTransfer transfer) {
+        if (toAccount.isHotAccount()) {
+            hotAccountService.credit(toAccount, transfer.getAmount());
+        } else {
+            toAccount.setBalance(toAccount.getBalance().add(transfer.getAmount()));
+        }
+        return record(toAccount, transfer, "TRANSFER_IN");
+    }
+    
+    private Transaction record(Account account, LedgerTransfer transfer, String type) {
+        boolean out = "TRANSFER_OUT".equals(type);
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(transfer.getAmount());
+        transactionDTO.setType(type);
+        transactionDTO.setDescription(transfer.getDescription() != null ? transfer.getDescription()
+            : out ? "Transfer to " + transfer.getToAccountNumber() : "Transfer from " + transfer.getFromAccountNumber());
+        if (out) {
+            transactionDTO.setToAccountNumber(transfer.getToAccountNumber());
+        }
+        BigDecimal balanceAfter = account.isHotAccount()
+            ? hotAccountService.refreshShardedBalance(account) : account.getBalance();
+        return transactionService.createTransaction(account, transactionDTO, balanceAfter);
+    }
+    
+    // Only reached for a batch of one, after its own transaction rolled back
+    private void fail(Command command, RuntimeException e) {
+        LedgerTransfer transfer = command.transfer;
+        if (command.credit) {
+            // Stays DEBITED in the database; the recovery sweep retries it
+            log.error("Credit of ledger transfer {} failed", transfer.getId(), e);
+            inFlight.remove(transfer.getId());
+            return;
+        }
+        log.warn("Ledger transfer {} rejected: {}", transfer.getId(), e.getMessage());
+        transfer.setStatus(LedgerTransferStatus.REJECTED);
+        transfer.setError(e.getMessage());
+        transfer.setUpdatedAt(LocalDateTime.now());
+        try {
+            ledgerTransferRepository.save(transfer);
+        } catch (RuntimeException saveFailure) {
+            log.error("Could not record rejection of ledger transfer {}", transfer.getId(), saveFailure);
+        }
+        inFlight.remove(transfer.getId());
+    }
+    
+    public static class EngineBusyException extends RuntimeException {
+        public EngineBusyException() {
+            super("Transfer queue is full, please retry shortly");
+        }
+    }
+    
+    private static class Command {
+        private final LedgerTransfer transfer;
+        private final boolean credit; // the destination half of a cross-partition transfer
+        
+        Command(LedgerTransfer transfer, boolean credit) {
+            this.transfer = transfer;
+            this.credit = credit;
+        }
+    }
+    
+    private class Partition {
+        private final MpscRingBuffer<Command> ring;
+        // Credits from other partitions; unbounded so two full partitions can't block each other
+        private final ConcurrentLinkedQueue<Command> handoffs = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        
+        Partition(int index, MpscRingBuffer<Command> ring) {
+            this.ring = ring;
+            this.thread = new Thread(this::run, "ledger-partition-" + index);
+            this.thread.setDaemon(true);
+        }
+        
+        boolean offer(Command command) {
+            if (!ring.offer(command)) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            return true;
+        }
+        
+        void handoff(Command command) {
+            handoffs.add(command);
+            LockSupport.unpark(thread);
+        }
+        
+        private void run() {
+            List<Command> batch = new ArrayList<>(batchSize);
+            int idle = 0;
+            while (running || !ring.isEmpty() || !handoffs.isEmpty()) {
+                Command handoff;
+                while (batch.size() < batchSize && (handoff = handoffs.poll()) != null) {
+                    batch.add(handoff);
+                }
+                ring.drainTo(batch, batchSize - batch.size());
+                if (batch.isEmpty()) {
+                    // Spin briefly for the next burst, then sleep until offer or handoff unparks
+                    // us; an unpark that comes first leaves a permit, so none is missed
+                    if (++idle > IDLE_SPINS) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+                idle = 0;
+                try {
+                    process(this, batch);
+                } catch (RuntimeException e) {
+                    log.error("Ledger partition batch failed", e); // keep the worker alive
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+}
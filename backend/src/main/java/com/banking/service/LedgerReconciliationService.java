@@ -0,0 +1,198 @@
+package com.banking.service;
+
+import com.banking.model.JobRun;
+import com.banking.model.ReconciliationMismatch;
+import com.banking.model.ReconciliationMismatchType;
+import com.banking.repository.AccountRepository;
+import com.banking.repository.JobRunRepository;
+import com.banking.repository.ReconciliationMismatchRepository;
+import com.banking.repository.ReconciliationWatermarkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that every account's balanceAfterTransaction values chain correctly and that the
+ * account balance matches what its transactions add up to.
+ *
+ * Each account keeps a watermark of the last transaction verified and the balance after it, so a
+ * run reads only the rows posted since the previous one and a nightly run costs about a day's
+ * volume. Runs go through {@link JobCoordinator}, which splits the account id space into ranges
+ * worked in parallel by every instance. Rows newer than a short settle lag are left for the next
+ * run so transactions still committing are never skipped. Hot accounts take concurrent credits
+ * on their balance shards, so their per-row chain is not ordered and only the total is checked.
+ * Mismatches are stored per run and counted in the banking.reconciliation.mismatches metric.
+ */
+@Service
+public class LedgerReconciliationService {
+    
+    private static final Logger log = LoggerFactory.getLogger(LedgerReconciliationService.class);
+    
+    public static final String RECONCILIATION_JOB = "ledger-reconciliation";
+    
+    @Autowired
+    private JobCoordinator jobCoordinator;
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private JobRunRepository jobRunRepository;
+    
+    @Autowired
+    private ReconciliationWatermarkRepository watermarkRepository;
+    
+    @Autowired
+    private ReconciliationMismatchRepository mismatchRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${banking.reconciliation.settle-lag-minutes:5}")
+    private long settleLagMinutes;
+    
+    private final AtomicLong lastRunMismatches = new AtomicLong();
+    private Counter verifiedTransactions;
+    
+    @PostConstruct
+    public void registerJobs() {
+        jobCoordinator.registerJob(RECONCILIATION_JOB, this::reconcileRange);
+        verifiedTransactions = Counter.builder("banking.reconciliation.transactions.verified")
+            .description("Transactions checked by ledger reconciliation on this instance")
+            .register(meterRegistry);
+        meterRegistry.gauge("banking.reconciliation.last-run.mismatches", lastRunMismatches);
+    }
+    
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void reconcileNightly() {
+        run(RECONCILIATION_JOB + "-" + LocalDate.now());
+    }
+    
+    // Starts an extra run in the background and returns its run key
+    public String startRun() {
+        String runKey = RECONCILIATION_JOB + "-" + System.currentTimeMillis();
+        Thread thread = new Thread(() -> run(runKey), "ledger-reconciliation");
+        thread.setDaemon(true);
+        thread.start();
+        return runKey;
+    }
+    
+    private void run(String runKey) {
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        if (minId == null) {
+            return;
+        }
+        int shards = jobCoordinator.run(RECONCILIATION_JOB, runKey, minId, maxId);
+        long mismatches = mismatchRepository.countByRunKey(runKey);
+        lastRunMismatches.set(mismatches);
+        log.info("Reconciliation {} finished {} shard(s) on this instance; {} mismatch(es) in the run so far",
+            runKey, shards, mismatches);
+    }
+    
+    public Map<String, Object> getLatestRun() {
+        Map<String, Object> result = new HashMap<>();
+        JobRun run = jobRunRepository.findTopByJobNameOrderByCreatedAtDesc(RECONCILIATION_JOB).orElse(null);
+        if (run == null) {
+            return result;
+        }
+        result.put("runKey", run.getRunKey());
+        result.put("startedAt", run.getCreatedAt());
+        result.put("completedAt", run.getCompletedAt());
+        result.put("failedShards", run.getFailedShards());
+        result.put("mismatchCount", mismatchRepository.countByRunKey(run.getRunKey()));
+        result.put("mismatches", mismatchRepository.findTop1000ByRunKeyOrderById(run.getRunKey()));
+        return result;
+    }
+    
+    public List<ReconciliationMismatch> getMismatches(String runKey) {
+        return mismatchRepository.findTop1000ByRunKeyOrderById(runKey);
+    }
+    
+    // Verifies one account id range; runs inside the coordinator's shard transaction
+    private void reconcileRange(String runKey, long startId, long endId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> accounts = watermarkRepository.findAccountSnapshots(startId, endId);
+        List<Object[]> rows = watermarkRepository.findUnverifiedTransactions(startId, endId,
+            now.minusMinutes(settleLagMinutes));
+        List<ReconciliationMismatch> mismatches = new ArrayList<>();
+        
+        int r = 0;
+        for (Object[] account : accounts) {
+            long accountId = ((Number) account[0]).longValue();
+            String accountNumber = (String) account[1];
+            BigDecimal balance = (BigDecimal) account[2];
+            boolean hot = account[3] != null && ((Number) account[3]).intValue() > 0;
+            Long latestId = account[4] != null ? ((Number) account[4]).longValue() : null;
+            Long verifiedId = account[5] != null ? ((Number) account[5]).longValue() : null;
+            BigDecimal running = account[6] != null ? (BigDecimal) account[6] : BigDecimal.ZERO;
+            
+            // Both lists are ordered by account id, so walk the rows alongside the accounts
+            while (r < rows.size() && ((Number) rows.get(r)[0]).longValue() < accountId) {
+                r++;
+            }
+            int verified = 0;
+            for (; r < rows.size() && ((Number) rows.get(r)[0]).longValue() == accountId; r++) {
+                Object[] row = rows.get(r);
+                long transactionId = ((Number) row[1]).longValue();
+                BigDecimal amount = (BigDecimal) row[3];
+                BigDecimal recorded = (BigDecimal) row[4];
+                running = isDebit((String) row[2]) ? running.subtract(amount) : running.add(amount);
+                if (!hot && recorded != null && recorded.compareTo(running) != 0) {
+                    mismatches.add(mismatch(runKey, accountId, accountNumber, ReconciliationMismatchType.CHAIN_BREAK,
+                        transactionId, running, recorded, now));
+                    running = recorded; // carry on from what was recorded so one bad row is one mismatch
+                }
+                verifiedId = transactionId;
+                verified++;
+            }
+            
+            // The balance only matches the chain if no newer row was left for the next run
+            boolean caughtUp = latestId == null ? verifiedId == null : latestId.equals(verifiedId);
+            if (caughtUp && balance.compareTo(running) != 0) {
+                mismatches.add(mismatch(runKey, accountId, accountNumber, ReconciliationMismatchType.BALANCE_DRIFT,
+                    null, running, balance, now));
+            }
+            if (verified > 0) {
+                watermarkRepository.upsert(accountId, verifiedId, running);
+                verifiedTransactions.increment(verified);
+            }
+        }
+        
+        if (!mismatches.isEmpty()) {
+            mismatchRepository.saveAll(mismatches);
+            for (ReconciliationMismatch mismatch : mismatches) {
+                meterRegistry.counter("banking.reconciliation.mismatches",
+                    "type", mismatch.getMismatchType().name()).increment();
+            }
+            log.warn("Reconciliation {} found {} mismatch(es) in accounts {}-{}",
+                runKey, mismatches.size(), startId, endId);
+        }
+    }
+    
+    static boolean isDebit(String type) {
+        return "WITHDRAWAL".equals(type) || "TRANSFER_OUT".equals(type);
+    }
+    
+    private static ReconciliationMismatch mismatch(String runKey, long accountId, String accountNumber,
+                                                   ReconciliationMismatchType type, Long transactionId,
+                                                   BigDecimal expected, BigDecimal actual, LocalDateTime detectedAt) {
+        return new ReconciliationMismatch(null, runKey, accountId, accountNumber, type, transactionId,
+            expected, actual, detectedAt);
+    }
+}
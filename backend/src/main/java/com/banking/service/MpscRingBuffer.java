@@ -0,0 +1,80 @@
+package com.banking.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring buffer for many producers and a single consumer, in the style of the LMAX
+ * disruptor: slots are preallocated, producers claim a sequence with one CAS and publish by
+ * advancing the slot's sequence, and the consumer drains published slots in order without
+ * taking a lock. A full ring rejects the offer instead of blocking the producer.
+ */
+public class MpscRingBuffer<T> {
+    
+    private final Object[] slots;
+    private final AtomicLongArray sequences; // slot i is free for position p when it holds p, full when p + 1
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // only touched by the consumer
+    
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        slots = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+    
+    // False when the ring is full
+    public boolean offer(T item) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = item;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+    
+    // Moves up to max published items into the sink, in order; consumer thread only
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<T> sink, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            sink.add((T) slots[index]);
+            slots[index] = null;
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+    
+    // Approximate when producers are active
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+    
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,215 @@
+package com.banking.service;
+
+import com.banking.dto.AccountDTO;
+import com.banking.dto.OnboardingRequest;
+import com.banking.dto.OnboardingResult;
+import com.banking.model.AccountStatus;
+import com.banking.security.PasswordUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registers customers and opens their accounts in bulk, a few batched statements per call
+ * instead of a round of JPA inserts per row.
+ *
+ * Identifiers come from {@link IdAllocator} before the transaction starts, so the inserts need
+ * no lookups. Customers go in with ON CONFLICT DO NOTHING and are read back by customer ID: a
+ * customer whose email was already taken, by an earlier registration or a concurrent one, is
+ * simply missing and reported as a duplicate while the rest of the batch goes through.
+ */
+@Service
+public class OnboardingService {
+
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private static final String INSERT_CUSTOMER = "INSERT INTO customers "
+        + "(email, full_name, password_hash, customer_id, phone_number, address, created_at, updated_at) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_ACCOUNT = "INSERT INTO accounts "
+        + "(account_number, account_type, status, balance, pin_hash, created_at, updated_at, customer_id) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${banking.onboarding.max-batch-size:5000}")
+    private int maxBatchSize;
+
+    @Value("${banking.onboarding.jdbc-batch-size:500}")
+    private int jdbcBatchSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Onboards the batch and returns one result per request, in order. Invalid requests and
+     * duplicate emails fail on their own; everything else is committed together.
+     */
+    public List<OnboardingResult> onboard(List<OnboardingRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("At least one customer is required");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new RuntimeException("At most " + maxBatchSize + " customers can be onboarded per call");
+        }
+
+        List<OnboardingResult> results = new ArrayList<>(requests.size());
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            OnboardingRequest request = requests.get(i);
+            OnboardingResult result = new OnboardingResult();
+            results.add(result);
+            if (request == null) {
+                result.setError("Customer details are required");
+                continue;
+            }
+            result.setEmail(request.getEmail());
+            String error = validate(request);
+            if (error == null && !emails.add(request.getEmail())) {
+                error = "Email appears more than once in this batch";
+            }
+            if (error != null) {
+                result.setError(error);
+                continue;
+            }
+
+            // Identifiers are leased outside the transaction; any not used are skipped, not reused
+            result.setCustomerId(idAllocator.nextCustomerId());
+            List<String> accountNumbers = new ArrayList<>();
+            for (int a = 0; a < request.getAccounts().size(); a++) {
+                accountNumbers.add(idAllocator.nextAccountNumber());
+            }
+            result.setAccountNumbers(accountNumbers);
+            accepted.add(i);
+        }
+
+        if (!accepted.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> insert(requests, results, accepted));
+        }
+        return results;
+    }
+
+    private String validate(OnboardingRequest request) {
+        Set<ConstraintViolation<OnboardingRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (request.getAccounts() == null) {
+            request.setAccounts(new ArrayList<>());
+        }
+        return null;
+    }
+
+    private void insert(List<OnboardingRequest> requests, List<OnboardingResult> results, List<Integer> accepted) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        jdbcTemplate.batchUpdate(INSERT_CUSTOMER, accepted, jdbcBatchSize, (statement, index) -> {
+            OnboardingRequest request = requests.get(index);
+            statement.setString(1, request.getEmail());
+            statement.setString(2, request.getFullName());
+            statement.setString(3, PasswordUtils.hashPassword(request.getPassword()));
+            statement.setString(4, results.get(index).getCustomerId());
+            statement.setString(5, request.getPhoneNumber());
+            statement.setString(6, request.getAddress());
+            statement.setTimestamp(7, now);
+            statement.setTimestamp(8, now);
+        });
+
+        Map<String, Long> inserted = findIds(accepted, results);
+        List<Integer> created = new ArrayList<>();
+        for (Integer index : accepted) {
+            OnboardingResult result = results.get(index);
+            Long id = inserted.get(result.getCustomerId());
+            if (id == null) {
+                result.setCustomerId(null);
+                result.setAccountNumbers(null);
+                result.setError("Email already exists");
+            } else {
+                result.setId(id);
+                created.add(index);
+            }
+        }
+
+        List<Object[]> accounts = new ArrayList<>();
+        for (Integer index : created) {
+            List<AccountDTO> requested = requests.get(index).getAccounts();
+            OnboardingResult result = results.get(index);
+            for (int a = 0; a < requested.size(); a++) {
+                AccountDTO account = requested.get(a);
+                String pin = account.getPin();
+                accounts.add(new Object[] {
+                    result.getAccountNumbers().get(a),
+                    account.getAccountType().name(),
+                    AccountStatus.ACTIVE.name(),
+                    BigDecimal.ZERO,
+                    pin != null && !pin.isEmpty() ? PasswordUtils.hashPassword(pin) : null,
+                    now,
+                    now,
+                    result.getId()
+                });
+            }
+        }
+        if (!accounts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ACCOUNT, accounts, jdbcBatchSize, (statement, row) -> {
+                for (int column = 0; column < row.length; column++) {
+                    statement.setObject(column + 1, row[column]);
+                }
+            });
+        }
+    }
+
+    // Customer IDs are fresh from the allocator, so a missing one means its insert was skipped
+    private Map<String, Long> findIds(List<Integer> accepted, List<OnboardingResult> results) {
+        Map<String, Long> ids = new HashMap<>();
+        for (int from = 0; from < accepted.size(); from += LOOKUP_CHUNK) {
+            List<String> customerIds = new ArrayList<>();
+            for (Integer index : accepted.subList(from, Math.min(from + LOOKUP_CHUNK, accepted.size()))) {
+                customerIds.add(results.get(index).getCustomerId());
+            }
+            namedParameterJdbcTemplate.query(
+                "SELECT id, customer_id FROM customers WHERE customer_id IN (:ids)",
+                new MapSqlParameterSource("ids", customerIds),
+                row -> {
+                    ids.put(row.getString("customer_id"), row.getLong("id"));
+                });
+        }
+        return ids;
+    }
+}
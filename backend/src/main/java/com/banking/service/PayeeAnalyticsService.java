@@ -0,0 +1,463 @@
+package com.banking.service;
+
+import com.banking.dto.PayeeCount;
+import com.banking.dto.PayeeRanking;
+import com.banking.model.Account;
+import com.banking.model.SketchSnapshot;
+import com.banking.model.Transaction;
+import com.banking.repository.SketchSnapshotRepository;
+import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Top payees by number of transfers and by amount, bank-wide and per customer, kept as streaming
+ * sketches so no request has to GROUP BY the transactions table.
+ *
+ * Outgoing transfer legs (TRANSFER_OUT with a payee account) are counted in four
+ * {@link CountMinSketch}es: transfers and amount per payee, and per (customer, payee) pair. A
+ * {@link TopKHeap} fed with the estimates holds the leading payees bank-wide and for each tracked
+ * customer. Customers are tracked least recently used up to a cap, so memory is set by
+ * configuration, not by the number of customers or transactions, and a query only re-reads the
+ * estimates of the k payees held. A customer that isn't tracked is answered from the database.
+ *
+ * Transfers committed by this instance are counted straight after commit. A tailer also reads the
+ * transactions table in id order for commits made by other instances, skipping rows already
+ * counted here. Ids are handed out before commit, so it stays a settle lag behind the newest rows;
+ * a transfer whose commit takes longer than that can be missed. The state is snapshotted to the
+ * database with the tailer's position and restored on startup, after which the tailer catches up.
+ * With no usable snapshot the tailer starts from the first row, which is also how a rebuild
+ * recounts everything.
+ */
+@Service
+public class PayeeAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(PayeeAnalyticsService.class);
+
+    private static final String SNAPSHOT_NAME = "payees";
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_EXACT_LIMIT = 1000;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SketchSnapshotRepository sketchSnapshotRepository;
+
+    @Value("${banking.analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${banking.analytics.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${banking.analytics.sketch-width:16384}")
+    private int sketchWidth;
+
+    @Value("${banking.analytics.global-top-k:100}")
+    private int globalTopK;
+
+    @Value("${banking.analytics.customer-top-k:10}")
+    private int customerTopK;
+
+    @Value("${banking.analytics.max-customers:10000}")
+    private int maxCustomers;
+
+    @Value("${banking.analytics.tail-batch-size:5000}")
+    private int tailBatchSize;
+
+    @Value("${banking.analytics.tail-max-batches:20}")
+    private int tailMaxBatches;
+
+    @Value("${banking.analytics.settle-lag-ms:5000}")
+    private long settleLagMs;
+
+    // All state below is guarded by this
+    private CountMinSketch payeeTransfers;
+    private CountMinSketch payeeAmounts; // in cents
+    private CountMinSketch pairTransfers;
+    private CountMinSketch pairAmounts;
+    private TopKHeap topByTransfers;
+    private TopKHeap topByAmount;
+    private Map<Long, CustomerTop> customers;
+    private long lastTailedId;
+    private final TreeSet<Long> countedAhead = new TreeSet<>(); // counted after commit, not yet reached by the tailer
+    private boolean restored;
+    private long version; // bumped on every change, so unchanged state isn't snapshotted again
+    private long snapshotVersion = -1;
+
+    @PostConstruct
+    public void init() {
+        payeeTransfers = new CountMinSketch(sketchDepth, sketchWidth);
+        payeeAmounts = new CountMinSketch(sketchDepth, sketchWidth);
+        pairTransfers = new CountMinSketch(sketchDepth, sketchWidth);
+        pairAmounts = new CountMinSketch(sketchDepth, sketchWidth);
+        topByTransfers = new TopKHeap(globalTopK);
+        topByAmount = new TopKHeap(globalTopK);
+        customers = new LinkedHashMap<Long, CustomerTop>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CustomerTop> eldest) {
+                return size() > maxCustomers;
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    // Called as the transfer leg is saved; it is only counted once the surrounding commit succeeds
+    public void recordAfterCommit(Account account, Transaction transaction) {
+        if (!enabled || !"TRANSFER_OUT".equals(transaction.getType()) || transaction.getToAccountNumber() == null) {
+            return;
+        }
+        long id = transaction.getId();
+        Long customerId = account.getCustomer() != null ? account.getCustomer().getId() : null;
+        String payee = transaction.getToAccountNumber();
+        long cents = cents(transaction.getAmount());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    countCommitted(id, customerId, payee, cents);
+                }
+            });
+        } else {
+            countCommitted(id, customerId, payee, cents);
+        }
+    }
+
+    // Bank-wide ranking, by "count" or "amount"
+    public PayeeRanking getTopPayees(String rankedBy, int limit) {
+        boolean byAmount = isByAmount(rankedBy);
+        checkLimit(limit, globalTopK);
+        synchronized (this) {
+            List<PayeeCount> payees = estimates(null, (byAmount ? topByAmount : topByTransfers).keys());
+            return sketchRanking(null, byAmount, payees, limit, payeeTransfers, payeeAmounts);
+        }
+    }
+
+    public PayeeRanking getTopPayees(Long customerId, String rankedBy, int limit) {
+        boolean byAmount = isByAmount(rankedBy);
+        checkLimit(limit, customerTopK);
+        synchronized (this) {
+            CustomerTop top = customers.get(customerId);
+            if (top != null) {
+                List<PayeeCount> payees = estimates(customerId, (byAmount ? top.byAmount : top.byTransfers).keys());
+                return sketchRanking(customerId, byAmount, payees, limit, pairTransfers, pairAmounts);
+            }
+        }
+        // Never tracked, or evicted since: an aggregate over just this customer's transfers
+        return getExactTopPayees(customerId, rankedBy, limit);
+    }
+
+    /**
+     * Exact ranking from the transactions table, bank-wide when customerId is null. The
+     * bank-wide one aggregates every outgoing transfer, so it is for offline comparison with
+     * the sketches, not for serving requests.
+     */
+    public PayeeRanking getExactTopPayees(Long customerId, String rankedBy, int limit) {
+        boolean byAmount = isByAmount(rankedBy);
+        checkLimit(limit, MAX_EXACT_LIMIT);
+        Pageable page = PageRequest.of(0, limit);
+        List<Object[]> rows;
+        if (customerId == null) {
+            rows = byAmount
+                ? transactionRepository.findTopPayeesByAmount(page)
+                : transactionRepository.findTopPayeesByCount(page);
+        } else {
+            rows = byAmount
+                ? transactionRepository.findTopPayeesByAmountForCustomer(customerId, page)
+                : transactionRepository.findTopPayeesByCountForCustomer(customerId, page);
+        }
+        List<PayeeCount> payees = rows.stream()
+            .map(row -> new PayeeCount((String) row[0], ((Number) row[1]).longValue(), (BigDecimal) row[2]))
+            .collect(Collectors.toList());
+        return new PayeeRanking(customerId, byAmount ? "amount" : "count", "exact", payees, null, 0L, BigDecimal.ZERO);
+    }
+
+    // Sketch estimates for the given payees, whether or not they are ranked, in the order given
+    public synchronized List<PayeeCount> getEstimates(Long customerId, List<String> accountNumbers) {
+        return estimates(customerId, accountNumbers);
+    }
+
+    // Drops all counts; the tailer then recounts every transfer from the first row
+    public synchronized void rebuild() {
+        reset();
+        restored = true;
+        log.info("Payee analytics cleared, recounting from the transactions table");
+    }
+
+    @Scheduled(fixedDelayString = "${banking.analytics.tail-interval-ms:1000}")
+    public void tail() {
+        if (!enabled) {
+            return;
+        }
+        if (!restored) {
+            restore();
+        }
+        LocalDateTime settled = LocalDateTime.now().minus(Duration.ofMillis(settleLagMs));
+        for (int batch = 0; batch < tailMaxBatches; batch++) {
+            long after;
+            synchronized (this) {
+                after = lastTailedId;
+            }
+            List<Object[]> rows = transactionRepository.findTransfersOutAfter(after, PageRequest.of(0, tailBatchSize));
+            if (!apply(after, rows, settled) || rows.size() < tailBatchSize) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${banking.analytics.snapshot-interval-ms:300000}",
+               initialDelayString = "${banking.analytics.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        byte[] state;
+        long position;
+        long taken;
+        synchronized (this) {
+            if (!enabled || !restored || version == snapshotVersion) {
+                return;
+            }
+            state = writeState();
+            position = lastTailedId;
+            taken = version;
+        }
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(state.length / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(state);
+            }
+            sketchSnapshotRepository.save(new SketchSnapshot(SNAPSHOT_NAME, position, compressed.toByteArray(),
+                LocalDateTime.now()));
+            synchronized (this) {
+                snapshotVersion = taken;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Payee analytics snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void countCommitted(long id, Long customerId, String payee, long cents) {
+        // Rows the tailer has passed were counted by it, or committed too late for either
+        if (id <= lastTailedId || !countedAhead.add(id)) {
+            return;
+        }
+        count(customerId, payee, cents);
+    }
+
+    // Counts rows up to the first one newer than the settle lag; false if it stopped early
+    private synchronized boolean apply(long after, List<Object[]> rows, LocalDateTime settled) {
+        if (after != lastTailedId) {
+            return false; // rebuilt or restored while the batch was being read
+        }
+        for (Object[] row : rows) {
+            LocalDateTime date = (LocalDateTime) row[4];
+            if (date != null && !date.isBefore(settled)) {
+                return false;
+            }
+            long id = (Long) row[0];
+            if (!countedAhead.remove(id)) {
+                count((Long) row[1], (String) row[2], cents((BigDecimal) row[3]));
+            }
+            lastTailedId = id;
+            version++;
+        }
+        countedAhead.headSet(lastTailedId, true).clear();
+        return true;
+    }
+
+    private void count(Long customerId, String payee, long cents) {
+        topByTransfers.offer(payee, payeeTransfers.add(payee, 1));
+        topByAmount.offer(payee, payeeAmounts.add(payee, cents));
+        if (customerId != null) {
+            String pair = pairKey(customerId, payee);
+            long transfers = pairTransfers.add(pair, 1);
+            long amount = pairAmounts.add(pair, cents);
+            CustomerTop top = customers.computeIfAbsent(customerId, id -> new CustomerTop(customerTopK));
+            top.byTransfers.offer(payee, transfers);
+            top.byAmount.offer(payee, amount);
+        }
+        version++;
+    }
+
+    private List<PayeeCount> estimates(Long customerId, List<String> accountNumbers) {
+        CountMinSketch transfers = customerId == null ? payeeTransfers : pairTransfers;
+        CountMinSketch amounts = customerId == null ? payeeAmounts : pairAmounts;
+        List<PayeeCount> payees = new ArrayList<>(accountNumbers.size());
+        for (String accountNumber : accountNumbers) {
+            String key = customerId == null ? accountNumber : pairKey(customerId, accountNumber);
+            payees.add(new PayeeCount(accountNumber, transfers.estimate(key),
+                BigDecimal.valueOf(amounts.estimate(key), 2)));
+        }
+        return payees;
+    }
+
+    private PayeeRanking sketchRanking(Long customerId, boolean byAmount, List<PayeeCount> payees, int limit,
+                                       CountMinSketch transfers, CountMinSketch amounts) {
+        Comparator<PayeeCount> order = byAmount
+            ? Comparator.comparing(PayeeCount::getAmount).reversed()
+            : Comparator.comparingLong(PayeeCount::getTransfers).reversed();
+        payees.sort(order.thenComparing(PayeeCount::getAccountNumber));
+        return new PayeeRanking(customerId, byAmount ? "amount" : "count", "sketch",
+            new ArrayList<>(payees.subList(0, Math.min(limit, payees.size()))), lastTailedId,
+            transfers.errorBound(), BigDecimal.valueOf(amounts.errorBound(), 2));
+    }
+
+    private void restore() {
+        Optional<SketchSnapshot> snapshot = sketchSnapshotRepository.findById(SNAPSHOT_NAME);
+        synchronized (this) {
+            if (restored) {
+                return;
+            }
+            restored = true;
+            if (!snapshot.isPresent()) {
+                return;
+            }
+            try {
+                readState(snapshot.get().getPayload());
+                log.info("Payee analytics restored from the snapshot of {}, through transaction row {}",
+                    snapshot.get().getCreatedAt(), lastTailedId);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Payee analytics snapshot unusable, recounting from the transactions table: {}",
+                    e.getMessage());
+                reset();
+            }
+        }
+    }
+
+    private void reset() {
+        payeeTransfers.clear();
+        payeeAmounts.clear();
+        pairTransfers.clear();
+        pairAmounts.clear();
+        topByTransfers.clear();
+        topByAmount.clear();
+        customers.clear();
+        countedAhead.clear();
+        lastTailedId = 0;
+        version++;
+    }
+
+    // Customers are written least recently used first, so reading them back keeps that order
+    private byte[] writeState() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(lastTailedId);
+            out.writeInt(countedAhead.size());
+            for (Long id : countedAhead) {
+                out.writeLong(id);
+            }
+            payeeTransfers.writeTo(out);
+            payeeAmounts.writeTo(out);
+            pairTransfers.writeTo(out);
+            pairAmounts.writeTo(out);
+            topByTransfers.writeTo(out);
+            topByAmount.writeTo(out);
+            out.writeInt(customers.size());
+            for (Map.Entry<Long, CustomerTop> entry : customers.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().byTransfers.writeTo(out);
+                entry.getValue().byAmount.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // A snapshot taken with other sketch dimensions fails here and the counts are rebuilt
+    private void readState(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unknown snapshot version");
+            }
+            lastTailedId = in.readLong();
+            countedAhead.clear();
+            for (int i = in.readInt(); i > 0; i--) {
+                countedAhead.add(in.readLong());
+            }
+            payeeTransfers.readFrom(in);
+            payeeAmounts.readFrom(in);
+            pairTransfers.readFrom(in);
+            pairAmounts.readFrom(in);
+            topByTransfers.readFrom(in);
+            topByAmount.readFrom(in);
+            customers.clear();
+            for (int i = in.readInt(); i > 0; i--) {
+                CustomerTop top = new CustomerTop(customerTopK);
+                customers.put(in.readLong(), top);
+                top.byTransfers.readFrom(in);
+                top.byAmount.readFrom(in);
+            }
+        }
+        snapshotVersion = version;
+    }
+
+    private static boolean isByAmount(String rankedBy) {
+        if ("amount".equalsIgnoreCase(rankedBy)) {
+            return true;
+        }
+        if (rankedBy == null || "count".equalsIgnoreCase(rankedBy)) {
+            return false;
+        }
+        throw new RuntimeException("Ranking must be by count or amount");
+    }
+
+    private static void checkLimit(int limit, int max) {
+        if (limit < 1 || limit > max) {
+            throw new RuntimeException("Limit must be between 1 and " + max);
+        }
+    }
+
+    private static String pairKey(Long customerId, String payee) {
+        return customerId + ":" + payee;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0L : Math.max(0L, amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue());
+    }
+
+    // A customer's leading payees; their counts live in the shared pair sketches
+    private static class CustomerTop {
+        private final TopKHeap byTransfers;
+        private final TopKHeap byAmount;
+
+        CustomerTop(int k) {
+            byTransfers = new TopKHeap(k);
+            byAmount = new TopKHeap(k);
+        }
+    }
+}
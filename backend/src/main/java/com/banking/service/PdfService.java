@@ -1,7 +1,17 @@
 package com.banking.service;
 
+import com.banking.dto.StatementAccountTotals;
+import com.banking.dto.StatementLine;
 import com.banking.model.Account;
+import com.banking.model.Customer;
 import com.banking.model.Transaction;
+import com.banking.monitoring.PdfRenderEvent;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.layout.Document;
@@ -9,23 +19,64 @@ import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 
+// Created on first use so iText and its fonts stay off the startup path
+@Lazy
 @Service
 public class PdfService {
     
-    public byte[] generateMonthlyStatement(Account account, List<Transaction> transactions, 
-                                           LocalDate startDate, LocalDate endDate) {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final float[] COLUMN_WIDTHS = {1, 2, 1, 1, 1, 1};
+    private static final float[] LEDGER_COLUMN_WIDTHS = {1, 2, 1, 1, 1};
+    private static final float[] CONSOLIDATED_COLUMN_WIDTHS = {1, 1.4f, 2, 1, 1, 1, 1};
+    private static final float[] TOTALS_COLUMN_WIDTHS = {1.4f, 1, 1, 1, 1, 1, 1};
+    private static final int ROWS_PER_FLUSH = 100;
+    
+    // Font programs are parsed once and shared; each document only wraps them in its own PdfFont
+    private FontProgram regularFont;
+    private FontProgram boldFont;
+    
+    @PostConstruct
+    public void loadFonts() throws IOException {
+        regularFont = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+        boldFont = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+    }
+    
+    // Renders a statement with balances supplied by the caller; safe to call from many threads
+    public byte[] generateStatement(Account account, List<Transaction> transactions, LocalDate startDate,
+                                    LocalDate endDate, BigDecimal openingBalance, BigDecimal closingBalance) {
+        return generateStatement(account, transactions, startDate, endDate, openingBalance, closingBalance, true);
+    }
+    
+    // Without account details the statement prints only what the ledger fixes once a period has
+    // closed: no account type or customer name, and no categories, which a backfill can still change
+    public byte[] generateStatement(Account account, List<Transaction> transactions, LocalDate startDate,
+                                    LocalDate endDate, BigDecimal openingBalance, BigDecimal closingBalance,
+                                    boolean withAccountDetails) {
+        String accountNumber = account.getAccountNumber();
+        int transactionCount = transactions.size();
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            PdfRenderEvent stage = PdfRenderEvent.start(PdfRenderEvent.DOCUMENT_SETUP);
             PdfWriter writer = new PdfWriter(baos);
             PdfDocument pdf = new PdfDocument(writer);
             Document document = new Document(pdf);
+            PdfFont bold = PdfFontFactory.createFont(boldFont, PdfEncodings.WINANSI);
+            document.setFont(PdfFontFactory.createFont(regularFont, PdfEncodings.WINANSI));
+            stage.finish(accountNumber, transactionCount);
             
             // Add header
+            stage = PdfRenderEvent.start(PdfRenderEvent.ACCOUNT_DETAILS);
             Paragraph header = new Paragraph("MAHLANGU CAPITAL BANK")
                 .setTextAlignment(TextAlignment.CENTER)
                 .setFontSize(20);
@@ -39,52 +90,51 @@ public class PdfService {
             // Add account details
             document.add(new Paragraph("\n"));
             document.add(new Paragraph("Account Number: " + account.getAccountNumber()));
-            document.add(new Paragraph("Account Type: " + account.getAccountType()));
-            document.add(new Paragraph("Customer Name: " + account.getCustomer().getFullName()));
+            if (withAccountDetails) {
+                document.add(new Paragraph("Account Type: " + account.getAccountType()));
+                document.add(new Paragraph("Customer Name: " + account.getCustomer().getFullName()));
+            }
             
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
             document.add(new Paragraph("Statement Period: " + 
-                startDate.format(formatter) + " to " + endDate.format(formatter)));
+                startDate.format(DATE_FORMAT) + " to " + endDate.format(DATE_FORMAT)));
             document.add(new Paragraph("\n"));
+            stage.finish(accountNumber, transactionCount);
             
             // Create transactions table
-            float[] columnWidths = {1, 2, 1, 1, 1, 1};
-            Table table = new Table(UnitValue.createPercentArray(columnWidths))
+            stage = PdfRenderEvent.start(PdfRenderEvent.TRANSACTION_TABLE);
+            Table table = new Table(UnitValue.createPercentArray(
+                    withAccountDetails ? COLUMN_WIDTHS : LEDGER_COLUMN_WIDTHS))
                 .useAllAvailableWidth();
             
             // Add table headers
-            table.addHeaderCell(new Paragraph("Date").setBold());
-            table.addHeaderCell(new Paragraph("Description").setBold());
-            table.addHeaderCell(new Paragraph("Category").setBold());
-            table.addHeaderCell(new Paragraph("Type").setBold());
-            table.addHeaderCell(new Paragraph("Amount").setBold());
-            table.addHeaderCell(new Paragraph("Balance").setBold());
+            table.addHeaderCell(new Paragraph("Date").setFont(bold));
+            table.addHeaderCell(new Paragraph("Description").setFont(bold));
+            if (withAccountDetails) {
+                table.addHeaderCell(new Paragraph("Category").setFont(bold));
+            }
+            table.addHeaderCell(new Paragraph("Type").setFont(bold));
+            table.addHeaderCell(new Paragraph("Amount").setFont(bold));
+            table.addHeaderCell(new Paragraph("Balance").setFont(bold));
             
             // Add transaction rows
             for (Transaction t : transactions) {
-                table.addCell(new Paragraph(t.getTransactionDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy"))));
+                table.addCell(new Paragraph(t.getTransactionDate().format(DATE_FORMAT)));
                 table.addCell(new Paragraph(t.getDescription() != null ? t.getDescription() : ""));
-                table.addCell(new Paragraph(t.getCategory() != null ? t.getCategory().toString() : "OTHER"));
+                if (withAccountDetails) {
+                    table.addCell(new Paragraph(t.getCategory() != null ? t.getCategory().toString() : "OTHER"));
+                }
                 table.addCell(new Paragraph(t.getType() != null ? t.getType() : ""));
                 table.addCell(new Paragraph("R" + (t.getAmount() != null ? t.getAmount().toString() : "0.00")));
                 table.addCell(new Paragraph("R" + (t.getBalanceAfterTransaction() != null ? t.getBalanceAfterTransaction().toString() : "0.00")));
             }
             
             document.add(table);
+            stage.finish(accountNumber, transactionCount);
             
             // Add summary
+            stage = PdfRenderEvent.start(PdfRenderEvent.LAYOUT_AND_WRITE);
             document.add(new Paragraph("\n"));
             
-            // Calculate opening and closing balances
-            double openingBalance = 0.0;
-            double closingBalance = account.getBalance() != null ? account.getBalance().doubleValue() : 0.0;
-            
-            if (!transactions.isEmpty()) {
-                openingBalance = transactions.get(transactions.size() - 1).getBalanceAfterTransaction() != null ? 
-                    transactions.get(transactions.size() - 1).getBalanceAfterTransaction().doubleValue() - 
-                    transactions.get(0).getAmount().doubleValue() : 0.0;
-            }
-            
             document.add(new Paragraph("Opening Balance: R" + String.format("%.2f", openingBalance)));
             document.add(new Paragraph("Closing Balance: R" + String.format("%.2f", closingBalance)));
             
@@ -95,6 +145,7 @@ public class PdfService {
                 .setFontSize(10));
             
             document.close();
+            stage.finish(accountNumber, transactionCount);
             return baos.toByteArray();
             
         } catch (Exception e) {
@@ -102,4 +153,99 @@ public class PdfService {
             throw new RuntimeException("Error generating PDF statement: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * Starts a consolidated statement written straight to the stream. The transaction table is a
+     * large table flushed every hundred rows, so rendered rows are released as pages fill up and
+     * the statement can be arbitrarily long. Closing the writer ends the document but leaves the
+     * stream open.
+     */
+    public ConsolidatedStatementWriter openConsolidatedStatement(Customer customer, LocalDate startDate,
+                                                                 LocalDate endDate, OutputStream outputStream) {
+        return new ConsolidatedStatementWriter(customer, startDate, endDate, outputStream);
+    }
+    
+    public class ConsolidatedStatementWriter implements Closeable {
+        private final Document document;
+        private final PdfFont bold;
+        private final Table table;
+        private int rows;
+        
+        private ConsolidatedStatementWriter(Customer customer, LocalDate startDate, LocalDate endDate,
+                                            OutputStream outputStream) {
+            PdfWriter writer = new PdfWriter(outputStream);
+            writer.setCloseStream(false);
+            document = new Document(new PdfDocument(writer));
+            bold = PdfFontFactory.createFont(boldFont, PdfEncodings.WINANSI);
+            document.setFont(PdfFontFactory.createFont(regularFont, PdfEncodings.WINANSI));
+            
+            document.add(new Paragraph("MAHLANGU CAPITAL BANK")
+                .setTextAlignment(TextAlignment.CENTER)
+                .setFontSize(20));
+            document.add(new Paragraph("Consolidated Statement")
+                .setTextAlignment(TextAlignment.CENTER)
+                .setFontSize(16));
+            document.add(new Paragraph("\n"));
+            document.add(new Paragraph("Customer Name: " + customer.getFullName()));
+            document.add(new Paragraph("Customer ID: " + customer.getCustomerId()));
+            document.add(new Paragraph("Statement Period: " +
+                startDate.format(DATE_FORMAT) + " to " + endDate.format(DATE_FORMAT)));
+            document.add(new Paragraph("\n"));
+            
+            table = new Table(UnitValue.createPercentArray(CONSOLIDATED_COLUMN_WIDTHS), true)
+                .useAllAvailableWidth();
+            for (String heading : new String[] { "Date", "Account", "Description", "Type", "Amount",
+                    "Account Balance", "Combined Balance" }) {
+                table.addHeaderCell(new Paragraph(heading).setFont(bold).setFontSize(9));
+            }
+            document.add(table);
+        }
+        
+        public void addLine(StatementLine line) {
+            table.addCell(new Paragraph(line.getDate().format(DATE_FORMAT)).setFontSize(9));
+            table.addCell(new Paragraph(line.getAccountNumber()).setFontSize(9));
+            table.addCell(new Paragraph(line.getDescription() != null ? line.getDescription() : "").setFontSize(9));
+            table.addCell(new Paragraph(line.getType() != null ? line.getType() : "").setFontSize(9));
+            table.addCell(new Paragraph("R" + line.getChange()).setFontSize(9));
+            table.addCell(new Paragraph("R" + line.getAccountBalance()).setFontSize(9));
+            table.addCell(new Paragraph("R" + line.getCombinedBalance()).setFontSize(9));
+            if (++rows % ROWS_PER_FLUSH == 0) {
+                table.flush();
+            }
+        }
+        
+        // Per-account summary after the transactions; the last row is expected to be the combined one
+        public void addTotals(List<StatementAccountTotals> totals) {
+            table.complete();
+            document.add(new Paragraph("\n"));
+            Table summary = new Table(UnitValue.createPercentArray(TOTALS_COLUMN_WIDTHS)).useAllAvailableWidth();
+            for (String heading : new String[] { "Account", "Type", "Opening Balance", "Money In", "Money Out",
+                    "Closing Balance", "Transactions" }) {
+                summary.addHeaderCell(new Paragraph(heading).setFont(bold).setFontSize(9));
+            }
+            for (StatementAccountTotals accountTotals : totals) {
+                summary.addCell(new Paragraph(accountTotals.getAccountNumber()).setFontSize(9));
+                summary.addCell(new Paragraph(accountTotals.getAccountType()).setFontSize(9));
+                summary.addCell(new Paragraph("R" + accountTotals.getOpeningBalance()).setFontSize(9));
+                summary.addCell(new Paragraph("R" + accountTotals.getMoneyIn()).setFontSize(9));
+                summary.addCell(new Paragraph("R" + accountTotals.getMoneyOut()).setFontSize(9));
+                summary.addCell(new Paragraph("R" + accountTotals.getClosingBalance()).setFontSize(9));
+                summary.addCell(new Paragraph(String.valueOf(accountTotals.getTransactions())).setFontSize(9));
+            }
+            document.add(summary);
+            
+            document.add(new Paragraph("\n"));
+            document.add(new Paragraph("This is a system-generated statement for Mahlangu Capital Bank.")
+                .setTextAlignment(TextAlignment.CENTER)
+                .setFontSize(10));
+        }
+        
+        @Override
+        public void close() {
+            if (!table.isComplete()) {
+                table.complete();
+            }
+            document.close();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.banking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Starts and stops one bounded Java Flight Recorder recording at a time for operators.
+ *
+ * A recording always has a duration and a size cap, so a forgotten one stops on its own, and it is
+ * written to a temporary file that can be downloaded once it has stopped. The banking events
+ * (account operation phases, PDF render stages, interest chunks) are part of every recording;
+ * with no recording running they cost next to nothing.
+ */
+@Service
+public class ProfilingService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ProfilingService.class);
+    
+    @Value("${banking.profiling.max-duration-seconds:600}")
+    private int maxDurationSeconds;
+    
+    @Value("${banking.profiling.max-size-mb:200}")
+    private long maxSizeMb;
+    
+    private Recording recording;
+    private Path file;
+    
+    // settings is a JDK configuration: "default" (about 1% overhead) or "profile" (more detail)
+    public synchronized Map<String, Object> start(int seconds, String settings) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new RuntimeException("A recording is already running");
+        }
+        if (seconds < 1 || seconds > maxDurationSeconds) {
+            throw new RuntimeException("Duration must be between 1 and " + maxDurationSeconds + " seconds");
+        }
+        if (!"default".equals(settings) && !"profile".equals(settings)) {
+            throw new RuntimeException("Settings must be default or profile");
+        }
+        discard();
+        
+        file = Files.createTempFile("banking-profile-", ".jfr");
+        recording = new Recording(Configuration.getConfiguration(settings));
+        recording.setName("banking-" + settings);
+        recording.setDuration(Duration.ofSeconds(seconds));
+        recording.setMaxSize(maxSizeMb * 1024 * 1024);
+        recording.setToDisk(true);
+        recording.setDestination(file); // dumped here when stopped or when the duration runs out
+        recording.start();
+        log.info("Started {} JFR recording for {}s", settings, seconds);
+        return getStatus();
+    }
+    
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new RuntimeException("No recording is running");
+        }
+        recording.stop();
+        log.info("Stopped JFR recording, written to {}", file);
+        return getStatus();
+    }
+    
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("name", recording.getName());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("duration", recording.getDuration());
+        status.put("downloadable", isDownloadable());
+        return status;
+    }
+    
+    // The finished recording file; only available once the recording has stopped
+    public synchronized Path getRecordingFile() {
+        if (!isDownloadable()) {
+            throw new RuntimeException("No finished recording to download");
+        }
+        return file;
+    }
+    
+    @PreDestroy
+    public synchronized void discard() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete old recording {}", file, e);
+            }
+            file = null;
+        }
+    }
+    
+    private boolean isDownloadable() {
+        return recording != null && file != null && Files.exists(file)
+            && (recording.getState() == RecordingState.STOPPED || recording.getState() == RecordingState.CLOSED);
+    }
+}
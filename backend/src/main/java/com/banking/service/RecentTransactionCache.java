@@ -0,0 +1,239 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.Transaction;
+import com.banking.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last few transactions of recently active accounts, for the dashboard and mini-statement.
+ *
+ * Each cached account holds a fixed-size ring of detached transaction copies (no account graph),
+ * kept in id order. New transactions are appended after their database transaction commits, but
+ * only for accounts already cached; a miss loads the newest rows once. Appends that commit while
+ * that load is in flight are parked on the entry and merged in, so the ring never misses a row.
+ * Accounts are evicted least recently used, reads and writes both counting as use. Commits made
+ * by other instances are noticed through the account events outbox, which drops the stale ring.
+ */
+@Service
+public class RecentTransactionCache {
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Value("${banking.recent-transactions.per-account:20}")
+    private int perAccount;
+    
+    @Value("${banking.recent-transactions.max-accounts:10000}")
+    private int maxAccounts;
+    
+    private Map<String, Entry> entries;
+    
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxAccounts;
+            }
+        };
+    }
+    
+    public int getCapacity() {
+        return perAccount;
+    }
+    
+    // Newest first, at most limit (capped at the ring size); loads the account's rows on a miss
+    public List<Transaction> getRecent(Account account, int limit) {
+        Entry entry = lookup(account.getAccountNumber());
+        if (entry != null && entry.loaded) {
+            return entry.newest(limit);
+        }
+        return load(account, limit);
+    }
+    
+    // Cached copy of the account's recent rows without touching the database, or null on a miss
+    public List<Transaction> getRecentIfCached(String accountNumber, int limit) {
+        Entry entry = lookup(accountNumber);
+        return entry != null && entry.loaded ? entry.newest(limit) : null;
+    }
+    
+    // Called as the transaction is saved; the ring only sees it once the surrounding commit succeeds
+    public void recordAfterCommit(String accountNumber, Transaction transaction) {
+        Transaction copy = detach(transaction);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(accountNumber, copy);
+                }
+            });
+        } else {
+            append(accountNumber, copy);
+        }
+    }
+    
+    // Outbox events cover commits made by every instance; an account whose ring lacks the event's
+    // transaction was written elsewhere, so it is dropped and reloaded on the next read
+    public void onCommittedEvent(String accountNumber, String transactionId) {
+        synchronized (entries) {
+            Entry entry = entries.get(accountNumber);
+            if (entry != null && entry.loaded && !entry.contains(transactionId)) {
+                entries.remove(accountNumber);
+            }
+        }
+    }
+    
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    
+    private Entry lookup(String accountNumber) {
+        synchronized (entries) {
+            return entries.get(accountNumber);
+        }
+    }
+    
+    // Accounts that aren't cached are skipped; the next read loads them with this row included
+    private void append(String accountNumber, Transaction transaction) {
+        Entry entry = lookup(accountNumber);
+        if (entry != null) {
+            entry.add(transaction);
+        }
+    }
+    
+    private List<Transaction> load(Account account, int limit) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(account.getAccountNumber(), number -> new Entry(perAccount));
+        }
+        List<Transaction> rows;
+        try {
+            rows = transactionRepository.findByAccountOrderByIdDesc(account, PageRequest.of(0, perAccount));
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(account.getAccountNumber(), entry); // don't leave it parking appends forever
+            }
+            throw e;
+        }
+        List<Transaction> copies = new ArrayList<>(rows.size());
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            copies.add(detach(rows.get(i)));
+        }
+        entry.fill(copies);
+        return entry.newest(limit);
+    }
+    
+    private static Transaction detach(Transaction transaction) {
+        Transaction copy = new Transaction();
+        copy.setId(transaction.getId());
+        copy.setTransactionId(transaction.getTransactionId());
+        copy.setDescription(transaction.getDescription());
+        copy.setAmount(transaction.getAmount());
+        copy.setCategory(transaction.getCategory());
+        copy.setType(transaction.getType());
+        copy.setTransactionDate(transaction.getTransactionDate());
+        copy.setToAccountNumber(transaction.getToAccountNumber());
+        copy.setBalanceAfterTransaction(transaction.getBalanceAfterTransaction());
+        return copy;
+    }
+    
+    // Ring of one account's newest transactions in ascending id order
+    private static class Entry {
+        private final Transaction[] ring;
+        private int head; // index of the oldest row
+        private int size;
+        private volatile boolean loaded;
+        private List<Transaction> parked = new ArrayList<>(); // appends that arrived while loading
+        
+        Entry(int capacity) {
+            this.ring = new Transaction[capacity];
+        }
+        
+        synchronized void add(Transaction transaction) {
+            if (!loaded) {
+                parked.add(transaction);
+                return;
+            }
+            insert(transaction);
+        }
+        
+        // Installs the loaded rows (oldest first) plus anything parked meanwhile; a second load of
+        // an already filled entry is ignored
+        synchronized void fill(List<Transaction> oldestFirst) {
+            if (loaded) {
+                return;
+            }
+            oldestFirst.forEach(this::insert);
+            parked.forEach(this::insert);
+            parked = Collections.emptyList();
+            loaded = true;
+        }
+        
+        synchronized List<Transaction> newest(int limit) {
+            int count = Math.min(limit, size);
+            List<Transaction> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(get(size - 1 - i));
+            }
+            return result;
+        }
+        
+        synchronized boolean contains(String transactionId) {
+            for (int i = 0; i < size; i++) {
+                if (get(i).getTransactionId().equals(transactionId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        // Hot-account credits can commit out of id order, so the row is placed by id; duplicates
+        // and rows older than a full ring are dropped
+        private void insert(Transaction transaction) {
+            long id = transaction.getId();
+            int position = size;
+            while (position > 0 && get(position - 1).getId() > id) {
+                position--;
+            }
+            if (position > 0 && get(position - 1).getId() == id) {
+                return;
+            }
+            if (size == ring.length) {
+                if (position == 0) {
+                    return;
+                }
+                head = (head + 1) % ring.length; // drop the oldest
+                size--;
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                set(i, get(i - 1));
+            }
+            set(position, transaction);
+            size++;
+        }
+        
+        private Transaction get(int index) {
+            return ring[(head + index) % ring.length];
+        }
+        
+        private void set(int index, Transaction transaction) {
+            ring[(head + index) % ring.length] = transaction;
+        }
+    }
+}
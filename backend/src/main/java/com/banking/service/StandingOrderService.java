@@ -0,0 +1,327 @@
+package com.banking.service;
+
+import com.banking.dto.StandingOrderDTO;
+import com.banking.model.Account;
+import com.banking.model.AccountStatus;
+import com.banking.model.StandingOrder;
+import com.banking.model.StandingOrderStatus;
+import com.banking.repository.StandingOrderRepository;
+import com.banking.security.PasswordUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes standing orders when they fall due.
+ *
+ * Orders due within the next horizon are loaded into a {@link TimingWheel} owned by a single
+ * ticker thread; each tick hands the due order ids to a worker pool in batches. A worker locks
+ * the order row (skipping it if another instance holds it), re-checks that it is still due,
+ * and moves the money through {@link AccountService#transferAuthorized} in the same transaction
+ * that advances the order, so an occurrence is paid at most once. A failed attempt is retried
+ * with exponential backoff until max-retries or the next occurrence, then skipped. On startup
+ * everything overdue is loaded as well, so occurrences missed while the service was down are
+ * paid in order; a periodic sweep picks up anything overdue that no instance had in its wheel.
+ */
+@Service
+public class StandingOrderService {
+
+    private static final Logger log = LoggerFactory.getLogger(StandingOrderService.class);
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private StandingOrderRepository standingOrderRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private VelocityCheckService velocityCheckService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${banking.standing-orders.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${banking.standing-orders.horizon-minutes:60}")
+    private long horizonMinutes;
+
+    @Value("${banking.standing-orders.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${banking.standing-orders.batch-size:100}")
+    private int batchSize;
+
+    @Value("${banking.standing-orders.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${banking.standing-orders.retry-base-minutes:15}")
+    private long retryBaseMinutes;
+
+    @Value("${banking.standing-orders.retry-max-minutes:360}")
+    private long retryMaxMinutes;
+
+    private final ConcurrentLinkedQueue<long[]> incoming = new ConcurrentLinkedQueue<>(); // {id, dueMs}
+    private TimingWheel wheel; // only touched by the ticker thread
+    private ScheduledExecutorService ticker;
+    private ExecutorService workers;
+    private TransactionTemplate transactionTemplate;
+    private volatile LocalDateTime loadedUntil;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        wheel = new TimingWheel(tickMs, 64, System.currentTimeMillis());
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "standing-order-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "standing-order-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public StandingOrder createOrder(String fromAccountNumber, StandingOrderDTO orderDTO) {
+        Account fromAccount = accountService.getAccount(fromAccountNumber);
+        Account toAccount = accountService.getAccount(orderDTO.getToAccountNumber());
+        if (fromAccount.getStatus() != AccountStatus.ACTIVE || toAccount.getStatus() != AccountStatus.ACTIVE) {
+            throw new RuntimeException("Both accounts must be active");
+        }
+        if (fromAccount.getAccountNumber().equals(toAccount.getAccountNumber())) {
+            throw new RuntimeException("Cannot create a standing order to the same account");
+        }
+        if (fromAccount.getPinHash() != null
+                && !PasswordUtils.verifyPassword(orderDTO.getPin(), fromAccount.getPinHash())) {
+            throw new RuntimeException("Invalid PIN");
+        }
+        if (orderDTO.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new RuntimeException("Amount must be positive");
+        }
+        velocityCheckService.checkRecurringAmount(orderDTO.getAmount());
+        if (orderDTO.getFirstRunAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("First run must be in the future");
+        }
+        if (orderDTO.getEndAt() != null && orderDTO.getEndAt().isBefore(orderDTO.getFirstRunAt())) {
+            throw new RuntimeException("End must not be before the first run");
+        }
+
+        StandingOrder order = new StandingOrder();
+        order.setFromAccountNumber(fromAccount.getAccountNumber());
+        order.setToAccountNumber(toAccount.getAccountNumber());
+        order.setAmount(orderDTO.getAmount());
+        order.setDescription(orderDTO.getDescription());
+        order.setFrequency(orderDTO.getFrequency());
+        order.setStatus(StandingOrderStatus.ACTIVE);
+        order.setFirstRunAt(orderDTO.getFirstRunAt());
+        order.setEndAt(orderDTO.getEndAt());
+        order.setNextRunAt(orderDTO.getFirstRunAt());
+        StandingOrder saved = standingOrderRepository.save(order);
+        schedule(saved.getId(), saved.getNextRunAt());
+        return saved;
+    }
+
+    public List<StandingOrder> getOrders(String accountNumber) {
+        return standingOrderRepository.findByFromAccountNumberOrderByNextRunAt(accountNumber);
+    }
+
+    public StandingOrder updateStatus(Long id, StandingOrderStatus status) {
+        StandingOrder updated = transactionTemplate.execute(tx -> {
+            StandingOrder order = standingOrderRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Standing order not found: " + id));
+            if (order.getStatus() == StandingOrderStatus.CANCELLED || order.getStatus() == StandingOrderStatus.COMPLETED) {
+                throw new RuntimeException("Standing order is " + order.getStatus().name().toLowerCase());
+            }
+            if (status == StandingOrderStatus.COMPLETED) {
+                throw new RuntimeException("Standing orders complete on their own");
+            }
+            if (status == StandingOrderStatus.ACTIVE && order.getStatus() == StandingOrderStatus.PAUSED) {
+                // Occurrences that fell due while paused are skipped, not caught up
+                LocalDateTime now = LocalDateTime.now();
+                long count = order.getOccurrenceCount();
+                while (order.getFrequency().occurrence(order.getFirstRunAt(), count).isBefore(now)) {
+                    count++;
+                }
+                order.setOccurrenceCount(count);
+                order.setFailedAttempts(0);
+                order.setNextRunAt(order.getFrequency().occurrence(order.getFirstRunAt(), count));
+                if (order.getEndAt() != null && order.getNextRunAt().isAfter(order.getEndAt())) {
+                    order.setStatus(StandingOrderStatus.COMPLETED);
+                    return standingOrderRepository.save(order);
+                }
+            }
+            order.setStatus(status);
+            return standingOrderRepository.save(order);
+        });
+        if (updated.getStatus() == StandingOrderStatus.ACTIVE) {
+            schedule(updated.getId(), updated.getNextRunAt());
+        }
+        return updated;
+    }
+
+    /**
+     * Loads the wheel with orders due before the end of the next horizon that are not in it yet,
+     * plus any order that has been overdue for more than a minute. The first run after startup
+     * loads every overdue order, which is the catch-up after downtime.
+     */
+    @Scheduled(fixedDelayString = "${banking.standing-orders.reload-interval-ms:300000}")
+    public void loadHorizon() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime overdueBefore = now.minusMinutes(1);
+        LocalDateTime from = loadedUntil != null ? loadedUntil : overdueBefore;
+        LocalDateTime to = now.plusMinutes(horizonMinutes);
+        int loaded = 0;
+        for (Object[] row : standingOrderRepository.findDueBetween(StandingOrderStatus.ACTIVE, EPOCH, overdueBefore)) {
+            incoming.add(new long[] { (Long) row[0], toEpochMillis((LocalDateTime) row[1]) });
+            loaded++;
+        }
+        for (Object[] row : standingOrderRepository.findDueBetween(StandingOrderStatus.ACTIVE, from, to)) {
+            incoming.add(new long[] { (Long) row[0], toEpochMillis((LocalDateTime) row[1]) });
+            loaded++;
+        }
+        loadedUntil = to;
+        if (loaded > 0) {
+            log.info("Loaded {} standing order(s) due before {}", loaded, to);
+        }
+    }
+
+    // Orders outside the loaded horizon are left for a later load
+    private void schedule(Long id, LocalDateTime runAt) {
+        LocalDateTime horizon = loadedUntil;
+        if (runAt != null && horizon != null && runAt.isBefore(horizon)) {
+            incoming.add(new long[] { id, toEpochMillis(runAt) });
+        }
+    }
+
+    private void tick() {
+        try {
+            List<Long> due = new ArrayList<>();
+            long[] entry;
+            while ((entry = incoming.poll()) != null) {
+                if (!wheel.add(entry[0], entry[1])) {
+                    due.add(entry[0]);
+                }
+            }
+            wheel.advanceTo(System.currentTimeMillis(), due::add);
+            for (int from = 0; from < due.size(); from += batchSize) {
+                List<Long> batch = new ArrayList<>(due.subList(from, Math.min(from + batchSize, due.size())));
+                workers.execute(() -> batch.forEach(this::executeOrder));
+            }
+        } catch (RuntimeException e) {
+            log.error("Standing order tick failed", e); // keep the ticker alive
+        }
+    }
+
+    private void executeOrder(Long id) {
+        LocalDateTime nextRun;
+        try {
+            nextRun = transactionTemplate.execute(tx -> {
+                StandingOrder order = lockIfDue(id);
+                if (order == null) {
+                    return null;
+                }
+                accountService.transferAuthorized(order.getFromAccountNumber(), order.getToAccountNumber(),
+                    order.getAmount(), order.getDescription() != null ? order.getDescription()
+                        : "Standing order " + order.getId());
+                settleOccurrence(order, null);
+                return order.getNextRunAt();
+            });
+        } catch (RuntimeException e) {
+            nextRun = recordFailure(id, e.getMessage());
+        }
+        if (nextRun != null) {
+            schedule(id, nextRun);
+        }
+    }
+
+    // Runs in its own transaction after the transfer's has rolled back
+    private LocalDateTime recordFailure(Long id, String message) {
+        String error = message == null ? "Transfer failed"
+            : message.length() > 200 ? message.substring(0, 200) : message;
+        try {
+            return transactionTemplate.execute(tx -> {
+                StandingOrder order = lockIfDue(id);
+                if (order == null) {
+                    return null;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                int attempts = order.getFailedAttempts() + 1;
+                long backoff = Math.min(retryBaseMinutes << Math.min(attempts - 1, 20), retryMaxMinutes);
+                LocalDateTime retryAt = now.plusMinutes(backoff);
+                LocalDateTime nextOccurrence = order.getFrequency()
+                    .occurrence(order.getFirstRunAt(), order.getOccurrenceCount() + 1);
+                if (attempts >= maxRetries || !retryAt.isBefore(nextOccurrence)) {
+                    settleOccurrence(order, "Skipped after " + attempts + " failed attempt(s): " + error);
+                } else {
+                    order.setFailedAttempts(attempts);
+                    order.setLastError(error);
+                    order.setLastRunAt(now);
+                    order.setNextRunAt(retryAt);
+                }
+                return order.getNextRunAt();
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not record failure of standing order {}", id, e);
+            return null; // the overdue sweep picks the order up again
+        }
+    }
+
+    // The locked order if it is active and due, or null if it is busy elsewhere or not due
+    private StandingOrder lockIfDue(Long id) {
+        StandingOrder order = standingOrderRepository.lockById(id).orElse(null);
+        if (order == null || order.getStatus() != StandingOrderStatus.ACTIVE
+                || order.getNextRunAt() == null || order.getNextRunAt().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+        return order;
+    }
+
+    // Moves the order on to its next occurrence, completing it once past its end
+    private void settleOccurrence(StandingOrder order, String error) {
+        long count = order.getOccurrenceCount() + 1;
+        LocalDateTime next = order.getFrequency().occurrence(order.getFirstRunAt(), count);
+        order.setOccurrenceCount(count);
+        order.setFailedAttempts(0);
+        order.setLastError(error);
+        order.setLastRunAt(LocalDateTime.now());
+        if (order.getEndAt() != null && next.isAfter(order.getEndAt())) {
+            order.setStatus(StandingOrderStatus.COMPLETED);
+            order.setNextRunAt(null);
+        } else {
+            order.setNextRunAt(next);
+        }
+        standingOrderRepository.save(order);
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,171 @@
+package com.banking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Month-end statements stored as one segment file per range of account ids.
+ *
+ * A segment is the statements' PDF bytes back to back, followed by an index of
+ * (account number, offset, length) entries and a fixed footer giving the index position. A
+ * statement is served with one positional read once the segment's index has been cached.
+ * Segments are written to a temporary file and moved into place, so a reader never sees a
+ * partial one and rewriting a range after a failed run simply replaces it.
+ */
+@Service
+public class StatementArchive {
+    
+    private static final int MAGIC = 0x53544d54; // "STMT"
+    private static final int FOOTER_SIZE = 16;
+    private static final String SUFFIX = ".stmt";
+    
+    @Value("${banking.statements.archive-dir:statement-archive}")
+    private String archiveDir;
+    
+    // month -> segments keyed by their first account id
+    private final Map<YearMonth, NavigableMap<Long, Segment>> segments = new ConcurrentHashMap<>();
+    
+    public void writeSegment(YearMonth month, long startId, long endId,
+                             List<String> accountNumbers, List<byte[]> statements) throws IOException {
+        Path dir = monthDir(month);
+        Files.createDirectories(dir);
+        Path target = dir.resolve("accounts-" + startId + "-" + endId + SUFFIX);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            long[] offsets = new long[statements.size()];
+            long position = 0;
+            for (int i = 0; i < statements.size(); i++) {
+                offsets[i] = position;
+                out.write(statements.get(i));
+                position += statements.get(i).length;
+            }
+            long indexOffset = position;
+            for (int i = 0; i < statements.size(); i++) {
+                out.writeUTF(accountNumbers.get(i));
+                out.writeLong(offsets[i]);
+                out.writeInt(statements.get(i).length);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(statements.size());
+            out.writeInt(MAGIC);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments.remove(month); // rescanned, with fresh indexes, on the next read
+    }
+    
+    // The archived statement, or null if the month's run has not produced it
+    public byte[] read(YearMonth month, long accountId, String accountNumber) throws IOException {
+        Segment segment = findSegment(month, accountId);
+        if (segment == null) {
+            return null;
+        }
+        long[] entry = segment.index().get(accountNumber);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            long position = entry[0];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Truncated statement segment " + segment.path);
+                }
+                position += read;
+            }
+        }
+        return buffer.array();
+    }
+    
+    private Segment findSegment(YearMonth month, long accountId) throws IOException {
+        NavigableMap<Long, Segment> monthSegments = segments.get(month);
+        Map.Entry<Long, Segment> entry = monthSegments != null ? monthSegments.floorEntry(accountId) : null;
+        if (entry == null || entry.getValue().endId < accountId) {
+            monthSegments = scan(month);
+            entry = monthSegments.floorEntry(accountId);
+        }
+        return entry != null && entry.getValue().endId >= accountId ? entry.getValue() : null;
+    }
+    
+    private NavigableMap<Long, Segment> scan(YearMonth month) throws IOException {
+        NavigableMap<Long, Segment> found = new ConcurrentSkipListMap<>();
+        Path dir = monthDir(month);
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "accounts-*" + SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String[] range = name.substring("accounts-".length(), name.length() - SUFFIX.length()).split("-");
+                    long startId = Long.parseLong(range[0]);
+                    found.put(startId, new Segment(file, Long.parseLong(range[1])));
+                }
+            }
+        }
+        segments.put(month, found);
+        return found;
+    }
+    
+    private Path monthDir(YearMonth month) {
+        return Paths.get(archiveDir, month.toString());
+    }
+    
+    private static class Segment {
+        private final Path path;
+        private final long endId;
+        private volatile Map<String, long[]> index;
+        
+        Segment(Path path, long endId) {
+            this.path = path;
+            this.endId = endId;
+        }
+        
+        // account number -> {offset, length}, loaded from the segment's footer on first use
+        Map<String, long[]> index() throws IOException {
+            Map<String, long[]> loaded = index;
+            if (loaded != null) {
+                return loaded;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+                channel.read(footer, channel.size() - FOOTER_SIZE);
+                footer.flip();
+                long indexOffset = footer.getLong();
+                int count = footer.getInt();
+                if (footer.getInt() != MAGIC) {
+                    throw new IOException("Not a statement segment: " + path);
+                }
+                loaded = new HashMap<>(count * 2);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(indexOffset)), 1 << 16));
+                for (int i = 0; i < count; i++) {
+                    loaded.put(in.readUTF(), new long[] { in.readLong(), in.readInt() });
+                }
+            }
+            index = loaded;
+            return loaded;
+        }
+    }
+}
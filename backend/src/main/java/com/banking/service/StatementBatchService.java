@@ -0,0 +1,179 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.AccountStatus;
+import com.banking.model.Transaction;
+import com.banking.repository.AccountRepository;
+import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Month-end statements for every active account.
+ *
+ * The run is split into account id ranges by {@link JobCoordinator}. For each range the accounts
+ * (with their customers), the opening balances and all of the month's transactions are read in
+ * three queries, the last one a single scan ordered by account. The statements are then rendered
+ * in parallel on a dedicated fork-join pool and written to {@link StatementArchive} as one
+ * segment per range.
+ */
+@Service
+public class StatementBatchService {
+    
+    private static final Logger log = LoggerFactory.getLogger(StatementBatchService.class);
+    
+    public static final String STATEMENT_JOB = "monthly-statements";
+    
+    @Autowired
+    private AccountRepository accountRepository;
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Lazy
+    @Autowired
+    private PdfService pdfService;
+    
+    @Autowired
+    private StatementArchive statementArchive;
+    
+    @Autowired
+    private JobCoordinator jobCoordinator;
+    
+    @Value("${banking.statements.render-threads:0}")
+    private int renderThreads;
+    
+    private ForkJoinPool renderPool;
+    
+    @PostConstruct
+    public void init() {
+        renderPool = new ForkJoinPool(renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors());
+        jobCoordinator.registerJob(STATEMENT_JOB, this::renderRange);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+    
+    @Scheduled(cron = "0 0 2 1 * ?") // 02:00 on the first of the month, for the month just ended
+    public void generatePreviousMonth() {
+        runMonth(YearMonth.now().minusMonths(1));
+    }
+    
+    // Starts a run in the background and returns its key; repeating a finished month is a no-op
+    public String startMonth(YearMonth month) {
+        if (!month.isBefore(YearMonth.now())) {
+            throw new RuntimeException("Statements can only be generated for months that have ended");
+        }
+        Thread thread = new Thread(() -> runMonth(month), "statement-batch");
+        thread.setDaemon(true);
+        thread.start();
+        return runKey(month);
+    }
+    
+    public void runMonth(YearMonth month) {
+        Long minId = accountRepository.findMinId();
+        Long maxId = accountRepository.findMaxId();
+        if (minId == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        int shards = jobCoordinator.run(STATEMENT_JOB, runKey(month), minId, maxId);
+        log.info("Statement run for {} processed {} shard(s) on this instance in {} ms",
+            month, shards, (System.nanoTime() - started) / 1_000_000);
+    }
+    
+    public byte[] getArchivedStatement(Account account, YearMonth month) throws IOException {
+        return statementArchive.read(month, account.getId(), account.getAccountNumber());
+    }
+    
+    private static String runKey(YearMonth month) {
+        return STATEMENT_JOB + "-" + month;
+    }
+    
+    // Renders one range of accounts; runs inside the coordinator's shard transaction
+    private void renderRange(String runKey, long startId, long endId) {
+        YearMonth month = YearMonth.parse(runKey.substring(STATEMENT_JOB.length() + 1));
+        LocalDate startDate = month.atDay(1);
+        LocalDate endDate = month.atEndOfMonth();
+        LocalDateTime from = startDate.atStartOfDay();
+        LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+        
+        List<Account> accounts = accountRepository
+            .findWithCustomerByIdBetweenAndStatus(startId, endId, AccountStatus.ACTIVE);
+        if (accounts.isEmpty()) {
+            return;
+        }
+        Map<Long, BigDecimal> openingBalances = new HashMap<>();
+        for (Object[] row : transactionRepository.findBalancesBefore(startId, endId, from)) {
+            openingBalances.put(((Number) row[0]).longValue(), (BigDecimal) row[1]);
+        }
+        List<Transaction> transactions = transactionRepository
+            .findByAccountIdRangeAndPeriod(startId, endId, AccountStatus.ACTIVE, from, to);
+        
+        // Both lists are ordered by account id, so one merge walk splits the transactions
+        List<StatementInput> inputs = new ArrayList<>(accounts.size());
+        int next = 0;
+        for (Account account : accounts) {
+            while (next < transactions.size() && transactions.get(next).getAccount().getId() < account.getId()) {
+                next++; // account left ACTIVE between the two queries
+            }
+            int first = next;
+            while (next < transactions.size() && transactions.get(next).getAccount().getId().equals(account.getId())) {
+                next++;
+            }
+            List<Transaction> own = transactions.subList(first, next);
+            BigDecimal opening = openingBalances.getOrDefault(account.getId(), BigDecimal.ZERO);
+            BigDecimal closing = own.isEmpty() || own.get(own.size() - 1).getBalanceAfterTransaction() == null
+                ? opening : own.get(own.size() - 1).getBalanceAfterTransaction();
+            inputs.add(new StatementInput(account, own, opening, closing));
+        }
+        
+        List<byte[]> statements = renderPool.submit(() -> inputs.parallelStream()
+            .map(input -> pdfService.generateStatement(input.account, input.transactions,
+                startDate, endDate, input.openingBalance, input.closingBalance))
+            .collect(Collectors.toList())).join();
+        List<String> accountNumbers = accounts.stream().map(Account::getAccountNumber).collect(Collectors.toList());
+        try {
+            statementArchive.writeSegment(month, startId, endId, accountNumbers, statements);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write statements for accounts " + startId + "-" + endId, e);
+        }
+    }
+    
+    private static class StatementInput {
+        private final Account account;
+        private final List<Transaction> transactions;
+        private final BigDecimal openingBalance;
+        private final BigDecimal closingBalance;
+        
+        StatementInput(Account account, List<Transaction> transactions,
+                       BigDecimal openingBalance, BigDecimal closingBalance) {
+            this.account = account;
+            this.transactions = transactions;
+            this.openingBalance = openingBalance;
+            this.closingBalance = closingBalance;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.banking.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of (id, due time) entries. Not thread-safe; one thread owns it.
+ *
+ * Level 0 has wheelSize slots of tickMs each; every level above has slots as wide as the whole
+ * level below, so a few levels of 64 slots cover hours to years. Adding and expiring an entry
+ * is O(1) apart from the occasional move down a level when its slot on an upper level comes
+ * round. Entries are kept in primitive arrays per slot, so nothing is allocated per entry once
+ * the slots have grown. An entry expires once time has passed the end of the tick it falls in.
+ */
+public class TimingWheel {
+    
+    private static final int MAX_LEVELS = 8;
+    
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Slot[]> levels = new ArrayList<>();
+    private long now; // start of the current level-0 tick
+    private int size;
+    
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.now = startMs - Math.floorMod(startMs, tickMs);
+        levels.add(newLevel());
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public long currentTime() {
+        return now;
+    }
+    
+    // False if the entry is already due (before the current tick), in which case it is not added
+    public boolean add(long id, long dueMs) {
+        if (dueMs < now) {
+            return false;
+        }
+        long levelTick = tickMs;
+        for (int level = 0; level < MAX_LEVELS; level++) {
+            long span = levelTick * wheelSize;
+            long levelStart = now - Math.floorMod(now, levelTick);
+            if (dueMs < levelStart + span || level == MAX_LEVELS - 1) {
+                while (levels.size() <= level) {
+                    levels.add(newLevel());
+                }
+                int index = (int) Math.floorMod(dueMs / levelTick, (long) wheelSize);
+                levels.get(level)[index].add(id, dueMs);
+                size++;
+                return true;
+            }
+            levelTick = span;
+        }
+        throw new IllegalStateException("unreachable");
+    }
+    
+    /**
+     * Moves time forward to the given instant one tick at a time, passing the id of every entry
+     * whose tick has ended to the consumer, in due-tick order.
+     */
+    public void advanceTo(long timeMs, LongConsumer expired) {
+        while (now + tickMs <= timeMs) {
+            // Drain the tick that is ending first: its slot is reused for entries a full wheel ahead
+            Slot ended = levels.get(0)[(int) Math.floorMod(now / tickMs, (long) wheelSize)];
+            size -= ended.size;
+            for (int i = 0; i < ended.size; i++) {
+                expired.accept(ended.ids[i]);
+            }
+            ended.clear();
+            now += tickMs;
+            
+            // Upper-level slots whose range starts now move down, top level first
+            for (int level = levels.size() - 1; level >= 1; level--) {
+                long tick = levelTickOf(level);
+                if (now % tick == 0) {
+                    Slot slot = levels.get(level)[(int) Math.floorMod(now / tick, (long) wheelSize)];
+                    size -= slot.size;
+                    for (int i = 0; i < slot.size; i++) {
+                        if (!add(slot.ids[i], slot.dueAt[i])) {
+                            expired.accept(slot.ids[i]);
+                        }
+                    }
+                    slot.clear();
+                }
+            }
+        }
+    }
+    
+    private long levelTickOf(int level) {
+        long tick = tickMs;
+        for (int i = 0; i < level; i++) {
+            tick *= wheelSize;
+        }
+        return tick;
+    }
+    
+    private Slot[] newLevel() {
+        Slot[] slots = new Slot[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new Slot();
+        }
+        return slots;
+    }
+    
+    private static class Slot {
+        private long[] ids = new long[4];
+        private long[] dueAt = new long[4];
+        private int size;
+        
+        void add(long id, long due) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                dueAt = Arrays.copyOf(dueAt, size * 2);
+            }
+            ids[size] = id;
+            dueAt[size] = due;
+            size++;
+        }
+        
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.banking.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The k keys with the largest values seen, as a binary min-heap over parallel arrays. Not
+ * thread-safe; callers lock around it.
+ *
+ * Meant to be fed running estimates that only grow, such as a {@link CountMinSketch}'s: a key
+ * already held moves down the heap as its value rises, and a new key replaces the smallest
+ * once its value is larger. k is small, so keys are found by scanning the arrays rather than
+ * through a map, which keeps each heap to two arrays.
+ */
+public class TopKHeap {
+
+    private final String[] keys;
+    private final long[] values;
+    private int size;
+
+    public TopKHeap(int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Records the key's current value; returns whether the key is now held
+    public boolean offer(String key, long value) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                if (value > values[i]) {
+                    values[i] = value;
+                    siftDown(i);
+                }
+                return true;
+            }
+        }
+        if (size < keys.length) {
+            keys[size] = key;
+            values[size] = value;
+            siftUp(size++);
+            return true;
+        }
+        if (size == 0 || value <= values[0]) {
+            return false;
+        }
+        keys[0] = key;
+        values[0] = value;
+        siftDown(0);
+        return true;
+    }
+
+    // The held keys in no particular order
+    public List<String> keys() {
+        return new ArrayList<>(Arrays.asList(keys).subList(0, size));
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(keys[i]);
+            out.writeLong(values[i]);
+        }
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        clear();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            offer(in.readUTF(), in.readLong());
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (values[parent] <= values[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && values[left] < values[smallest]) {
+                smallest = left;
+            }
+            if (right < size && values[right] < values[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+}
@@ -0,0 +1,220 @@
+package com.banking.service;
+
+import com.banking.model.TransactionCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Assigns a category to a transaction from its counterparty and description.
+ *
+ * Rules live in transaction-categories.properties. A counterparty rule maps an account number
+ * straight to a category; keyword rules are compiled once into an Aho-Corasick automaton with a
+ * full transition table, so a description is scanned in a single pass with one array lookup per
+ * character and no allocation. Keywords are case-insensitive and must start at a word boundary;
+ * they must also end at one unless written with a trailing '*'. When several keywords match, the
+ * longest wins.
+ */
+@Component
+public class TransactionCategorizer {
+    
+    private static final Logger log = LoggerFactory.getLogger(TransactionCategorizer.class);
+    
+    private static final String RULES_RESOURCE = "transaction-categories.properties";
+    private static final String COUNTERPARTY_PREFIX = "counterparty.";
+    private static final TransactionCategory[] CATEGORIES = TransactionCategory.values();
+    
+    private final int[] charClass = new int[128]; // -1 for characters no keyword contains
+    private int alphabetSize;
+    private int[] transitions; // state * alphabetSize + charClass -> next state
+    private int[] statePattern; // keyword ending at this state, -1 if none
+    private int[] outputLink; // nearest state on the failure chain that ends a keyword, -1 if none
+    private int[] patternLength;
+    private byte[] patternCategory;
+    private boolean[] patternPrefix;
+    private Map<String, TransactionCategory> counterparties = new HashMap<>();
+    
+    @PostConstruct
+    public void loadRules() throws IOException {
+        Properties rules = new Properties();
+        try (InputStream in = new ClassPathResource(RULES_RESOURCE).getInputStream()) {
+            rules.load(in);
+        }
+        Map<String, TransactionCategory> counterpartyRules = new HashMap<>();
+        List<String> keywords = new ArrayList<>();
+        List<TransactionCategory> keywordCategories = new ArrayList<>();
+        for (String key : new TreeSet<>(rules.stringPropertyNames())) {
+            String value = rules.getProperty(key).trim();
+            if (key.startsWith(COUNTERPARTY_PREFIX)) {
+                counterpartyRules.put(key.substring(COUNTERPARTY_PREFIX.length()),
+                    TransactionCategory.valueOf(value.toUpperCase()));
+                continue;
+            }
+            TransactionCategory category = TransactionCategory.valueOf(key.toUpperCase());
+            for (String keyword : value.split(",")) {
+                String trimmed = keyword.trim().toLowerCase();
+                if (!trimmed.isEmpty()) {
+                    keywords.add(trimmed);
+                    keywordCategories.add(category);
+                }
+            }
+        }
+        compile(keywords, keywordCategories);
+        counterparties = counterpartyRules;
+        log.info("Loaded {} category keywords and {} counterparty rules", patternLength.length, counterparties.size());
+    }
+    
+    public TransactionCategory categorize(String description, String toAccountNumber) {
+        if (toAccountNumber != null) {
+            TransactionCategory category = counterparties.get(toAccountNumber);
+            if (category != null) {
+                return category;
+            }
+        }
+        if (description == null) {
+            return TransactionCategory.OTHER;
+        }
+        int length = description.length();
+        int state = 0;
+        int best = -1;
+        for (int i = 0; i < length; i++) {
+            char c = description.charAt(i);
+            int cls = c < 128 ? charClass[c] : -1;
+            if (cls < 0) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state * alphabetSize + cls];
+            for (int s = statePattern[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                int pattern = statePattern[s];
+                int start = i - patternLength[pattern] + 1;
+                if ((start == 0 || !Character.isLetterOrDigit(description.charAt(start - 1)))
+                        && (patternPrefix[pattern] || i + 1 == length
+                            || !Character.isLetterOrDigit(description.charAt(i + 1)))
+                        && (best < 0 || patternLength[pattern] > patternLength[best])) {
+                    best = pattern;
+                }
+            }
+        }
+        return best >= 0 ? CATEGORIES[patternCategory[best]] : TransactionCategory.OTHER;
+    }
+    
+    private void compile(List<String> keywords, List<TransactionCategory> categories) {
+        Arrays.fill(charClass, -1);
+        int classes = 0;
+        for (String keyword : keywords) {
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= 128) {
+                    throw new IllegalStateException("Category keywords must be ASCII: " + keyword);
+                }
+                if (c != '*' && charClass[c] < 0) {
+                    charClass[c] = classes++;
+                }
+            }
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            charClass[c] = charClass[Character.toLowerCase(c)];
+        }
+        alphabetSize = Math.max(classes, 1);
+        
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(newRow());
+        terminal.add(-1);
+        List<Integer> lengths = new ArrayList<>();
+        List<Byte> patternCategories = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            boolean prefix = keyword.endsWith("*");
+            String text = prefix ? keyword.substring(0, keyword.length() - 1) : keyword;
+            if (text.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                int cls = charClass[text.charAt(i)];
+                if (trie.get(state)[cls] < 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(newRow());
+                    terminal.add(-1);
+                }
+                state = trie.get(state)[cls];
+            }
+            if (terminal.get(state) >= 0) {
+                log.warn("Duplicate category keyword '{}' ignored", keyword);
+                continue;
+            }
+            terminal.set(state, lengths.size());
+            lengths.add(text.length());
+            patternCategories.add((byte) categories.get(k).ordinal());
+            prefixes.add(prefix);
+        }
+        
+        // Failure links, folded into a complete transition table breadth first
+        int states = trie.size();
+        int[] delta = new int[states * alphabetSize];
+        int[] fail = new int[states];
+        int[] output = new int[states];
+        int[] pattern = new int[states];
+        for (int s = 0; s < states; s++) {
+            pattern[s] = terminal.get(s);
+        }
+        Arrays.fill(output, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            int[] row = trie.get(s);
+            for (int c = 0; c < alphabetSize; c++) {
+                int t = row[c];
+                if (t >= 0) {
+                    int f = s == 0 ? 0 : delta[fail[s] * alphabetSize + c];
+                    fail[t] = f;
+                    output[t] = pattern[f] >= 0 ? f : output[f];
+                    delta[s * alphabetSize + c] = t;
+                    queue.add(t);
+                } else {
+                    delta[s * alphabetSize + c] = s == 0 ? 0 : delta[fail[s] * alphabetSize + c];
+                }
+            }
+        }
+        
+        int count = lengths.size();
+        int[] lengthArray = new int[count];
+        byte[] categoryArray = new byte[count];
+        boolean[] prefixArray = new boolean[count];
+        for (int p = 0; p < count; p++) {
+            lengthArray[p] = lengths.get(p);
+            categoryArray[p] = patternCategories.get(p);
+            prefixArray[p] = prefixes.get(p);
+        }
+        transitions = delta;
+        statePattern = pattern;
+        outputLink = output;
+        patternLength = lengthArray;
+        patternCategory = categoryArray;
+        patternPrefix = prefixArray;
+    }
+    
+    private int[] newRow() {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,91 @@
+package com.banking.service;
+
+import com.banking.dto.TransactionSearchCriteria;
+import com.banking.model.Account;
+import com.banking.model.Transaction;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches an account's history by description and counterparty account number.
+ *
+ * Text matching runs against GIN trigram indexes (see SearchIndexInitializer): a query matches
+ * descriptions containing a word that starts with it, counterparties starting with it, and
+ * with fuzzy on, descriptions containing a word similar to it (pg_trgm word similarity). Results
+ * come newest first and page by keyset on (transaction_date, id), so deep pages cost the same
+ * as the first one.
+ */
+@Service
+public class TransactionSearchService {
+    
+    public static final int MAX_PAGE_SIZE = 100;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<Transaction> search(Account account, TransactionSearchCriteria criteria) {
+        StringBuilder sql = new StringBuilder("SELECT t.* FROM transactions t WHERE t.account_id = :accountId");
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("accountId", account.getId());
+        
+        String text = criteria.getQuery() != null ? criteria.getQuery().trim() : "";
+        if (!text.isEmpty()) {
+            sql.append(" AND (t.description ~* :wordPrefix OR t.to_account_number ILIKE :accountPrefix");
+            params.put("wordPrefix", "\\m" + escapeRegex(text));
+            params.put("accountPrefix", escapeLike(text) + "%");
+            if (criteria.isFuzzy()) {
+                sql.append(" OR :text <% t.description");
+                params.put("text", text);
+            }
+            sql.append(")");
+        }
+        if (criteria.getMinAmount() != null) {
+            sql.append(" AND t.amount >= :minAmount");
+            params.put("minAmount", criteria.getMinAmount());
+        }
+        if (criteria.getMaxAmount() != null) {
+            sql.append(" AND t.amount <= :maxAmount");
+            params.put("maxAmount", criteria.getMaxAmount());
+        }
+        if (criteria.getType() != null && !criteria.getType().isEmpty()) {
+            sql.append(" AND t.type = :type");
+            params.put("type", criteria.getType().toUpperCase());
+        }
+        if (criteria.getStartDate() != null) {
+            sql.append(" AND t.transaction_date >= :startDate");
+            params.put("startDate", criteria.getStartDate().atStartOfDay());
+        }
+        if (criteria.getEndDate() != null) {
+            sql.append(" AND t.transaction_date < :endDate");
+            params.put("endDate", criteria.getEndDate().plusDays(1).atStartOfDay());
+        }
+        if (criteria.getBeforeDate() != null && criteria.getBeforeId() != null) {
+            sql.append(" AND (t.transaction_date, t.id) < (:beforeDate, :beforeId)");
+            params.put("beforeDate", criteria.getBeforeDate());
+            params.put("beforeId", criteria.getBeforeId());
+        }
+        sql.append(" ORDER BY t.transaction_date DESC, t.id DESC LIMIT :limit");
+        params.put("limit", Math.max(1, Math.min(criteria.getLimit(), MAX_PAGE_SIZE)));
+        
+        Query query = entityManager.createNativeQuery(sql.toString(), Transaction.class);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+    
+    private static String escapeRegex(String text) {
+        return text.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+    
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,23 +1,70 @@
 package com.banking.service;
 
 import com.banking.model.Account;
+import com.banking.model.AccountEvent;
+import com.banking.model.JobShardStatus;
 import com.banking.model.Transaction;
 import com.banking.model.TransactionCategory;
 import com.banking.dto.TransactionDTO;
+import com.banking.repository.AccountEventRepository;
+import com.banking.repository.JobShardRepository;
 import com.banking.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class TransactionService {
     
+    private static final Logger log = LoggerFactory.getLogger(TransactionService.class);
+    
     @Autowired
     private TransactionRepository transactionRepository;
     
+    @Autowired
+    private AccountEventRepository accountEventRepository;
+    
+    @Autowired
+    private TransactionCategorizer transactionCategorizer;
+    
+    @Autowired
+    private JobCoordinator jobCoordinator;
+    
+    @Autowired
+    private RecentTransactionCache recentTransactionCache;
+    
+    @Autowired
+    private AuditJournal auditJournal;
+    
+    @Autowired
+    private PayeeAnalyticsService payeeAnalyticsService;
+    
+    @Autowired
+    private IdAllocator idAllocator;
+    
+    @Autowired
+    private JobShardRepository jobShardRepository;
+    
+    public static final String CATEGORY_BACKFILL_JOB = "category-backfill";
+    private static final long CATEGORY_VERSION_TTL_MS = 1000;
+    
+    private volatile long categoryVersion;
+    private volatile long categoryVersionReadAt = Long.MIN_VALUE / 2;
+    
+    @PostConstruct
+    public void registerJobs() {
+        jobCoordinator.registerJob(CATEGORY_BACKFILL_JOB, this::categorizeRange);
+    }
+    
     public Transaction createTransaction(Account account, TransactionDTO transactionDTO, 
                                          BigDecimal balanceAfterTransaction) {
         Transaction transaction = new Transaction();
@@ -25,14 +72,84 @@ public class TransactionService {
         transaction.setAmount(transactionDTO.getAmount());
         transaction.setDescription(transactionDTO.getDescription());
         transaction.setType(transactionDTO.getType());
-        transaction.setCategory(transactionDTO.getCategory() != null ? 
-            transactionDTO.getCategory() : TransactionCategory.OTHER);
+        transaction.setCategory(transactionDTO.getCategory() != null
+                && transactionDTO.getCategory() != TransactionCategory.OTHER
+            ? transactionDTO.getCategory()
+            : transactionCategorizer.categorize(transactionDTO.getDescription(), transactionDTO.getToAccountNumber()));
         transaction.setToAccountNumber(transactionDTO.getToAccountNumber());
         transaction.setBalanceAfterTransaction(balanceAfterTransaction);
         transaction.setTransactionDate(LocalDateTime.now());
-        transaction.setTransactionId("TXN" + System.currentTimeMillis());
+        transaction.setTransactionId(idAllocator.nextTransactionId());
+        
+        Transaction saved = transactionRepository.save(transaction);
+        
+        // Outbox entry for live clients, committed or rolled back together with the transaction
+        accountEventRepository.save(new AccountEvent(null,
+            account.getCustomer() != null ? account.getCustomer().getId() : null,
+            account.getAccountNumber(), saved.getType(), saved.getTransactionId(),
+            saved.getAmount(), saved.getBalanceAfterTransaction(), saved.getTransactionDate()));
+        
+        recentTransactionCache.recordAfterCommit(account.getAccountNumber(), saved);
+        auditJournal.appendAfterCommit(saved.getType(), saved.getId(), account.getAccountNumber(),
+            saved.getToAccountNumber(), saved.getAmount(), saved.getBalanceAfterTransaction());
+        payeeAnalyticsService.recordAfterCommit(account, saved);
         
-        return transactionRepository.save(transaction);
+        return saved;
+    }
+    
+    /**
+     * Starts categorizing existing transactions that are still uncategorized or OTHER, in id
+     * ranges spread over the job workers of every instance. Returns the run key; the run carries
+     * on in the background and is resumed by the coordinator if this instance stops.
+     */
+    public String startCategoryBackfill() {
+        Long minId = transactionRepository.findMinId();
+        Long maxId = transactionRepository.findMaxId();
+        if (minId == null) {
+            throw new RuntimeException("No transactions to categorize");
+        }
+        String runKey = CATEGORY_BACKFILL_JOB + "-" + System.currentTimeMillis();
+        Thread thread = new Thread(() -> {
+            int shards = jobCoordinator.run(CATEGORY_BACKFILL_JOB, runKey, minId, maxId);
+            log.info("Category backfill {} finished {} shard(s) on this instance", runKey, shards);
+            recentTransactionCache.clear(); // cached copies still carry the old categories
+        }, "category-backfill");
+        thread.setDaemon(true);
+        thread.start();
+        return runKey;
+    }
+    
+    // Categorizes one id range; runs inside the coordinator's shard transaction
+    private void categorizeRange(String runKey, long startId, long endId) {
+        Map<TransactionCategory, List<Long>> updates = new EnumMap<>(TransactionCategory.class);
+        for (Object[] row : transactionRepository.findUncategorizedBetween(startId, endId, TransactionCategory.OTHER)) {
+            TransactionCategory category = transactionCategorizer.categorize((String) row[1], (String) row[2]);
+            if (category != TransactionCategory.OTHER) {
+                updates.computeIfAbsent(category, c -> new ArrayList<>()).add((Long) row[0]);
+            }
+        }
+        updates.forEach(transactionRepository::updateCategory);
+    }
+    
+    /**
+     * Changes whenever a shard of a category backfill commits, on any instance. Transactions are
+     * otherwise append-only, so validators for anything that shows categories combine this with
+     * the latest transaction id. Read from the database at most once a second.
+     */
+    public long getCategoryVersion() {
+        long now = System.currentTimeMillis();
+        if (now - categoryVersionReadAt >= CATEGORY_VERSION_TTL_MS) {
+            categoryVersion = jobShardRepository.countByJobNameAndStatus(CATEGORY_BACKFILL_JOB, JobShardStatus.DONE);
+            categoryVersionReadAt = now;
+        }
+        return categoryVersion;
+    }
+    
+    // Highest transaction id for the account, or 0 when it has none; transactions are append-only
+    // so this changes whenever the account's history does
+    public long getLatestTransactionId(String accountNumber) {
+        Long latestId = transactionRepository.findLatestIdByAccountNumber(accountNumber);
+        return latestId != null ? latestId : 0L;
     }
     
     public List<Transaction> getAccountTransactions(Account account) {
@@ -0,0 +1,411 @@
+package com.banking.service;
+
+import com.banking.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory velocity rules for debits, checked without touching the database.
+ *
+ * Each account keeps ring buffers of its recent debits and first-time payees plus a bounded set
+ * of known payees, all guarded by the account's own lock, so checks on different accounts never
+ * contend. A debit that passes is recorded straight away and released again if its transaction
+ * rolls back, so concurrent debits on one account cannot both slip under a limit. State is
+ * rebuilt from recent transactions in the background once the application is ready, and
+ * covers debits made through this instance.
+ *
+ * Each account remembers when it last paid each of up to known-payees payees, preloaded from
+ * the last payee-history-days of transfers by the rebuild, and a transfer to a payee not in
+ * memory counts as a new payee. A sweep drops payees last paid before the history window and
+ * accounts with neither a debit inside the longest rule window nor a payee left, which bounds
+ * memory by recent activity rather than by every account ever debited.
+ *
+ * Rules (banking.velocity.*): at most max-debits debits and max-total in total per rolling
+ * window; no transfer above new-payee-threshold to a payee not paid in payee-history-days; and
+ * at most max-new-payees first-time payees per new-payee window.
+ */
+@Service
+public class VelocityCheckService {
+    
+    private static final Logger log = LoggerFactory.getLogger(VelocityCheckService.class);
+    
+    @Autowired
+    private TransactionRepository transactionRepository;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${banking.velocity.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${banking.velocity.window-minutes:60}")
+    private long windowMinutes;
+    
+    @Value("${banking.velocity.max-debits:20}")
+    private int maxDebits;
+    
+    @Value("${banking.velocity.max-total:50000}")
+    private BigDecimal maxTotal;
+    
+    @Value("${banking.velocity.new-payee-threshold:10000}")
+    private BigDecimal newPayeeThreshold;
+    
+    @Value("${banking.velocity.new-payee-window-minutes:60}")
+    private long newPayeeWindowMinutes;
+    
+    @Value("${banking.velocity.max-new-payees:5}")
+    private int maxNewPayees;
+    
+    @Value("${banking.velocity.payee-history-days:180}")
+    private int payeeHistoryDays;
+    
+    @Value("${banking.velocity.known-payees:256}")
+    private int knownPayeeLimit;
+    
+    private final Map<String, AccountWindow> windows = new ConcurrentHashMap<>();
+    private long windowMillis;
+    private long newPayeeWindowMillis;
+    private long maxTotalCents;
+    private long newPayeeThresholdCents;
+    private long longestWindowMillis;
+    private long payeeHistoryMillis;
+    private Timer checkTimer;
+    
+    @PostConstruct
+    public void init() {
+        windowMillis = windowMinutes * 60_000L;
+        newPayeeWindowMillis = newPayeeWindowMinutes * 60_000L;
+        maxTotalCents = toCents(maxTotal);
+        newPayeeThresholdCents = toCents(newPayeeThreshold);
+        longestWindowMillis = Math.max(windowMillis, newPayeeWindowMillis);
+        payeeHistoryMillis = payeeHistoryDays * 86_400_000L;
+        // What the rules add to each debit; the load test reads its p99
+        checkTimer = Timer.builder("banking.velocity.check")
+            .description("Time to check and record one debit, declined ones included")
+            .publishPercentiles(0.5, 0.99, 0.999)
+            .percentilePrecision(2)
+            .register(meterRegistry);
+    }
+    
+    // Off the startup path; debits checked before it finishes only see what this instance recorded
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "velocity-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Checks a debit against the rules and records it if it passes; throws if it does not.
+     * toAccountNumber is null for withdrawals. Must be called inside the debit's transaction.
+     */
+    public void checkAndRecord(String accountNumber, String toAccountNumber, BigDecimal amount) {
+        checkAndRecord(accountNumber, toAccountNumber, amount, false);
+    }
+    
+    /**
+     * As above; payeeApproved means the customer approved the payee in advance, as for a
+     * standing order, so the new-payee rules don't apply. The debit still counts towards the
+     * window limits, and the payee is remembered.
+     */
+    public void checkAndRecord(String accountNumber, String toAccountNumber, BigDecimal amount, boolean payeeApproved) {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            recordDebit(accountNumber, toAccountNumber, amount, payeeApproved);
+        } finally {
+            checkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    private void recordDebit(String accountNumber, String toAccountNumber, BigDecimal amount, boolean payeeApproved) {
+        long cents = toCents(amount);
+        long now = System.currentTimeMillis();
+        AccountWindow window;
+        long sequence;
+        boolean newPayee;
+        while (true) {
+            window = windows.computeIfAbsent(accountNumber, key -> new AccountWindow(maxDebits, maxNewPayees));
+            synchronized (window) {
+                if (window.retired) {
+                    continue; // swept between the lookup and the lock; the next lookup makes a fresh one
+                }
+                newPayee = toAccountNumber != null && !payeeApproved && !window.paidWithin(toAccountNumber, now, payeeHistoryMillis);
+                check(window, now, cents, newPayee);
+                sequence = window.record(now, cents, toAccountNumber, newPayee, knownPayeeLimit);
+                break;
+            }
+        }
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            AccountWindow recorded = window;
+            long recordedSequence = sequence;
+            boolean recordedNewPayee = newPayee;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        synchronized (recorded) {
+                            recorded.release(recordedSequence, recordedNewPayee ? toAccountNumber : null);
+                        }
+                    }
+                }
+            });
+        }
+    }
+    
+    // Throws for a recurring debit that no window could ever admit, so it would be declined every time
+    public void checkRecurringAmount(BigDecimal amount) {
+        if (enabled && toCents(amount) > maxTotalCents) {
+            throw new RuntimeException("Amount exceeds the limit of R" + maxTotal + " in debits per "
+                + windowMinutes + " minutes");
+        }
+    }
+    
+    // Throws if the debit breaks a rule; the caller holds the window's monitor
+    private void check(AccountWindow window, long now, long cents, boolean newPayee) {
+        long recentTotal = 0;
+        int recentCount = 0;
+        for (int i = 0; i < window.debitTimes.length; i++) {
+            if (now - window.debitTimes[i] < windowMillis) {
+                recentCount++;
+                recentTotal += window.debitCents[i];
+            }
+        }
+        if (recentCount >= maxDebits) {
+            throw new RuntimeException("Transaction declined: more than " + maxDebits
+                + " debits in " + windowMinutes + " minutes");
+        }
+        if (recentTotal + cents > maxTotalCents) {
+            throw new RuntimeException("Transaction declined: debits would exceed R" + maxTotal
+                + " in " + windowMinutes + " minutes");
+        }
+        if (newPayee) {
+            if (cents > newPayeeThresholdCents) {
+                throw new RuntimeException("Transaction declined: first transfer to a new recipient above R"
+                    + newPayeeThreshold);
+            }
+            int recentNewPayees = 0;
+            for (long time : window.newPayeeTimes) {
+                if (now - time < newPayeeWindowMillis) {
+                    recentNewPayees++;
+                }
+            }
+            if (recentNewPayees >= maxNewPayees) {
+                throw new RuntimeException("Transaction declined: too many new recipients in "
+                    + newPayeeWindowMinutes + " minutes");
+            }
+        }
+    }
+    
+    // Drops payees past the history window, then accounts with nothing left that a rule could use
+    @Scheduled(fixedDelayString = "${banking.velocity.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        for (Map.Entry<String, AccountWindow> entry : windows.entrySet()) {
+            AccountWindow window = entry.getValue();
+            synchronized (window) {
+                window.knownPayees.values().removeIf(paidAt -> now - paidAt >= payeeHistoryMillis);
+                if (now - window.lastActivity >= longestWindowMillis && window.knownPayees.isEmpty()) {
+                    window.retired = true;
+                    windows.remove(entry.getKey(), window);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle velocity windows, {} held", evicted, windows.size());
+        }
+    }
+    
+    /**
+     * Replays the last window of debits and the payees paid within the history window so limits
+     * survive a restart. Debits checked while it runs are recorded as usual, and some of them
+     * are in the database by the time it reads, so each account's debits from before the start
+     * are collected off to the side and then swapped in for the ones recorded here before the
+     * start. Debits recorded since are kept, and none is counted twice; a payee keeps the later
+     * of its two payment times.
+     */
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        // Oldest first, so each account keeps its most recent payees when it has more than the limit
+        List<Object[]> payees = transactionRepository.findPayeesSince(LocalDateTime.now().minusDays(payeeHistoryDays));
+        for (Object[] row : payees) {
+            long paidAt = toEpochMillis((LocalDateTime) row[2]);
+            while (true) {
+                AccountWindow window = windows.computeIfAbsent((String) row[0], key -> new AccountWindow(maxDebits, maxNewPayees));
+                synchronized (window) {
+                    if (!window.retired) {
+                        window.rememberPayee((String) row[1], paidAt, knownPayeeLimit);
+                        break;
+                    }
+                }
+            }
+        }
+        
+        LocalDateTime debitSince = LocalDateTime.now().minusMinutes(windowMinutes);
+        List<Object[]> debits = transactionRepository.findDebitsSince(debitSince);
+        Map<String, List<long[]>> byAccount = new HashMap<>();
+        for (Object[] row : debits) {
+            long time = toEpochMillis((LocalDateTime) row[1]);
+            if (time < started && started - time < windowMillis) {
+                byAccount.computeIfAbsent((String) row[0], key -> new ArrayList<>())
+                    .add(new long[] { time, toCents((BigDecimal) row[2]) });
+            }
+        }
+        for (Map.Entry<String, List<long[]>> entry : byAccount.entrySet()) {
+            while (true) {
+                AccountWindow window = windows.computeIfAbsent(entry.getKey(), key -> new AccountWindow(maxDebits, maxNewPayees));
+                synchronized (window) {
+                    if (!window.retired) {
+                        window.replaceBefore(started, entry.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+        log.info("Velocity state rebuilt for {} accounts from {} recent debits and {} payees in {} ms",
+            byAccount.size(), debits.size(), payees.size(), System.currentTimeMillis() - started);
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+    
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    // Per-account state; every access holds the instance's monitor
+    private static class AccountWindow {
+        private final long[] debitTimes;
+        private final long[] debitCents;
+        private final long[] debitSequences; // of the debit in each slot, -1 when empty or rebuilt
+        private final long[] newPayeeTimes;
+        private final long[] newPayeeSequences; // of the debit that first paid the payee in each slot, -1 when empty
+        private final LinkedHashMap<String, Long> knownPayees = new LinkedHashMap<>(16, 0.75f, true); // payee -> last paid at
+        private long debitSequence; // total debits recorded here
+        private int newPayeeHead;
+        private long lastActivity = Long.MIN_VALUE / 2; // time of the latest debit recorded
+        private boolean retired; // swept out of the map; a new window replaces it
+        
+        AccountWindow(int debitSlots, int newPayeeSlots) {
+            debitTimes = new long[Math.max(debitSlots, 1)];
+            debitCents = new long[debitTimes.length];
+            debitSequences = new long[debitTimes.length];
+            newPayeeTimes = new long[Math.max(newPayeeSlots, 1)];
+            newPayeeSequences = new long[newPayeeTimes.length];
+            Arrays.fill(debitTimes, Long.MIN_VALUE / 2);
+            Arrays.fill(debitSequences, -1);
+            Arrays.fill(newPayeeTimes, Long.MIN_VALUE / 2);
+            Arrays.fill(newPayeeSequences, -1);
+        }
+        
+        boolean paidWithin(String payee, long now, long historyMillis) {
+            Long paidAt = knownPayees.get(payee);
+            return paidAt != null && now - paidAt < historyMillis;
+        }
+        
+        long record(long time, long cents, String payee, boolean newPayee, int payeeLimit) {
+            long sequence = debitSequence++;
+            put(oldestSlot(), time, cents, sequence);
+            if (payee != null) {
+                rememberPayee(payee, time, payeeLimit);
+            }
+            if (newPayee) {
+                newPayeeTimes[newPayeeHead] = time;
+                newPayeeSequences[newPayeeHead] = sequence;
+                newPayeeHead = (newPayeeHead + 1) % newPayeeTimes.length;
+            }
+            return sequence;
+        }
+        
+        // Undoes a debit whose transaction rolled back, and the new payee it counted, unless pushed out since
+        void release(long sequence, String newPayee) {
+            for (int slot = 0; slot < debitTimes.length; slot++) {
+                if (debitSequences[slot] == sequence) {
+                    put(slot, Long.MIN_VALUE / 2, 0, -1);
+                }
+            }
+            if (newPayee != null) {
+                for (int slot = 0; slot < newPayeeTimes.length; slot++) {
+                    if (newPayeeSequences[slot] == sequence) {
+                        newPayeeTimes[slot] = Long.MIN_VALUE / 2;
+                        newPayeeSequences[slot] = -1;
+                    }
+                }
+                knownPayees.remove(newPayee);
+            }
+        }
+        
+        // Swaps the rebuilt debits from before the cutoff in for the ones recorded before it
+        void replaceBefore(long cutoff, List<long[]> rebuilt) {
+            for (int slot = 0; slot < debitTimes.length; slot++) {
+                if (debitTimes[slot] < cutoff) {
+                    put(slot, Long.MIN_VALUE / 2, 0, -1);
+                }
+            }
+            for (long[] debit : rebuilt) {
+                int slot = oldestSlot();
+                if (debitTimes[slot] < debit[0]) {
+                    put(slot, debit[0], debit[1], -1);
+                }
+            }
+        }
+        
+        private int oldestSlot() {
+            int oldest = 0;
+            for (int slot = 1; slot < debitTimes.length; slot++) {
+                if (debitTimes[slot] < debitTimes[oldest]) {
+                    oldest = slot;
+                }
+            }
+            return oldest;
+        }
+        
+        private void put(int slot, long time, long cents, long sequence) {
+            debitTimes[slot] = time;
+            debitCents[slot] = cents;
+            debitSequences[slot] = sequence;
+            lastActivity = Math.max(lastActivity, time);
+        }
+        
+        void rememberPayee(String payee, long paidAt, int limit) {
+            Long known = knownPayees.get(payee);
+            knownPayees.put(payee, known != null ? Math.max(known, paidAt) : paidAt);
+            if (knownPayees.size() > limit) {
+                knownPayees.remove(knownPayees.keySet().iterator().next());
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+-- Schema for PostgreSQL. Every statement is idempotent, so this runs against new and existing
+-- databases alike: the prod profile applies it at startup before JPA starts (spring.sql.init),
+-- and database/init.sql includes it for manual setup.
+
+-- Create customers table
+CREATE TABLE IF NOT EXISTS customers (
+    id BIGSERIAL PRIMARY KEY,
+    email VARCHAR(255) UNIQUE NOT NULL,
+    full_name VARCHAR(255) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    customer_id VARCHAR(50) UNIQUE NOT NULL,
+    phone_number VARCHAR(20),
+    address TEXT,
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+-- Create accounts table
+CREATE TABLE IF NOT EXISTS accounts (
+    id BIGSERIAL PRIMARY KEY,
+    account_number VARCHAR(50) UNIQUE NOT NULL,
+    account_type VARCHAR(20) NOT NULL,
+    status VARCHAR(20) DEFAULT 'ACTIVE',
+    balance DECIMAL(15,2) DEFAULT 0.00,
+    pin_hash VARCHAR(255),
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    balance_shards INTEGER,
+    accrued_interest DECIMAL(19,10) DEFAULT 0,
+    accrual_date DATE,
+    customer_id BIGINT REFERENCES customers(id)
+);
+
+-- Create balance shards for hot accounts
+CREATE TABLE IF NOT EXISTS account_balance_shards (
+    id BIGSERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id),
+    shard_index INTEGER NOT NULL,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0.00,
+    UNIQUE (account_id, shard_index)
+);
+
+-- Create transactions table
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGSERIAL PRIMARY KEY,
+    transaction_id VARCHAR(100) UNIQUE NOT NULL,
+    description TEXT,
+    amount DECIMAL(15,2),
+    category VARCHAR(50),
+    type VARCHAR(50),
+    transaction_date TIMESTAMP,
+    to_account_number VARCHAR(50),
+    balance_after_transaction DECIMAL(15,2),
+    account_id BIGINT REFERENCES accounts(id)
+);
+
+-- Create account event outbox
+CREATE TABLE IF NOT EXISTS account_events (
+    id BIGSERIAL PRIMARY KEY,
+    customer_id BIGINT,
+    account_number VARCHAR(50),
+    event_type VARCHAR(50),
+    transaction_id VARCHAR(100),
+    amount DECIMAL(15,2),
+    balance_after_transaction DECIMAL(15,2),
+    created_at TIMESTAMP
+);
+
+-- Create scheduled job coordination tables
+CREATE TABLE IF NOT EXISTS job_runs (
+    run_key VARCHAR(100) PRIMARY KEY,
+    job_name VARCHAR(100) NOT NULL,
+    owner VARCHAR(255),
+    shard_count INTEGER NOT NULL,
+    created_at TIMESTAMP,
+    completed_at TIMESTAMP,
+    failed_shards INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS job_shards (
+    id BIGSERIAL PRIMARY KEY,
+    run_key VARCHAR(100) NOT NULL REFERENCES job_runs(run_key),
+    shard_index INTEGER NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    owner VARCHAR(255),
+    completed_at TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    last_attempt_at TIMESTAMP,
+    UNIQUE (run_key, shard_index)
+);
+
+-- Create standing orders table
+CREATE TABLE IF NOT EXISTS standing_orders (
+    id BIGSERIAL PRIMARY KEY,
+    from_account_number VARCHAR(50) NOT NULL,
+    to_account_number VARCHAR(50) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    description VARCHAR(255),
+    frequency VARCHAR(20),
+    status VARCHAR(20),
+    first_run_at TIMESTAMP,
+    end_at TIMESTAMP,
+    occurrence_count BIGINT NOT NULL DEFAULT 0,
+    next_run_at TIMESTAMP,
+    failed_attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    last_run_at TIMESTAMP,
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+-- Create ledger reconciliation tables
+CREATE TABLE IF NOT EXISTS reconciliation_watermarks (
+    account_id BIGINT PRIMARY KEY REFERENCES accounts(id),
+    last_transaction_id BIGINT,
+    verified_balance DECIMAL(15,2),
+    verified_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS reconciliation_mismatches (
+    id BIGSERIAL PRIMARY KEY,
+    run_key VARCHAR(100) NOT NULL,
+    account_id BIGINT,
+    account_number VARCHAR(50),
+    mismatch_type VARCHAR(20),
+    transaction_id BIGINT,
+    expected DECIMAL(15,2),
+    actual DECIMAL(15,2),
+    detected_at TIMESTAMP
+);
+
+-- Create ledger engine transfer tickets table
+CREATE TABLE IF NOT EXISTS ledger_transfers (
+    id VARCHAR(36) PRIMARY KEY,
+    from_account_number VARCHAR(50) NOT NULL,
+    to_account_number VARCHAR(50) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    description VARCHAR(255),
+    status VARCHAR(20),
+    error VARCHAR(255),
+    from_transaction_id VARCHAR(100),
+    to_transaction_id VARCHAR(100),
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+-- Create identifier block leases table (see IdAllocator)
+CREATE TABLE IF NOT EXISTS id_blocks (
+    name VARCHAR(50) PRIMARY KEY,
+    next_value BIGINT NOT NULL,
+    updated_at TIMESTAMP
+);
+
+-- Create streaming analytics snapshots table (see PayeeAnalyticsService)
+CREATE TABLE IF NOT EXISTS sketch_snapshots (
+    name VARCHAR(50) PRIMARY KEY,
+    last_transaction_id BIGINT,
+    payload BYTEA,
+    created_at TIMESTAMP
+);
+
+-- Columns added since the tables above were first created; CREATE TABLE IF NOT EXISTS leaves
+-- existing tables as they are, so databases created earlier get them here
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS balance_shards INTEGER;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS accrued_interest DECIMAL(19,10) DEFAULT 0;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS accrual_date DATE;
+ALTER TABLE job_runs ADD COLUMN IF NOT EXISTS failed_shards INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE job_shards ADD COLUMN IF NOT EXISTS attempts INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE job_shards ADD COLUMN IF NOT EXISTS last_error VARCHAR(1000);
+ALTER TABLE job_shards ADD COLUMN IF NOT EXISTS last_attempt_at TIMESTAMP;
+
+-- Trigram matching for transaction search
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- Create indexes for performance
+CREATE INDEX IF NOT EXISTS idx_customers_email ON customers(email);
+CREATE INDEX IF NOT EXISTS idx_customers_customer_id ON customers(customer_id);
+CREATE INDEX IF NOT EXISTS idx_accounts_account_number ON accounts(account_number);
+CREATE INDEX IF NOT EXISTS idx_accounts_customer_id ON accounts(customer_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_id ON transactions(account_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(transaction_date);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_id_id ON transactions(account_id, id);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_date_id ON transactions(account_id, transaction_date DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_description_trgm ON transactions USING gin (account_id, description gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_transactions_account_to_account_trgm ON transactions USING gin (account_id, to_account_number gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_account_events_customer ON account_events(customer_id, id);
+CREATE INDEX IF NOT EXISTS idx_account_events_created_at ON account_events(created_at);
+CREATE INDEX IF NOT EXISTS idx_job_shards_pending ON job_shards(run_key, shard_index) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_standing_orders_due ON standing_orders(next_run_at) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_standing_orders_from_account ON standing_orders(from_account_number);
+CREATE INDEX IF NOT EXISTS idx_reconciliation_mismatches_run ON reconciliation_mismatches(run_key, id);
+CREATE INDEX IF NOT EXISTS idx_ledger_transfers_debited ON ledger_transfers(updated_at) WHERE status = 'DEBITED';
+CREATE INDEX IF NOT EXISTS idx_ledger_transfers_accepted ON ledger_transfers(updated_at) WHERE status = 'ACCEPTED';
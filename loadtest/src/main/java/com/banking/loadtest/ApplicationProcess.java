@@ -0,0 +1,101 @@
+package com.banking.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the packaged backend in a child JVM with the {@code loadtest} Spring profile, which swaps
+ * PostgreSQL for an in-memory H2 database so the whole test runs offline on one machine.
+ */
+public class ApplicationProcess implements AutoCloseable {
+    
+    private final Process process;
+    private final String baseUrl;
+    
+    private ApplicationProcess(Process process, String baseUrl) {
+        this.process = process;
+        this.baseUrl = baseUrl;
+    }
+    
+    public static ApplicationProcess start(LoadTestConfig config, Path logFile) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(config.getJar())) {
+            throw new IllegalStateException("Application jar not found at " + config.getJar().toAbsolutePath()
+                + "; build it with: cd backend && ./mvnw -Ploadtest package -DskipTests");
+        }
+        int port = freePort();
+        
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (!config.getJvmArgs().isEmpty()) {
+            command.addAll(Arrays.asList(config.getJvmArgs().trim().split("\\s+")));
+        }
+        command.add("-jar");
+        command.add(config.getJar().toAbsolutePath().toString());
+        command.add("--spring.profiles.active=loadtest");
+        command.add("--server.port=" + port);
+        if (!config.getAppArgs().isEmpty()) {
+            command.addAll(Arrays.asList(config.getAppArgs().trim().split("\\s+")));
+        }
+        
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logFile.toFile())
+            .start();
+        ApplicationProcess application = new ApplicationProcess(process, "http://localhost:" + port);
+        application.awaitReady(config.getStartupTimeoutSeconds());
+        return application;
+    }
+    
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    private void awaitReady(int timeoutSeconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/test"))
+            .timeout(Duration.ofSeconds(2))
+            .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited during startup with code " + process.exitValue());
+            }
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notYetListening) {
+                // keep polling until the deadline
+            }
+            Thread.sleep(250);
+        }
+        close();
+        throw new IllegalStateException("Application did not become ready within " + timeoutSeconds + "s");
+    }
+    
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+    
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(15, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.banking.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Credit throughput into one hot account as its shard count grows. The first account of the
+ * population is the hot destination; {@code --threads} workers transfer into it from the other
+ * accounts, closed loop, each sending its next transfer as soon as the last one returns. For
+ * every count in {@code --shard-counts} the account is switched to that many balance shards
+ * (0 turns hot-account mode off, so credits update the accounts row itself), warmed up, then
+ * measured. Unlike the open-loop mix this measures how much the server completes, so latency
+ * here is per request from the moment it was sent.
+ */
+public class HotAccountBenchmark {
+    
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Population population;
+    private final LoadTestConfig config;
+    
+    public HotAccountBenchmark(HttpClient client, String baseUrl, Population population, LoadTestConfig config) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.population = population;
+        this.config = config;
+    }
+    
+    public void run(Path runDir, PrintStream out) throws Exception {
+        List<String> accounts = population.getAccountNumbers();
+        if (accounts.size() < 2) {
+            throw new IllegalStateException("The hot-account benchmark needs at least two accounts");
+        }
+        String hot = accounts.get(0);
+        List<String> sources = accounts.subList(1, accounts.size());
+        out.println("Hot account " + hot + ", " + sources.size() + " source accounts, " + config.getThreads()
+            + " threads, " + config.getWarmupSeconds() + "s warmup + " + config.getDurationSeconds()
+            + "s measured per shard count");
+        
+        Files.createDirectories(runDir);
+        Path results = runDir.resolve("hot-account.csv");
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(results))) {
+            csv.println("shards,credits,errors,credits_per_s,p50_ms,p99_ms");
+            out.println(String.format(Locale.ROOT, "%8s %10s %8s %12s %10s %10s",
+                "shards", "credits", "errors", "credits/s", "p50 ms", "p99 ms"));
+            for (int shards : config.getShardCounts()) {
+                configureShards(hot, shards);
+                Round round = drive(hot, sources, shards);
+                String row = String.format(Locale.ROOT, "%d,%d,%d,%.1f,%.3f,%.3f", shards,
+                    round.latencies.getTotalCount() - round.errors.sum(), round.errors.sum(),
+                    (round.latencies.getTotalCount() - round.errors.sum()) / (double) config.getDurationSeconds(),
+                    round.latencies.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                    round.latencies.getValueAtPercentile(99) / NANOS_PER_MILLI);
+                csv.println(row);
+                String[] columns = row.split(",");
+                out.println(String.format(Locale.ROOT, "%8s %10s %8s %12s %10s %10s",
+                    (Object[]) columns));
+            }
+        } finally {
+            configureShards(hot, 0);
+        }
+        out.println("Results written to " + results.toAbsolutePath());
+    }
+    
+    private Round drive(String hot, List<String> sources, int shards) throws Exception {
+        Round round = new Round();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        ExecutorService workers = Executors.newFixedThreadPool(config.getThreads());
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int t = 0; t < config.getThreads(); t++) {
+                SplittableRandom random = new SplittableRandom(config.getSeed() * 31 + shards * 1009L + t);
+                pending.add(workers.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        String from = sources.get(random.nextInt(sources.size()));
+                        long sent = System.nanoTime();
+                        boolean success = transfer(from, hot);
+                        if (sent >= measureFrom && sent < end) {
+                            round.latencies.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_TRACKABLE_NANOS));
+                            if (!success) {
+                                round.errors.increment();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return round;
+    }
+    
+    private boolean transfer(String from, String to) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/transactions/transfer"))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccount\":\"" + from + "\",\"toAccount\":\"" + to
+                + "\",\"amount\":0.01,\"pin\":\"" + Population.PIN + "\"}"))
+            .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private void configureShards(String accountNumber, int shards) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/" + accountNumber
+                + "/balance-shards?shards=" + shards))
+            .timeout(REQUEST_TIMEOUT)
+            .PUT(HttpRequest.BodyPublishers.noBody())
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Setting " + shards + " balance shards on " + accountNumber
+                + " failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+    
+    private static class Round {
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+    }
+}
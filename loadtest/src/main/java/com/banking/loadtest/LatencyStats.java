@@ -0,0 +1,54 @@
+package com.banking.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation latency histograms. Latencies are measured from the time a request was
+ * scheduled to start, not when it was actually sent, so a stalled server shows up as the full
+ * queueing delay every waiting client would have seen (no coordinated omission).
+ */
+public class LatencyStats {
+    
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder dropped = new LongAdder();
+    
+    public LatencyStats() {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+    
+    public void record(Operation operation, long latencyNanos, boolean success) {
+        histograms.get(operation).recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+        if (!success) {
+            errors.get(operation).increment();
+        }
+    }
+    
+    // Requests that were never sent because the in-flight cap was reached
+    public void recordDropped() {
+        dropped.increment();
+    }
+    
+    public Histogram getHistogram(Operation operation) {
+        return histograms.get(operation);
+    }
+    
+    public long getErrors(Operation operation) {
+        return errors.get(operation).sum();
+    }
+    
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,126 @@
+package com.banking.loadtest;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entry point: starts the backend (unless --base-url points at a running one), seeds a
+ * population, then drives the open-loop workload and writes the report, or runs one of the
+ * benchmark scenarios picked with --scenario.
+ *
+ * <pre>
+ *   cd backend  && ./mvnw -Ploadtest package -DskipTests
+ *   cd loadtest && mvn -q compile exec:java -Dexec.args="--rate=300 --duration=120"
+ * </pre>
+ */
+public class LoadTest {
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        String label = !config.getLabel().isEmpty() ? config.getLabel() : defaultLabel();
+        Path runDir = config.getReportDir().resolve(label);
+        Files.createDirectories(runDir);
+        
+        ExecutorService httpExecutor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(httpExecutor)
+            .build();
+        
+        ApplicationProcess application = null;
+        boolean passed = true;
+        try {
+            String baseUrl = config.getBaseUrl();
+            if (baseUrl.isEmpty()) {
+                System.out.println("Starting application from " + config.getJar());
+                application = ApplicationProcess.start(config, runDir.resolve("application.log"));
+                baseUrl = application.getBaseUrl();
+            }
+            
+            Population population;
+            if (!config.getPopulation().isEmpty()) {
+                population = Population.load(Paths.get(config.getPopulation()));
+                System.out.println("Loaded " + population.getCustomers().size() + " customers with "
+                    + population.getAccountNumbers().size() + " accounts from " + config.getPopulation());
+            } else {
+                System.out.println("Seeding " + config.getCustomers() + " customers x "
+                    + config.getAccountsPerCustomer() + " accounts");
+                String runId = Long.toString(System.currentTimeMillis(), 36);
+                population = Population.seed(client, baseUrl, config, runId);
+            }
+            
+            switch (config.getScenario()) {
+                case "mix":
+                    runMix(client, baseUrl, population, config, runDir);
+                    break;
+                case "projections":
+                    new ProjectionBenchmark(client, baseUrl, population, config).run(System.out);
+                    break;
+                case "hot-account":
+                    new HotAccountBenchmark(client, baseUrl, population, config).run(runDir, System.out);
+                    break;
+                case "statement-storm":
+                    passed = new StatementStorm(client, baseUrl, population, config).run(runDir, System.out);
+                    break;
+                case "velocity":
+                    runMix(client, baseUrl, population, config, runDir);
+                    System.out.println();
+                    passed = new VelocityOverhead(client, baseUrl)
+                        .report(runDir, config.getVelocityBudgetMicros(), System.out);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario " + config.getScenario());
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            httpExecutor.shutdownNow();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+    
+    private static void runMix(HttpClient client, String baseUrl, Population population, LoadTestConfig config,
+                               Path runDir) throws Exception {
+        System.out.println("Driving " + config.getRate() + " req/s for " + config.getWarmupSeconds()
+            + "s warmup + " + config.getDurationSeconds() + "s measured");
+        LatencyStats stats = new OpenLoopDriver(client, baseUrl, population, config).run();
+        
+        Path summary = ReportWriter.write(runDir, stats, config, config.getDurationSeconds());
+        System.out.println("Report written to " + runDir.toAbsolutePath());
+        Files.readAllLines(summary).forEach(System.out::println);
+        if (!config.getCompareTo().isEmpty()) {
+            System.out.println();
+            ReportWriter.compare(summary, Paths.get(config.getCompareTo()), System.out);
+        }
+    }
+    
+    // Short git commit id when run inside the repository, so reports line up with commits
+    private static String defaultLabel() {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream()))) {
+                String commit = reader.readLine();
+                if (git.waitFor() == 0 && commit != null && !commit.isEmpty()) {
+                    return commit.trim() + "-" + timestamp;
+                }
+            }
+        } catch (Exception e) {
+            // not a git checkout
+        }
+        return timestamp;
+    }
+}
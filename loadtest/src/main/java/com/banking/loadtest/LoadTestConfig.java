@@ -0,0 +1,121 @@
+package com.banking.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options, all given as {@code --name=value}. Anything not given falls back to a
+ * default that runs a one-minute test against a locally built jar.
+ */
+public class LoadTestConfig {
+    
+    // The loadtest profile turns velocity checks off. The velocity scenario turns them back on with
+    // one-minute windows, which the default 100 accounts stay under up to about 150 debits a second
+    static final String VELOCITY_APP_ARGS = "--banking.velocity.enabled=true --banking.velocity.window-minutes=1 "
+        + "--banking.velocity.max-debits=100 --banking.velocity.new-payee-window-minutes=1 "
+        + "--banking.velocity.max-new-payees=100";
+    
+    private final Map<String, String> options = new LinkedHashMap<>();
+    
+    public static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                config.options.put(arg.substring(2), "true");
+            } else {
+                config.options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return config;
+    }
+    
+    private String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+    
+    // Empty when the harness should start the application itself
+    public String getBaseUrl() { return get("base-url", ""); }
+    public Path getJar() { return Paths.get(get("jar", "../backend/target/banking-system-1.0.0.jar")); }
+    public String getJvmArgs() { return get("jvm-args", "-Xmx512m"); }
+    // Extra Spring arguments for the started application, space separated
+    public String getAppArgs() { return get("app-args", "velocity".equals(getScenario()) ? VELOCITY_APP_ARGS : ""); }
+    public int getStartupTimeoutSeconds() { return Integer.parseInt(get("startup-timeout", "120")); }
+    
+    public int getCustomers() { return Integer.parseInt(get("customers", "50")); }
+    public int getAccountsPerCustomer() { return Integer.parseInt(get("accounts-per-customer", "2")); }
+    public double getInitialBalance() { return Double.parseDouble(get("initial-balance", "100000")); }
+    public int getSeedThreads() { return Integer.parseInt(get("seed-threads", "8")); }
+    
+    // Population file written by the backend's datagen profile, used instead of seeding
+    public String getPopulation() { return get("population", ""); }
+    
+    // Requests per second started regardless of how fast earlier requests complete
+    public double getRate() { return Double.parseDouble(get("rate", "200")); }
+    public int getWarmupSeconds() { return Integer.parseInt(get("warmup", "10")); }
+    public int getDurationSeconds() { return Integer.parseInt(get("duration", "60")); }
+    public int getMaxInFlight() { return Integer.parseInt(get("max-in-flight", "5000")); }
+    public long getSeed() { return Long.parseLong(get("seed", "42")); }
+    
+    // mix drives the open-loop workload; the others are the benchmarks described in the README
+    public String getScenario() { return get("scenario", "mix"); }
+    public int getIterations() { return Integer.parseInt(get("iterations", "5")); }
+    public int getThreads() { return Integer.parseInt(get("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))); }
+    public int getProjectionMonths() { return Integer.parseInt(get("projection-months", "360")); }
+    
+    // Balance shard counts the hot-account benchmark steps through, 0 being hot-account mode off
+    // Statement downloads per second added on top of --rate in the statement-storm phase
+    public double getStormRate() { return Double.parseDouble(get("storm-rate", String.valueOf(getRate()))); }
+    public double getMaxP99Ratio() { return Double.parseDouble(get("max-p99-ratio", "1.5")); }
+    public double getP99SlackMs() { return Double.parseDouble(get("p99-slack-ms", "5")); }
+    
+    // p99 the velocity scenario allows the backend's velocity check, in microseconds
+    public long getVelocityBudgetMicros() { return Long.parseLong(get("velocity-budget-us", "100")); }
+    
+    public List<Integer> getShardCounts() {
+        List<Integer> counts = new ArrayList<>();
+        for (String count : get("shard-counts", "0,1,4,16").split(",")) {
+            counts.add(Integer.parseInt(count.trim()));
+        }
+        return counts;
+    }
+    
+    public Path getReportDir() { return Paths.get(get("report-dir", "load-test-reports")); }
+    public String getLabel() { return get("label", ""); }
+    public String getCompareTo() { return get("compare-to", ""); }
+    
+    // e.g. --mix=login:10,deposit:20,withdraw:15,transfer:25,history:25,statement:5
+    public Map<Operation, Integer> getMix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : get("mix", "login:10,deposit:20,withdraw:15,transfer:25,history:25,statement:5").split(",")) {
+            String[] parts = entry.split(":");
+            mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+    
+    public Map<String, String> asMap() {
+        Map<String, String> effective = new LinkedHashMap<>();
+        effective.put("scenario", getScenario());
+        effective.put("base-url", getBaseUrl());
+        effective.put("population", getPopulation());
+        effective.put("customers", String.valueOf(getCustomers()));
+        effective.put("accounts-per-customer", String.valueOf(getAccountsPerCustomer()));
+        effective.put("rate", String.valueOf(getRate()));
+        effective.put("warmup", String.valueOf(getWarmupSeconds()));
+        effective.put("duration", String.valueOf(getDurationSeconds()));
+        effective.put("seed", String.valueOf(getSeed()));
+        effective.put("mix", String.valueOf(getMix()));
+        effective.put("jvm-args", getJvmArgs());
+        effective.put("app-args", getAppArgs());
+        return effective;
+    }
+}
@@ -0,0 +1,163 @@
+package com.banking.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fires requests on a fixed schedule (open loop): request i is due at start + i / rate, and is
+ * sent then whether or not earlier requests have completed. Requests issued during warmup are
+ * sent but not recorded.
+ */
+public class OpenLoopDriver {
+    
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Population population;
+    private final LoadTestConfig config;
+    private final double rate;
+    private final Operation[] weightedOperations;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    public OpenLoopDriver(HttpClient client, String baseUrl, Population population, LoadTestConfig config) {
+        this(client, baseUrl, population, config, config.getRate(), config.getMix());
+    }
+    
+    // For scenarios that run several phases with their own rate and mix
+    public OpenLoopDriver(HttpClient client, String baseUrl, Population population, LoadTestConfig config,
+                          double rate, Map<Operation, Integer> mix) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.population = population;
+        this.config = config;
+        this.rate = rate;
+        this.weightedOperations = expand(mix);
+    }
+    
+    public LatencyStats run() throws InterruptedException {
+        LatencyStats stats = new LatencyStats();
+        SplittableRandom random = new SplittableRandom(config.getSeed());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = intended >= measureFrom;
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            if (inFlight.get() >= config.getMaxInFlight()) {
+                if (measured) {
+                    stats.recordDropped();
+                    stats.record(operation, System.nanoTime() - intended, false);
+                }
+                continue;
+            }
+            HttpRequest request = buildRequest(operation, random);
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long latency = System.nanoTime() - intended;
+                    inFlight.decrementAndGet();
+                    if (measured) {
+                        stats.record(operation, latency, error == null && response.statusCode() / 100 == 2);
+                    }
+                });
+        }
+        
+        long drainDeadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return stats;
+    }
+    
+    private HttpRequest buildRequest(Operation operation, SplittableRandom random) {
+        List<String> accounts = population.getAccountNumbers();
+        String account = accounts.get(random.nextInt(accounts.size()));
+        String amount = String.valueOf(1 + random.nextInt(50));
+        switch (operation) {
+            case LOGIN: {
+                Population.Customer customer = population.getCustomers()
+                    .get(random.nextInt(population.getCustomers().size()));
+                return postJson("/api/auth/login", "{\"email\":\"" + customer.getEmail()
+                    + "\",\"password\":\"" + Population.PASSWORD + "\"}");
+            }
+            case DEPOSIT:
+                return post("/api/accounts/" + account + "/deposit?amount=" + amount);
+            case WITHDRAW:
+                return post("/api/accounts/" + account + "/withdraw?amount=" + amount + "&pin=" + Population.PIN);
+            case TRANSFER: {
+                String to = accounts.get(random.nextInt(accounts.size()));
+                if (to.equals(account)) {
+                    to = accounts.get((accounts.indexOf(account) + 1) % accounts.size());
+                }
+                return postJson("/api/transactions/transfer", "{\"fromAccount\":\"" + account
+                    + "\",\"toAccount\":\"" + to + "\",\"amount\":" + amount
+                    + ",\"pin\":\"" + Population.PIN + "\"}");
+            }
+            case HISTORY:
+                return get("/api/transactions/account/" + account);
+            case STATEMENT: {
+                LocalDate today = LocalDate.now();
+                return get("/api/statements/" + account + "/pdf?startDate=" + today.minusMonths(1)
+                    + "&endDate=" + today);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+    
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+    
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+    }
+    
+    private HttpRequest postJson(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .build();
+    }
+    
+    // One array slot per unit of weight so picking an operation is a single random index
+    private static Operation[] expand(Map<Operation, Integer> mix) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive total weight");
+        }
+        Operation[] operations = new Operation[total];
+        int index = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int w = 0; w < entry.getValue(); w++) {
+                operations[index++] = entry.getKey();
+            }
+        }
+        return operations;
+    }
+}
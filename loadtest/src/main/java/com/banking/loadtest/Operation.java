@@ -0,0 +1,10 @@
+package com.banking.loadtest;
+
+public enum Operation {
+    LOGIN,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    HISTORY,
+    STATEMENT
+}
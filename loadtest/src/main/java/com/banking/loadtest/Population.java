@@ -0,0 +1,149 @@
+package com.banking.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Customers and funded accounts created through the public API before the measured run, so
+ * the workload exercises exactly the same code paths a real client would.
+ */
+public class Population {
+    
+    public static final String PASSWORD = "loadtest-password";
+    public static final String PIN = "1234";
+    
+    private final List<Customer> customers;
+    private final List<String> accountNumbers;
+    
+    private Population(List<Customer> customers) {
+        this.customers = customers;
+        List<String> accounts = new ArrayList<>();
+        for (Customer customer : customers) {
+            accounts.addAll(customer.accountNumbers);
+        }
+        this.accountNumbers = Collections.unmodifiableList(accounts);
+    }
+    
+    public List<Customer> getCustomers() { return customers; }
+    public List<String> getAccountNumbers() { return accountNumbers; }
+    
+    public static Population seed(HttpClient client, String baseUrl, LoadTestConfig config, String runId)
+            throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ExecutorService pool = Executors.newFixedThreadPool(config.getSeedThreads());
+        try {
+            List<Future<Customer>> pending = new ArrayList<>();
+            for (int i = 0; i < config.getCustomers(); i++) {
+                String email = "loadtest-" + runId + "-" + i + "@example.com";
+                pending.add(pool.submit(() -> seedCustomer(client, mapper, baseUrl, config, email)));
+            }
+            List<Customer> customers = new ArrayList<>();
+            for (Future<Customer> future : pending) {
+                customers.add(future.get());
+            }
+            return new Population(Collections.unmodifiableList(customers));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Reads a population generated straight into the database (the backend's datagen profile),
+     * one "email, customer id, comma-separated account numbers" line per customer, tab separated.
+     * Its customers must share {@link #PASSWORD} and {@link #PIN}, which the generator defaults to.
+     */
+    public static Population load(Path file) throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            customers.add(new Customer(fields[0], Long.parseLong(fields[1]),
+                Collections.unmodifiableList(Arrays.asList(fields[2].split(",")))));
+        }
+        if (customers.isEmpty()) {
+            throw new IllegalStateException("Population file " + file + " has no customers");
+        }
+        return new Population(Collections.unmodifiableList(customers));
+    }
+    
+    private static Customer seedCustomer(HttpClient client, ObjectMapper mapper, String baseUrl,
+                                         LoadTestConfig config, String email) throws Exception {
+        Map<String, Object> registration = new HashMap<>();
+        registration.put("fullName", "Load Test " + email);
+        registration.put("email", email);
+        registration.put("password", PASSWORD);
+        postJson(client, mapper, baseUrl + "/api/auth/register", registration);
+        
+        Map<String, Object> login = new HashMap<>();
+        login.put("email", email);
+        login.put("password", PASSWORD);
+        long customerId = postJson(client, mapper, baseUrl + "/api/auth/login", login).get("id").asLong();
+        
+        List<String> accountNumbers = new ArrayList<>();
+        for (int a = 0; a < config.getAccountsPerCustomer(); a++) {
+            Map<String, Object> account = new HashMap<>();
+            account.put("accountType", a % 2 == 0 ? "SAVINGS" : "CURRENT");
+            account.put("pin", PIN);
+            String accountNumber = postJson(client, mapper, baseUrl + "/api/accounts/customer/" + customerId, account)
+                .get("accountNumber").asText();
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/" + accountNumber
+                    + "/deposit?amount=" + config.getInitialBalance()))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build());
+            accountNumbers.add(accountNumber);
+        }
+        return new Customer(email, customerId, Collections.unmodifiableList(accountNumbers));
+    }
+    
+    private static JsonNode postJson(HttpClient client, ObjectMapper mapper, String url, Object body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+            .build();
+        return mapper.readTree(send(client, request));
+    }
+    
+    private static String send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Seeding call " + request.uri() + " failed with "
+                + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+    
+    public static class Customer {
+        private final String email;
+        private final long id;
+        private final List<String> accountNumbers;
+        
+        Customer(String email, long id, List<String> accountNumbers) {
+            this.email = email;
+            this.id = id;
+            this.accountNumbers = accountNumbers;
+        }
+        
+        public String getEmail() { return email; }
+        public long getId() { return id; }
+        public List<String> getAccountNumbers() { return accountNumbers; }
+    }
+}
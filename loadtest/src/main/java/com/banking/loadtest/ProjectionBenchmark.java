@@ -0,0 +1,142 @@
+package com.banking.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the interest projection grid against the per-account month-by-month loop for the same
+ * work: every savings account in the population at the savings rate over one horizon. The
+ * loop side calls {@code /api/interest/{account}/projection} once per account from
+ * {@code --threads} threads, so it also pays one HTTP round trip per account, which is what a
+ * caller of the old API paid too. Both totals are printed; on a fresh loadtest database the
+ * population is every account there is, and they have to match to the cent.
+ */
+public class ProjectionBenchmark {
+    
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Population population;
+    private final LoadTestConfig config;
+    // Sums of many accounts' interest don't fit a double to the cent
+    private final ObjectMapper mapper = new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    
+    public ProjectionBenchmark(HttpClient client, String baseUrl, Population population, LoadTestConfig config) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.population = population;
+        this.config = config;
+    }
+    
+    public void run(PrintStream out) throws Exception {
+        int months = config.getProjectionMonths();
+        List<String> savings = savingsAccounts();
+        if (savings.isEmpty()) {
+            throw new IllegalStateException("The population has no savings accounts");
+        }
+        String rate = get("/api/interest/" + savings.get(0) + "/projection?months=1")
+            .get("annualRate").asText();
+        String gridPath = "/api/interest/projections?rates=" + rate + "&months=" + months + "&accountType=SAVINGS";
+        out.println("Projecting " + savings.size() + " savings accounts at " + rate + " over " + months
+            + " months, " + config.getIterations() + " iterations after one warmup");
+        
+        ExecutorService pool = Executors.newFixedThreadPool(config.getThreads());
+        try {
+            BigDecimal gridTotal = null;
+            BigDecimal loopTotal = null;
+            long gridNanos = 0;
+            long loopNanos = 0;
+            for (int i = 0; i <= config.getIterations(); i++) {
+                long start = System.nanoTime();
+                gridTotal = gridTotal(gridPath);
+                long gridElapsed = System.nanoTime() - start;
+                
+                start = System.nanoTime();
+                loopTotal = loopTotal(pool, savings, months);
+                long loopElapsed = System.nanoTime() - start;
+                
+                // The first pass only warms up both paths
+                if (i > 0) {
+                    gridNanos += gridElapsed;
+                    loopNanos += loopElapsed;
+                    out.println(String.format(Locale.ROOT, "iteration %d: grid %.1f ms, loop %.1f ms", i,
+                        gridElapsed / 1e6, loopElapsed / 1e6));
+                }
+            }
+            int iterations = Math.max(config.getIterations(), 1);
+            out.println(String.format(Locale.ROOT, "grid: %.1f ms mean, total interest %s",
+                gridNanos / 1e6 / iterations, gridTotal.toPlainString()));
+            out.println(String.format(Locale.ROOT, "loop: %.1f ms mean, total interest %s (%d threads)",
+                loopNanos / 1e6 / iterations, loopTotal.toPlainString(), config.getThreads()));
+            if (gridNanos > 0) {
+                out.println(String.format(Locale.ROOT, "speedup: %.1fx", (double) loopNanos / gridNanos));
+            }
+            if (gridTotal.compareTo(loopTotal) != 0) {
+                out.println("Totals differ; expected when the database holds accounts outside the population");
+            }
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+    
+    // Seeded customers alternate SAVINGS and CURRENT, so ask the backend rather than assume
+    private List<String> savingsAccounts() throws Exception {
+        List<String> savings = new ArrayList<>();
+        for (String accountNumber : population.getAccountNumbers()) {
+            if ("SAVINGS".equals(get("/api/accounts/" + accountNumber).path("accountType").asText())) {
+                savings.add(accountNumber);
+            }
+        }
+        return savings;
+    }
+    
+    private BigDecimal gridTotal(String path) throws Exception {
+        // One NDJSON line per (rate, horizon); this request asks for exactly one
+        String body = send(path);
+        return mapper.readTree(body.trim()).get("totalInterest").decimalValue();
+    }
+    
+    private BigDecimal loopTotal(ExecutorService pool, List<String> accounts, int months) throws Exception {
+        List<Future<BigDecimal>> pending = new ArrayList<>();
+        for (String accountNumber : accounts) {
+            pending.add(pool.submit(() -> get("/api/interest/" + accountNumber + "/projection?months=" + months)
+                .get("projectedInterest").decimalValue()));
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (Future<BigDecimal> future : pending) {
+            total = total.add(future.get());
+        }
+        return total;
+    }
+    
+    private JsonNode get(String path) throws Exception {
+        return mapper.readTree(send(path));
+    }
+    
+    private String send(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(path + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,84 @@
+package com.banking.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes one directory per run: {@code summary.csv} with a fixed column layout that diffs
+ * cleanly between commits, one HdrHistogram percentile distribution ({@code .hgrm}) per
+ * operation, and the effective configuration.
+ */
+public class ReportWriter {
+    
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    static final String HEADER = "operation,count,errors,mean_ms,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms";
+    
+    public static Path write(Path runDir, LatencyStats stats, LoadTestConfig config, double seconds)
+            throws IOException {
+        Files.createDirectories(runDir);
+        Path summary = runDir.resolve("summary.csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(summary))) {
+            out.println(HEADER);
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = stats.getHistogram(operation);
+                out.println(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                    operation.name().toLowerCase(Locale.ROOT),
+                    histogram.getTotalCount(),
+                    stats.getErrors(operation),
+                    histogram.getMean() / NANOS_PER_MILLI,
+                    histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                    histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                    histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                    histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                    histogram.getMaxValue() / NANOS_PER_MILLI));
+                try (PrintStream hgrm = new PrintStream(Files.newOutputStream(
+                        runDir.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hgrm")))) {
+                    histogram.outputPercentileDistribution(hgrm, NANOS_PER_MILLI);
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(runDir.resolve("run.properties")))) {
+            for (Map.Entry<String, String> entry : config.asMap().entrySet()) {
+                out.println(entry.getKey() + "=" + entry.getValue());
+            }
+            out.println("measured-seconds=" + String.format(Locale.ROOT, "%.1f", seconds));
+            out.println("dropped=" + stats.getDropped());
+        }
+        return summary;
+    }
+    
+    // Prints p50/p99 side by side with a previous run's summary.csv
+    public static void compare(Path current, Path baseline, PrintStream out) throws IOException {
+        Map<String, String[]> before = read(baseline);
+        Map<String, String[]> after = read(current);
+        out.println(String.format(Locale.ROOT, "%-10s %12s %12s %12s %12s", "operation",
+            "p50 before", "p50 after", "p99 before", "p99 after"));
+        for (Map.Entry<String, String[]> entry : after.entrySet()) {
+            String[] previous = before.get(entry.getKey());
+            if (previous == null) {
+                continue;
+            }
+            out.println(String.format(Locale.ROOT, "%-10s %12s %12s %12s %12s", entry.getKey(),
+                previous[4], entry.getValue()[4], previous[6], entry.getValue()[6]));
+        }
+    }
+    
+    private static Map<String, String[]> read(Path summary) throws IOException {
+        List<String> lines = Files.readAllLines(summary);
+        Map<String, String[]> rows = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] columns = line.split(",");
+            rows.put(columns[0], columns);
+        }
+        return rows;
+    }
+}
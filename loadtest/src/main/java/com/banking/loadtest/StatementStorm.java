@@ -0,0 +1,90 @@
+package com.banking.loadtest;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checks that the backend's execution lanes keep money movement isolated from statement
+ * rendering. Transfers run at {@code --rate} twice against the same application, first alone
+ * and then with {@code --storm-rate} statement downloads on top, and the two transfer p99s are
+ * compared. The storm's p99 may exceed the baseline's by {@code --max-p99-ratio} times or
+ * {@code --p99-slack-ms}, whichever allows more, since a few milliseconds either way is noise
+ * on a fast baseline. The storm also has to have happened: it fails if any statement download
+ * failed or was dropped, or if fewer completed than {@code --storm-rate} times the measured
+ * duration, less four standard deviations for the random choice of operation per request.
+ */
+public class StatementStorm {
+    
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Population population;
+    private final LoadTestConfig config;
+    
+    public StatementStorm(HttpClient client, String baseUrl, Population population, LoadTestConfig config) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.population = population;
+        this.config = config;
+    }
+    
+    // True when the storm ran in full and transfer p99 stayed within the allowance during it
+    public boolean run(Path runDir, PrintStream out) throws Exception {
+        Map<Operation, Integer> transfersOnly = new EnumMap<>(Operation.class);
+        transfersOnly.put(Operation.TRANSFER, 1);
+        double baseline = transferP99(phase(runDir.resolve("transfers-only"), config.getRate(), transfersOnly, out));
+        
+        // Weights in proportion to the two rates, so transfers arrive at --rate in both phases
+        Map<Operation, Integer> storm = new EnumMap<>(Operation.class);
+        storm.put(Operation.TRANSFER, (int) Math.max(1, Math.round(config.getRate() * 10)));
+        storm.put(Operation.STATEMENT, (int) Math.max(1, Math.round(config.getStormRate() * 10)));
+        LatencyStats stormStats = phase(runDir.resolve("statement-storm"), config.getRate() + config.getStormRate(),
+            storm, out);
+        double during = transferP99(stormStats);
+        
+        ReportWriter.compare(runDir.resolve("statement-storm").resolve("summary.csv"),
+            runDir.resolve("transfers-only").resolve("summary.csv"), out);
+        
+        // Dropped requests are recorded as errors too, so every scheduled statement is in the count
+        long scheduled = stormStats.getHistogram(Operation.STATEMENT).getTotalCount();
+        long failed = stormStats.getErrors(Operation.STATEMENT);
+        double expected = config.getStormRate() * config.getDurationSeconds();
+        double minimum = expected - 4 * Math.sqrt(expected);
+        boolean stormed = failed == 0 && scheduled - failed >= minimum;
+        out.println(String.format(Locale.ROOT, "statements: %d completed, %d failed, %.0f expected, at least %.0f required: %s",
+            scheduled - failed, failed, expected, minimum, stormed ? "ok" : "STORM INCOMPLETE"));
+        
+        double allowed = Math.max(baseline * config.getMaxP99Ratio(), baseline + config.getP99SlackMs());
+        boolean flat = during <= allowed;
+        out.println(String.format(Locale.ROOT, "transfer p99 %.3f ms alone, %.3f ms during the storm, %.3f ms allowed: %s",
+            baseline, during, allowed, flat ? "flat" : "NOT FLAT"));
+        return stormed && flat;
+    }
+    
+    private static double transferP99(LatencyStats stats) {
+        return stats.getHistogram(Operation.TRANSFER).getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+    
+    // Runs one open-loop phase and writes its report
+    private LatencyStats phase(Path phaseDir, double rate, Map<Operation, Integer> mix, PrintStream out) throws Exception {
+        out.println("Driving " + rate + " req/s of " + mix + " for " + config.getWarmupSeconds() + "s warmup + "
+            + config.getDurationSeconds() + "s measured");
+        LatencyStats stats = new OpenLoopDriver(client, baseUrl, population, config, rate, mix).run();
+        ReportWriter.write(phaseDir, stats, config, config.getDurationSeconds());
+        // run.properties records the command line's rate and mix; this phase ran its own
+        Files.write(phaseDir.resolve("run.properties"), Arrays.asList("phase-rate=" + rate, "phase-mix=" + mix),
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Files.readAllLines(phaseDir.resolve("summary.csv")).forEach(out::println);
+        out.println();
+        return stats;
+    }
+}
@@ -0,0 +1,89 @@
+package com.banking.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Reads what the velocity rules added to each debit during a run from the backend's
+ * {@code banking.velocity.check} timer. It covers every check, declined ones included.
+ * Micrometer's percentiles decay over about two minutes, so they describe the end of the run
+ * rather than all of it.
+ */
+public class VelocityOverhead {
+    
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+    private static final String METRIC = "/actuator/metrics/banking.velocity.check";
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final ObjectMapper mapper = new ObjectMapper();
+    
+    public VelocityOverhead(HttpClient client, String baseUrl) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+    
+    // Prints the check's p50/p99/p99.9 and max in microseconds against the budget; false if p99 is over it
+    public boolean report(Path runDir, long budgetMicros, PrintStream out) throws IOException, InterruptedException {
+        JsonNode timer = get(METRIC);
+        if (timer == null) {
+            throw new IllegalStateException("No " + METRIC + " on " + baseUrl
+                + "; is banking.velocity.enabled=true, and have any debits run?");
+        }
+        long checks = (long) statistic(timer, "COUNT");
+        double p50 = percentile(0.5);
+        double p99 = percentile(0.99);
+        double p999 = percentile(0.999);
+        double max = statistic(timer, "MAX") * MICROS_PER_SECOND;
+        
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(runDir.resolve("velocity.csv")))) {
+            csv.println("checks,p50_us,p99_us,p99_9_us,max_us,budget_us");
+            csv.println(String.format(Locale.ROOT, "%d,%.1f,%.1f,%.1f,%.1f,%d", checks, p50, p99, p999, max, budgetMicros));
+        }
+        boolean within = p99 <= budgetMicros;
+        out.println(String.format(Locale.ROOT,
+            "velocity check: %d checks, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us; p99 %s the %d us budget",
+            checks, p50, p99, p999, max, within ? "within" : "OVER", budgetMicros));
+        return within;
+    }
+    
+    private double percentile(double phi) throws IOException, InterruptedException {
+        JsonNode gauge = get(METRIC + ".percentile?tag=phi:" + phi);
+        return gauge == null ? Double.NaN : statistic(gauge, "VALUE") * MICROS_PER_SECOND;
+    }
+    
+    private static double statistic(JsonNode metric, String name) {
+        for (JsonNode measurement : metric.path("measurements")) {
+            if (name.equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+    
+    // Null when the metric isn't registered
+    private JsonNode get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(path + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return mapper.readTree(response.body());
+    }
+}